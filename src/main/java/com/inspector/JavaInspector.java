@@ -1,19 +1,46 @@
 package com.inspector;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.inspector.core.ApplicationConnector;
+import com.inspector.core.EdtSliceBudget;
 import com.inspector.core.ElementSerializer;
+import com.inspector.core.ExtractionProfile;
+import com.inspector.core.FleetInspection;
+import com.inspector.core.JvmDiscoveryService;
+import com.inspector.core.TraversalBudget;
+import com.inspector.core.TraversalOrder;
 import com.inspector.core.UITreeExplorer;
 import com.inspector.model.ElementData;
 import com.inspector.model.ExplorationResult;
 import com.inspector.util.JsonExporter;
+import com.inspector.util.JsonOutput;
+import com.inspector.util.JsonStreamSink;
+import com.inspector.util.OutputFiles;
 import com.inspector.util.WindowEnumerator;
+import com.sun.tools.attach.VirtualMachineDescriptor;
 
 import javax.accessibility.AccessibleContext;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
 
 public class JavaInspector {
     
-    private static final int DEFAULT_MAX_DEPTH = 20;
+    private static final int DEFAULT_MAX_DEPTH = UITreeExplorer.DEFAULT_MAX_DEPTH;
+    private static final int DEFAULT_PARALLELISM = 4;
     
     public static void main(String[] args) {
         if (args.length == 0) {
@@ -29,8 +56,13 @@ public class JavaInspector {
                 return;
             }
             
+            if (options.pids != null || options.allJava) {
+                inspectFleet(options);
+                return;
+            }
+            
             if (options.pid == null && options.title == null) {
-                System.err.println("Error: Either --pid or --title must be specified");
+                System.err.println("Error: Either --pid, --title, --pids or --all-java must be specified");
                 printUsage();
                 System.exit(1);
             }
@@ -63,6 +95,32 @@ public class JavaInspector {
                         opts.title = args[++i];
                     }
                     break;
+                case "--pids":
+                    if (i + 1 < args.length) {
+                        opts.pids = new ArrayList<>();
+                        for (String pid : args[++i].split(",")) {
+                            if (!pid.trim().isEmpty()) {
+                                opts.pids.add(Integer.parseInt(pid.trim()));
+                            }
+                        }
+                    }
+                    break;
+                case "--all-java":
+                    opts.allJava = true;
+                    break;
+                case "--parallelism":
+                    if (i + 1 < args.length) {
+                        opts.parallelism = Integer.parseInt(args[++i]);
+                    }
+                    break;
+                case "--timeout":
+                    if (i + 1 < args.length) {
+                        opts.timeoutMs = Long.parseLong(args[++i]);
+                    }
+                    break;
+                case "--ndjson":
+                    opts.ndjson = true;
+                    break;
                 case "--output":
                 case "-o":
                     if (i + 1 < args.length) {
@@ -74,6 +132,42 @@ public class JavaInspector {
                         opts.maxDepth = Integer.parseInt(args[++i]);
                     }
                     break;
+                case "--traversal":
+                    if (i + 1 < args.length) {
+                        opts.traversal = TraversalOrder.fromString(args[++i]);
+                    }
+                    break;
+                case "--fields":
+                    if (i + 1 < args.length) {
+                        opts.profile = ExtractionProfile.parse(args[++i]);
+                    }
+                    break;
+                case "--stream":
+                    opts.stream = true;
+                    break;
+                case "--paths":
+                    opts.paths = true;
+                    break;
+                case "--edt-slice":
+                    if (i + 1 < args.length) {
+                        opts.sliceBudget = EdtSliceBudget.parse(args[++i]);
+                    }
+                    break;
+                case "--deadline":
+                    if (i + 1 < args.length) {
+                        opts.budget = opts.budget.withDeadlineMillis(Long.parseLong(args[++i]));
+                    }
+                    break;
+                case "--max-nodes":
+                    if (i + 1 < args.length) {
+                        opts.budget = opts.budget.withMaxNodes(Long.parseLong(args[++i]));
+                    }
+                    break;
+                case "--max-text-bytes":
+                    if (i + 1 < args.length) {
+                        opts.budget = opts.budget.withMaxTextBytes(Long.parseLong(args[++i]));
+                    }
+                    break;
                 case "--include-invisible":
                     opts.includeInvisible = true;
                     break;
@@ -96,6 +190,23 @@ public class JavaInspector {
             }
         }
         
+        if (opts.stream && opts.sliceBudget != null) {
+            // Streaming writes while walking, which must not happen on the target's EDT
+            System.err.println("Error: --edt-slice cannot be combined with --stream");
+            System.exit(1);
+        }
+        
+        boolean fleet = opts.pids != null || opts.allJava;
+        if (fleet && (opts.pid != null || opts.title != null || opts.stream)) {
+            // Each process of a fleet is inspected by its agent, into its own file
+            System.err.println("Error: --pids and --all-java cannot be combined with --pid, --title or --stream");
+            System.exit(1);
+        }
+        if (opts.ndjson && !fleet) {
+            System.err.println("Error: --ndjson requires --pids or --all-java");
+            System.exit(1);
+        }
+        
         return opts;
     }
     
@@ -121,7 +232,9 @@ public class JavaInspector {
         if (options.pid != null) {
             int pid = Integer.parseInt(options.pid);
             System.out.println("Connecting to PID: " + pid);
-            connection = ApplicationConnector.connectByPid(pid);
+            connection = ApplicationConnector.connectByPid(pid, options.profile, options.sliceBudget, options.maxDepth,
+                options.budget, options.output != null
+                    ? Paths.get(options.output) : OutputFiles.newSessionOutput(String.valueOf(pid)));
         } else {
             System.out.println("Connecting to window with title: " + options.title);
             connection = ApplicationConnector.connectByTitle(options.title);
@@ -135,15 +248,31 @@ public class JavaInspector {
         System.out.println("PID: " + connection.pid);
         System.out.println("\nExploring UI tree...");
         
+        if (options.stream) {
+            streamApplication(options, connection);
+            return;
+        }
+        
         // Explore UI tree
         long startTime = System.currentTimeMillis();
-        UITreeExplorer explorer = new UITreeExplorer(options.maxDepth, options.includeInvisible);
-        ElementData rootElement = explorer.explore(connection.rootContext);
+        UITreeExplorer explorer = new UITreeExplorer(options.maxDepth, options.includeInvisible, options.traversal, options.profile);
+        explorer.setMaterializePaths(options.paths);
+        explorer.setBudget(options.budget);
+        ElementData rootElement = options.sliceBudget != null
+            ? explorer.snapshotOnEdt(connection.rootContext, options.sliceBudget)
+            : explorer.explore(connection.rootContext);
         long duration = System.currentTimeMillis() - startTime;
         
         System.out.println("Exploration complete!");
         System.out.println("Total elements found: " + explorer.getTotalElements());
         System.out.println("Duration: " + duration + "ms");
+        if (options.sliceBudget != null) {
+            System.out.println("EDT slices: " + explorer.getEdtSlices()
+                + ", longest stall: " + (explorer.getMaxEdtStallNanos() / 1_000_000.0) + "ms");
+        }
+        if (explorer.isTruncated()) {
+            System.out.println("Stopped early: " + explorer.getTruncatedBy().getKey() + " budget reached (" + options.budget + ")");
+        }
         
         // Create result
         ExplorationResult result = ElementSerializer.createResult(
@@ -151,9 +280,16 @@ public class JavaInspector {
             String.valueOf(connection.pid),
             connection.title,
             explorer.getElementCounts(),
+            explorer.getTextStrategyCounts(),
             explorer.getTotalElements(),
             duration
         );
+        if (options.sliceBudget != null) {
+            ElementSerializer.addEdtStatistics(result.getStatistics(), explorer.getEdtSlices(), explorer.getMaxEdtStallNanos());
+        }
+        if (explorer.isTruncated()) {
+            ElementSerializer.addTruncation(result, explorer.getTruncatedBy());
+        }
         
         // Export to JSON
         JsonExporter exporter = new JsonExporter();
@@ -173,6 +309,214 @@ public class JavaInspector {
         );
     }
     
+    /**
+     * Inspect several processes concurrently, each into its own file in the --output directory,
+     * or all into one NDJSON stream with a line per process and a final summary line.
+     */
+    private static void inspectFleet(CommandLineOptions options) throws Exception {
+        List<Integer> pids = options.pids;
+        if (pids == null) {
+            pids = new ArrayList<>();
+            String self = String.valueOf(ProcessHandle.current().pid());
+            for (VirtualMachineDescriptor vmd : JvmDiscoveryService.getDefault().list()) {
+                if (!vmd.id().equals(self)) {
+                    pids.add(Integer.parseInt(vmd.id()));
+                }
+            }
+        }
+        
+        // With NDJSON on the console, progress goes to stderr
+        PrintStream log = options.ndjson && options.output == null ? System.err : System.out;
+        log.println("Java UI Inspector v1.0.0");
+        log.println("========================================\n");
+        log.println("Inspecting " + pids.size() + " processes, " + options.parallelism + " at a time");
+        
+        Path outputDir = options.ndjson
+            ? Files.createTempDirectory("inspector-fleet")
+            : Paths.get(options.output != null ? options.output : ".");
+        Files.createDirectories(outputDir);
+        IntFunction<Path> outputFor = pid -> outputDir.resolve("inspector-" + pid + ".json");
+        
+        FleetInspection fleet = new FleetInspection(options.parallelism, options.timeoutMs);
+        OutputStream ndjson = null;
+        if (options.ndjson) {
+            ndjson = options.output != null
+                ? new BufferedOutputStream(new FileOutputStream(options.output))
+                : System.out;
+        }
+        OutputStream lines = ndjson;
+        fleet.setListener(result -> {
+            log.println(String.format("  PID %-8d %-9s %8.1f ms  %s", result.getPid(), result.getStatus().getKey(),
+                result.getNanos() / 1_000_000.0,
+                result.getError() != null ? result.getError() : result.getOutput()));
+            if (lines != null) {
+                writeLine(lines, fleetRecord(result));
+            }
+        });
+        
+        List<FleetInspection.Result> results;
+        try {
+            results = fleet.run(pids, outputFor, (pid, output) -> inspectFleetProcess(options, pid, output));
+            Map<String, Object> statistics = fleet.statistics(results);
+            if (ndjson != null) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                try (JsonGenerator gen = JsonOutput.createGenerator(line, false)) {
+                    gen.writeStartObject();
+                    gen.writeStringField("type", "summary");
+                    gen.writeObjectField("statistics", statistics);
+                    gen.writeEndObject();
+                }
+                writeLine(ndjson, line.toByteArray());
+            }
+            
+            log.println("\nFleet Summary:");
+            new TreeMap<>(statistics).forEach((key, value) -> log.println("  " + key + ": " + value));
+        } finally {
+            if (ndjson != null) {
+                if (ndjson != System.out) {
+                    ndjson.close();
+                }
+                deleteQuietly(outputDir);
+            }
+        }
+        if (!options.ndjson) {
+            log.println("Results exported to: " + outputDir.toAbsolutePath());
+        }
+        if (results.stream().anyMatch(r -> r.getStatus() != FleetInspection.Status.OK)) {
+            System.exit(1);
+        }
+    }
+    
+    private static void inspectFleetProcess(CommandLineOptions options, int pid, Path output) throws Exception {
+        if (!JvmDiscoveryService.getDefault().isJavaProcess(String.valueOf(pid))) {
+            throw new IOException("Not a Java process");
+        }
+        ApplicationConnector.ConnectionResult connection =
+            ApplicationConnector.connectByPid(pid, options.profile, options.sliceBudget, options.maxDepth, options.budget,
+                                              output);
+        if (connection.rootContext != null) {
+            // A window of this JVM, which has no agent to write the file
+            UITreeExplorer explorer = new UITreeExplorer(options.maxDepth, options.includeInvisible, options.traversal, options.profile);
+            explorer.setBudget(options.budget);
+            long startTime = System.currentTimeMillis();
+            ElementData rootElement = explorer.explore(connection.rootContext);
+            ExplorationResult result = ElementSerializer.createResult(rootElement, String.valueOf(connection.pid),
+                connection.title, explorer.getElementCounts(), explorer.getTextStrategyCounts(),
+                explorer.getTotalElements(), System.currentTimeMillis() - startTime);
+            new JsonExporter().exportToFile(result, output.toString());
+        } else if (!Files.exists(output)) {
+            throw new IOException(connection.error != null ? connection.error.replace('\n', ' ') : "No result");
+        }
+    }
+    
+    // Remove the NDJSON run's directory, with what failed or timed-out inspections left in it
+    private static void deleteQuietly(Path dir) {
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            // Ignore
+        }
+        dir.toFile().delete();
+    }
+    
+    // One NDJSON record, without its line end: the process, how its inspection went, and its
+    // result. Built whole before any of it is written, so that a result that cannot be read
+    // turns into a failed record rather than half a line.
+    static byte[] fleetRecord(FleetInspection.Result result) {
+        try {
+            if (result.getStatus() == FleetInspection.Status.OK) {
+                try {
+                    return fleetRecord(result, result.getStatus(), result.getError());
+                } catch (IOException e) {
+                    return fleetRecord(result, FleetInspection.Status.FAILED, "Cannot read result: " + e.getMessage());
+                } finally {
+                    result.getOutput().toFile().delete();
+                }
+            }
+            return fleetRecord(result, result.getStatus(), result.getError());
+        } catch (IOException e) {
+            // Writing to memory
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static byte[] fleetRecord(FleetInspection.Result result, FleetInspection.Status status, String error)
+            throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        try (JsonGenerator gen = JsonOutput.createGenerator(record, false)) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "inspection");
+            gen.writeNumberField("pid", result.getPid());
+            gen.writeStringField("status", status.getKey());
+            gen.writeNumberField("duration_ms", result.getNanos() / 1_000_000.0);
+            JsonOutput.writeString(gen, "error", error);
+            if (status == FleetInspection.Status.OK) {
+                JsonOutput.copyFile(gen, "result", result.getOutput());
+            }
+            gen.writeEndObject();
+        }
+        return record.toByteArray();
+    }
+    
+    private static void writeLine(OutputStream out, byte[] line) {
+        try {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Explore and write JSON in one pass without materializing the ElementData tree.
+     */
+    private static void streamApplication(CommandLineOptions options, ApplicationConnector.ConnectionResult connection) throws Exception {
+        ExplorationResult.ApplicationInfo appInfo = new ExplorationResult.ApplicationInfo();
+        appInfo.setPid(String.valueOf(connection.pid));
+        appInfo.setTitle(connection.title);
+        
+        OutputStream out = options.output != null
+            ? new BufferedOutputStream(new FileOutputStream(options.output))
+            : new FilterOutputStream(System.out) {
+                  @Override
+                  public void close() throws IOException {
+                      flush(); // Keep System.out open
+                  }
+              };
+        
+        long startTime = System.currentTimeMillis();
+        UITreeExplorer explorer = new UITreeExplorer(options.maxDepth, options.includeInvisible, options.traversal, options.profile);
+        explorer.setMaterializePaths(options.paths);
+        explorer.setBudget(options.budget);
+        long duration;
+        try (JsonStreamSink sink = new JsonStreamSink(out, appInfo, true)) {
+            explorer.explore(connection.rootContext, sink);
+            duration = System.currentTimeMillis() - startTime;
+            Map<String, Object> statistics = ElementSerializer.createStatistics(
+                explorer.getElementCounts(),
+                explorer.getTextStrategyCounts(),
+                explorer.getTotalElements(),
+                duration,
+                sink.getExplorationDepth()
+            );
+            if (explorer.isTruncated()) {
+                ElementSerializer.addTruncationStatistics(statistics, explorer.getTruncatedBy());
+            }
+            sink.finish(statistics, explorer.isTruncated());
+        }
+        
+        System.out.println("\nExploration complete!");
+        System.out.println("Total elements found: " + explorer.getTotalElements());
+        System.out.println("Duration: " + duration + "ms");
+        if (explorer.isTruncated()) {
+            System.out.println("Stopped early: " + explorer.getTruncatedBy().getKey() + " budget reached (" + options.budget + ")");
+        }
+        if (options.output != null) {
+            System.out.println("Results streamed to: " + options.output);
+        }
+    }
+    
     private static void printUsage() {
         System.out.println("Java UI Inspector - Explore Java application UI structure\n");
         System.out.println("Usage:");
@@ -182,7 +526,24 @@ public class JavaInspector {
         System.out.println("  --title <title>          Connect to application by window title (partial match)");
         System.out.println("  --output <file>          Output JSON file path (default: print to console)");
         System.out.println("  --max-depth <n>          Maximum exploration depth (default: 20)");
+        System.out.println("  --traversal <dfs|bfs>    Tree traversal order (default: dfs)");
+        System.out.println("  --fields <list>          Properties to extract: all (default), layout, structure,");
+        System.out.println("                           or a list of name,description,states,bounds,index,text,value,actions");
         System.out.println("  --include-invisible      Include invisible elements");
+        System.out.println("  --stream                 Write JSON while exploring instead of building the tree first");
+        System.out.println("  --paths                  Include each element's parentPath in the output");
+        System.out.println("  --edt-slice <ms>[,<n>]   Capture on the Swing EDT in slices of at most <ms> ms");
+        System.out.println("                           and <n> elements (default 500), yielding in between");
+        System.out.println("  --deadline <ms>          Stop exploring after <ms> ms and export what was found");
+        System.out.println("  --max-nodes <n>          Stop exploring after <n> elements");
+        System.out.println("  --max-text-bytes <n>     Stop exploring once <n> bytes of text have been extracted");
+        System.out.println("  --pids <pid,pid,...>     Inspect several Java processes concurrently, each into");
+        System.out.println("                           <output>/inspector-<pid>.json (default directory: .)");
+        System.out.println("  --all-java               As --pids, with every Java process of this user");
+        System.out.println("  --parallelism <n>        Processes inspected at a time (default: 4)");
+        System.out.println("  --timeout <ms>           Time allowed per process (default: 60000)");
+        System.out.println("  --ndjson                 Write one JSON line per process, and a summary line, to");
+        System.out.println("                           --output (default: console) instead of one file each");
         System.out.println("  --list                   List all visible windows");
         System.out.println("  --verbose, -v            Enable verbose output");
         System.out.println("  --help, -h               Show this help message\n");
@@ -190,14 +551,27 @@ public class JavaInspector {
         System.out.println("  java -jar JavaInspector.jar --list");
         System.out.println("  java -jar JavaInspector.jar --pid 1234 --output ui.json");
         System.out.println("  java -jar JavaInspector.jar --title Calculator --output calc.json");
+        System.out.println("  java -jar JavaInspector.jar --pid 1234 --fields layout --output bounds.json");
+        System.out.println("  java -jar JavaInspector.jar --all-java --parallelism 8 --ndjson --output fleet.ndjson");
     }
     
     private static class CommandLineOptions {
         String pid;
         String title;
+        List<Integer> pids;
+        boolean allJava = false;
+        int parallelism = DEFAULT_PARALLELISM;
+        long timeoutMs = FleetInspection.DEFAULT_TIMEOUT_MS;
+        boolean ndjson = false;
         String output;
         int maxDepth = DEFAULT_MAX_DEPTH;
+        TraversalOrder traversal = TraversalOrder.DEPTH_FIRST;
+        ExtractionProfile profile = ExtractionProfile.ALL;
         boolean includeInvisible = false;
+        boolean stream = false;
+        boolean paths = false;
+        EdtSliceBudget sliceBudget;
+        TraversalBudget budget = TraversalBudget.UNLIMITED;
         boolean list = false;
         boolean verbose = false;
     }
@@ -1,42 +1,143 @@
 package com.inspector.agent;
 
+import com.inspector.core.AgentSession;
+import com.inspector.core.ChangeTracker;
+import com.inspector.core.EdtSliceBudget;
+import com.inspector.core.ElementQuery;
+import com.inspector.core.ExtractionProfile;
+import com.inspector.core.RawElement;
+import com.inspector.core.Selector;
+import com.inspector.core.SnapshotProcessor;
+import com.inspector.core.TraversalOrder;
 import com.inspector.core.UITreeExplorer;
 import com.inspector.model.ElementData;
+import com.inspector.util.FrameProtocol;
+import com.inspector.util.JsonOutput;
+import com.inspector.util.OutputFiles;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import javax.accessibility.AccessibleContext;
 import java.awt.*;
 import java.io.*;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Bridge that handles communication between the inspector client and the target application.
- * Receives commands via socket and returns AccessibleContext data as JSON.
+ * Receives commands via socket and returns AccessibleContext data as JSON, one line per reply,
+ * or as streamed Smile frames once the client has switched to the binary protocol.
+ *
+ * EXPLORE sends a window's whole tree. For large applications a client can instead fetch it
+ * level by level: EXPLORE_ROOT returns each window's top levels, and EXPAND and GET take the
+ * handle of an element returned earlier and send the levels below it, or the element alone.
+ *
+ * QUERY finds the elements matching a Selector (see ElementQuery) and sends only those, with
+ * their handles, so a client looking for particular controls need not fetch any tree at all.
+ *
+ * SUBSCRIBE sends an element's subtree and then keeps the client's mirror of it current: batches
+ * of changes are pushed as "EVENT" lines (see Subscription), between the replies to any further
+ * commands, until UNSUBSCRIBE or the end of the connection.
+ *
+ * A bridge served by AgentServer first expects "AUTH <token>" with a token granted at attach
+ * time, and closes the connection on anything else. SNAPSHOT may then only write within the
+ * directory granted with the token.
  */
 public class AccessibilityBridge implements Runnable {
     
+    // Handles of the elements sent by EXPLORE_ROOT and EXPAND, shared by all connections
+    private static final NodeRegistry nodes = new NodeRegistry();
+    private static final long DEFAULT_SUBSCRIBE_INTERVAL_MS = 200;
+    
     private final Socket socket;
     private final ObjectMapper mapper;
+    private final Function<String, Path> grants;
+    private final Runnable onClose;
+    // Where SNAPSHOT may write; null when the bridge needs no token
+    private Path outputDir;
+    // Set while the connection speaks the text protocol; events are pushed through it
+    private PrintWriter textOut;
+    private Subscription subscription;
+    private boolean subscriptionStarted;
+    private int idleTimeoutMs;
     
+    /**
+     * A bridge that needs no token, for a socket the caller has already vetted.
+     */
     public AccessibilityBridge(Socket socket) {
+        this(socket, null, null);
+    }
+    
+    /**
+     * grants maps a token to the directory its connection may write to, or to null if the
+     * token was never granted. onClose runs when the connection ends, just before the socket
+     * is closed.
+     */
+    AccessibilityBridge(Socket socket, Function<String, Path> grants, Runnable onClose) {
         this.socket = socket;
-        this.mapper = new ObjectMapper();
+        // Replies carry element trees, as deep as the target's
+        this.mapper = new ObjectMapper(JsonFactory.builder()
+            .streamWriteConstraints(JsonOutput.writeConstraints())
+            .build());
+        this.grants = grants;
+        this.onClose = onClose;
     }
     
     @Override
     public void run() {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+        // Closing the socket below closes these too
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            textOut = out;
+            if (grants != null && !authenticate(in, out)) {
+                return;
+            }
             
             String command;
             while ((command = in.readLine()) != null) {
+                if (command.equals(FrameProtocol.UPGRADE_COMMAND)) {
+                    try {
+                        FrameProtocol.smileMapper();
+                    } catch (LinkageError e) {
+                        // jackson-dataformat-smile is not on the target's classpath
+                        out.println(errorResponse("Binary protocol unavailable"));
+                        continue;
+                    }
+                    // The client waits for this reply, so nothing is left buffered in the reader
+                    out.println("OK " + FrameProtocol.UPGRADE_REPLY);
+                    textOut = null;
+                    serveFrames();
+                    break;
+                }
                 String response = handleCommand(command);
                 out.println(response);
+                if (subscription != null && !subscriptionStarted) {
+                    // Only now, so that no event comes before the reply to SUBSCRIBE
+                    subscription.start();
+                    subscriptionStarted = true;
+                }
             }
             
         } catch (IOException e) {
             System.err.println("AccessibilityBridge: Connection error: " + e.getMessage());
         } finally {
+            if (subscription != null) {
+                subscription.stop();
+            }
+            if (onClose != null) {
+                onClose.run();
+            }
             try {
                 socket.close();
             } catch (IOException e) {
@@ -45,25 +146,127 @@ public class AccessibilityBridge implements Runnable {
         }
     }
     
+    // Read the AUTH line and look up the token's directory; the client waits for the reply
+    private boolean authenticate(BufferedReader in, PrintWriter out) throws IOException {
+        String line = in.readLine();
+        String prefix = AgentSession.AUTH_COMMAND + " ";
+        Path granted = line != null && line.startsWith(prefix) ? grants.apply(line.substring(prefix.length())) : null;
+        if (granted == null) {
+            out.println(errorResponse("Not authorized"));
+            return false;
+        }
+        outputDir = granted;
+        out.println("OK authorized");
+        return true;
+    }
+    
+    /**
+     * Serve the rest of the connection in the framed binary protocol (see FrameProtocol).
+     */
+    private void serveFrames() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), FrameProtocol.CHUNK_SIZE + 16));
+        while (true) {
+            FrameProtocol.Frame request;
+            try {
+                request = FrameProtocol.readFrame(in);
+            } catch (EOFException e) {
+                return;
+            }
+            if (request.type != FrameProtocol.REQUEST) {
+                FrameProtocol.writeFrame(out, request.requestId, FrameProtocol.ERROR, (byte) 0, "Expected a request frame");
+                out.flush();
+                continue;
+            }
+            Object value;
+            try {
+                value = execute(request.text());
+            } catch (Exception e) {
+                FrameProtocol.writeFrame(out, request.requestId, FrameProtocol.ERROR, (byte) 0, errorMessage(e));
+                out.flush();
+                continue;
+            }
+            try {
+                FrameProtocol.writeValue(out, request.requestId, (request.flags & FrameProtocol.FLAG_DEFLATE) != 0, value);
+            } catch (JsonProcessingException e) {
+                // Already reported to the client in an ERROR frame
+                System.err.println("AccessibilityBridge: " + e.getMessage());
+            }
+        }
+    }
+    
     private String handleCommand(String command) {
         try {
-            if (command.startsWith("EXPLORE")) {
-                return handleExplore(command);
-            } else if (command.equals("LIST_WINDOWS")) {
-                return handleListWindows();
-            } else {
-                return errorResponse("Unknown command: " + command);
-            }
+            Object value = execute(command);
+            return "OK " + (value instanceof String ? value : mapper.writeValueAsString(value));
         } catch (Exception e) {
-            return errorResponse("Error processing command: " + e.getMessage());
+            return errorResponse(errorMessage(e));
         }
     }
     
-    private String handleExplore(String command) throws Exception {
-        // Command format: EXPLORE <maxDepth> <includeInvisible>
+    /**
+     * Run a command and return its result: a String (sent as is in the text protocol) or an
+     * object sent as JSON or Smile.
+     */
+    private Object execute(String command) throws Exception {
+        if (command.startsWith("EXPLORE_ROOT")) {
+            return handleExploreRoot(command);
+        } else if (command.startsWith("EXPAND ")) {
+            return handleExpand(command);
+        } else if (command.startsWith("GET ")) {
+            return handleGet(command);
+        } else if (command.startsWith("QUERY ")) {
+            return handleQuery(command);
+        } else if (command.startsWith("SUBSCRIBE ")) {
+            return handleSubscribe(command);
+        } else if (command.equals("UNSUBSCRIBE")) {
+            return handleUnsubscribe();
+        } else if (command.startsWith("EXPLORE")) {
+            return handleExplore(command);
+        } else if (command.startsWith("SNAPSHOT ")) {
+            return handleSnapshot(command);
+        } else if (command.equals("LIST_WINDOWS")) {
+            return handleListWindows();
+        } else {
+            throw new CommandException("Unknown command: " + command);
+        }
+    }
+    
+    private static String errorMessage(Exception e) {
+        return e instanceof CommandException ? e.getMessage() : "Error processing command: " + e.getMessage();
+    }
+    
+    // A failure reported to the client with its message alone
+    private static class CommandException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        CommandException(String message) {
+            super(message);
+        }
+    }
+    
+    private String handleSnapshot(String command) throws Exception {
+        // Command format: SNAPSHOT <agent args>; the same inspection and output file as an attach
+        String agentArgs = command.substring(9);
+        if (outputDir != null) {
+            String output = InspectorAgent.parseAgentArgs(agentArgs).get("output");
+            if (output == null) {
+                Path file = OutputFiles.newSessionOutput(outputDir, String.valueOf(ProcessHandle.current().pid()));
+                agentArgs += (agentArgs.isEmpty() || agentArgs.endsWith(";") ? "" : ";") + "output:" + file;
+            } else if (!Paths.get(output).toAbsolutePath().normalize().startsWith(outputDir)) {
+                throw new CommandException("Output must be within " + outputDir);
+            }
+        }
+        return InspectorAgent.inspect(agentArgs);
+    }
+    
+    private ElementData handleExplore(String command) throws Exception {
+        // Command format: EXPLORE <maxDepth> <includeInvisible> <fields> <sliceMs,sliceNodes>
         String[] parts = command.split(" ");
         int maxDepth = parts.length > 1 ? Integer.parseInt(parts[1]) : 20;
         boolean includeInvisible = parts.length > 2 ? Boolean.parseBoolean(parts[2]) : false;
+        ExtractionProfile profile = parts.length > 3 ? ExtractionProfile.parse(parts[3]) : ExtractionProfile.ALL;
+        EdtSliceBudget sliceBudget = parts.length > 4 ? EdtSliceBudget.parse(parts[4]) : EdtSliceBudget.DEFAULT;
         
         // Get all visible windows
         Window[] windows = Window.getWindows();
@@ -71,29 +274,188 @@ public class AccessibilityBridge implements Runnable {
             if (window.isVisible()) {
                 AccessibleContext ac = window.getAccessibleContext();
                 if (ac != null) {
-                    UITreeExplorer explorer = new UITreeExplorer(maxDepth, includeInvisible);
-                    ElementData rootElement = explorer.explore(ac);
-                    
-                    // Convert to JSON
-                    String json = mapper.writeValueAsString(rootElement);
-                    return "OK " + json;
+                    UITreeExplorer explorer = new UITreeExplorer(maxDepth, includeInvisible, TraversalOrder.DEPTH_FIRST, profile);
+                    // We run inside the target, so read Swing on its EDT without stalling it
+                    return explorer.snapshotOnEdt(ac, sliceBudget);
                 }
             }
         }
         
-        return errorResponse("No accessible windows found");
+        throw new CommandException("No accessible windows found");
     }
     
-    private String handleListWindows() throws Exception {
-        Window[] windows = Window.getWindows();
-        StringBuilder sb = new StringBuilder();
-        sb.append("OK [");
+    /**
+     * The handle EXPAND and GET accept for a context, registering it if it has none yet. Handles
+     * are shared by every connection of this agent.
+     */
+    public static int handleOf(AccessibleContext context) {
+        return nodes.register(context);
+    }
+    
+    private List<ElementData> handleExploreRoot(String command) throws Exception {
+        // Command format: EXPLORE_ROOT <depth> <fields>
+        String[] parts = command.split(" ");
+        int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+        ExtractionProfile profile = parts.length > 2 ? ExtractionProfile.parse(parts[2]) : ExtractionProfile.ALL;
         
-        boolean first = true;
+        List<ElementData> roots = new ArrayList<>();
+        for (Window window : Window.getWindows()) {
+            if (window.isVisible()) {
+                AccessibleContext ac = window.getAccessibleContext();
+                if (ac != null) {
+                    roots.add(exploreWithHandles(ac, depth, profile));
+                }
+            }
+        }
+        return roots;
+    }
+    
+    private ElementData handleExpand(String command) throws Exception {
+        // Command format: EXPAND <handle> <depth> <fields>
+        String[] parts = command.split(" ");
+        AccessibleContext ac = resolve(parts[1]);
+        int depth = parts.length > 2 ? Integer.parseInt(parts[2]) : 1;
+        ExtractionProfile profile = parts.length > 3 ? ExtractionProfile.parse(parts[3]) : ExtractionProfile.ALL;
+        return exploreWithHandles(ac, depth, profile);
+    }
+    
+    private ElementData handleGet(String command) throws Exception {
+        // Command format: GET <handle> <fields>
+        String[] parts = command.split(" ");
+        AccessibleContext ac = resolve(parts[1]);
+        ExtractionProfile profile = parts.length > 2 ? ExtractionProfile.parse(parts[2]) : ExtractionProfile.ALL;
+        return exploreWithHandles(ac, 0, profile);
+    }
+    
+    private List<ElementData> handleQuery(String command) throws Exception {
+        // Command format: QUERY <handle|*> <limit> <maxDepth> <fields> <selector>, the selector taking the rest
+        String[] parts = command.split(" ", 6);
+        if (parts.length < 6) {
+            throw new CommandException("Usage: QUERY <handle|*> <limit> <maxDepth> <fields> <selector>");
+        }
+        List<AccessibleContext> roots = new ArrayList<>();
+        if (parts[1].equals("*")) {
+            for (Window window : Window.getWindows()) {
+                if (window.isVisible() && window.getAccessibleContext() != null) {
+                    roots.add(window.getAccessibleContext());
+                }
+            }
+        } else {
+            roots.add(resolve(parts[1]));
+        }
+        ElementQuery query;
+        try {
+            query = new ElementQuery(Selector.parse(parts[5]), Integer.parseInt(parts[3]), false,
+                                     ExtractionProfile.parse(parts[4]));
+            query.setLimit(Integer.parseInt(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new CommandException(e.getMessage());
+        }
+        
+        List<ElementData> matches = new ArrayList<>();
+        for (RawElement raw : query.findOnEdt(roots, EdtSliceBudget.DEFAULT)) {
+            ElementData element = SnapshotProcessor.toElementData(raw);
+            element.setHandle(nodes.register(raw.getContext()));
+            matches.add(element);
+        }
+        return matches;
+    }
+    
+    private static AccessibleContext resolve(String handle) throws CommandException {
+        AccessibleContext ac;
+        try {
+            ac = nodes.resolve(Integer.parseInt(handle));
+        } catch (NumberFormatException e) {
+            throw new CommandException("Invalid node handle: " + handle);
+        }
+        if (ac == null) {
+            throw new CommandException("Unknown node: " + handle);
+        }
+        return ac;
+    }
+    
+    private ElementData handleSubscribe(String command) throws Exception {
+        // Command format: SUBSCRIBE <handle> <intervalMs> <maxDepth> <fields>
+        if (textOut == null) {
+            throw new CommandException("SUBSCRIBE needs the text protocol");
+        }
+        String[] parts = command.split(" ");
+        AccessibleContext ac = resolve(parts[1]);
+        long intervalMs = parts.length > 2 ? Long.parseLong(parts[2]) : DEFAULT_SUBSCRIBE_INTERVAL_MS;
+        int maxDepth = parts.length > 3 ? Integer.parseInt(parts[3]) : 20;
+        ExtractionProfile profile = parts.length > 4 ? ExtractionProfile.parse(parts[4]) : ExtractionProfile.ALL;
+        if (intervalMs <= 0) {
+            throw new CommandException("Invalid interval: " + intervalMs);
+        }
+        
+        ChangeTracker tracker = new ChangeTracker(ac, maxDepth, false, profile, EdtSliceBudget.DEFAULT);
+        RawElement raw = tracker.start();
+        if (raw == null) {
+            tracker.close();
+            throw new CommandException("Node is no longer accessible");
+        }
+        ElementData root = tracker.getExplorer().process(raw);
+        assignHandles(raw, root);
+        
+        if (subscription != null) {
+            subscription.stop();
+        } else {
+            // A subscriber may listen for a long time without sending anything
+            idleTimeoutMs = socket.getSoTimeout();
+            socket.setSoTimeout(0);
+        }
+        subscription = new Subscription(tracker, nodes, textOut, mapper, intervalMs);
+        subscriptionStarted = false;
+        return root;
+    }
+    
+    private String handleUnsubscribe() throws Exception {
+        if (subscription == null) {
+            throw new CommandException("Not subscribed");
+        }
+        subscription.stop();
+        subscription = null;
+        socket.setSoTimeout(idleTimeoutMs);
+        return "UNSUBSCRIBED";
+    }
+    
+    // Explore depth levels below ac (0 for ac alone) and give every element a handle
+    private static ElementData exploreWithHandles(AccessibleContext ac, int depth, ExtractionProfile profile) throws Exception {
+        UITreeExplorer explorer = new UITreeExplorer(depth, false, TraversalOrder.DEPTH_FIRST, profile);
+        explorer.setKeepContexts(true);
+        RawElement raw = explorer.captureOnEdt(ac, EdtSliceBudget.DEFAULT);
+        if (raw == null) {
+            throw new CommandException("Node is no longer accessible");
+        }
+        ElementData root = explorer.process(raw);
+        assignHandles(raw, root);
+        return root;
+    }
+    
+    // Walk a capture and the tree processed from it together, giving every element its handle
+    private static void assignHandles(RawElement raw, ElementData root) {
+        Deque<RawElement> raws = new ArrayDeque<>();
+        Deque<ElementData> elements = new ArrayDeque<>();
+        raws.push(raw);
+        elements.push(root);
+        while (!raws.isEmpty()) {
+            RawElement next = raws.pop();
+            ElementData element = elements.pop();
+            element.setHandle(nodes.register(next.getContext()));
+            // process() keeps the capture's child order
+            List<RawElement> children = next.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                raws.push(children.get(i));
+                elements.push(element.getChildren().get(i));
+            }
+        }
+    }
+    
+    private List<Map<String, String>> handleListWindows() {
+        Window[] windows = Window.getWindows();
+        List<Map<String, String>> result = new ArrayList<>();
         for (Window window : windows) {
             if (window.isVisible()) {
-                if (!first) sb.append(",");
-                
                 String title = "";
                 if (window instanceof Frame) {
                     title = ((Frame) window).getTitle();
@@ -101,15 +463,13 @@ public class AccessibilityBridge implements Runnable {
                     title = ((Dialog) window).getTitle();
                 }
                 
-                sb.append("{\"title\":\"").append(escapeJson(title))
-                  .append("\",\"class\":\"").append(window.getClass().getName())
-                  .append("\"}");
-                first = false;
+                Map<String, String> info = new LinkedHashMap<>();
+                info.put("title", title != null ? title : "");
+                info.put("class", window.getClass().getName());
+                result.add(info);
             }
         }
-        
-        sb.append("]");
-        return sb.toString();
+        return result;
     }
     
     private String errorResponse(String message) {
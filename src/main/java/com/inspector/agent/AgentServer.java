@@ -0,0 +1,229 @@
+package com.inspector.agent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The agent's socket server: accepts inspector connections and serves each with an
+ * AccessibilityBridge, without letting clients cost the host application more than a bounded
+ * number of threads.
+ *
+ * - At most maxConnections are served at once; a client beyond that is answered with one
+ *   "ERROR" line and disconnected.
+ * - A connection that sends nothing for idleTimeoutMs is closed.
+ * - Connections run on virtual threads when the target JVM has them (JDK 21+), otherwise on a
+ *   pool of at most maxConnections daemon threads that time out when idle.
+ * - shutdown() stops accepting, closes open connections and waits briefly for their threads.
+ *
+ * Only inspectors that attached may use the server: each attach grants a random token and the
+ * directory its output goes to, and a connection must present a granted token before its first
+ * command (see AccessibilityBridge). SNAPSHOT output is then confined to the token's directory.
+ */
+public class AgentServer {
+
+    /** System property in the target JVM overriding DEFAULT_MAX_CONNECTIONS. */
+    public static final String MAX_CONNECTIONS_PROPERTY = "inspector.agent.maxConnections";
+    /** System property in the target JVM overriding DEFAULT_IDLE_TIMEOUT_MS. */
+    public static final String IDLE_TIMEOUT_PROPERTY = "inspector.agent.idleTimeoutMs";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 8;
+    public static final int DEFAULT_IDLE_TIMEOUT_MS = 10 * 60 * 1000;
+
+    private static final long SHUTDOWN_WAIT_MS = 2000;
+    // Pause after a failed accept, doubled while accepts keep failing
+    private static final long MIN_ACCEPT_BACKOFF_MS = 10;
+    private static final long MAX_ACCEPT_BACKOFF_MS = 1000;
+
+    private final ServerSocket serverSocket;
+    private final int idleTimeoutMs;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    // Token of each attach to the directory its sessions may write output to
+    private final Map<String, Path> grants = new ConcurrentHashMap<>();
+    private final Thread acceptThread;
+
+    /**
+     * Bind the server; start() begins accepting. A null bindAddress listens on every interface.
+     */
+    public AgentServer(int port, InetAddress bindAddress, int maxConnections, int idleTimeoutMs) throws IOException {
+        if (maxConnections <= 0 || idleTimeoutMs <= 0) {
+            throw new IllegalArgumentException("maxConnections and idleTimeoutMs must be positive");
+        }
+        this.serverSocket = new ServerSocket(port, 50, bindAddress);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.permits = new Semaphore(maxConnections);
+        this.executor = createExecutor(maxConnections);
+        this.acceptThread = new Thread(this::acceptLoop, "InspectorAgent-server");
+        this.acceptThread.setDaemon(true);
+    }
+
+    /**
+     * Bind the server with the limits configured by MAX_CONNECTIONS_PROPERTY and
+     * IDLE_TIMEOUT_PROPERTY.
+     */
+    public static AgentServer configured(int port, InetAddress bindAddress) throws IOException {
+        return new AgentServer(port, bindAddress,
+            Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS),
+            Integer.getInteger(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_MS));
+    }
+
+    public void start() {
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getActiveConnections() {
+        return connections.size();
+    }
+
+    public boolean isRunning() {
+        return !serverSocket.isClosed();
+    }
+
+    /**
+     * Admit connections presenting token, letting them write SNAPSHOT output within outputDir.
+     */
+    public void grant(String token, Path outputDir) {
+        grants.put(token, outputDir.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Stop accepting, close every open connection and wait up to two seconds for the threads
+     * serving them to finish. A request being answered fails on its closed socket.
+     */
+    public void shutdown() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop() {
+        long backoffMs = MIN_ACCEPT_BACKOFF_MS;
+        while (!serverSocket.isClosed()) {
+            Socket clientSocket;
+            try {
+                clientSocket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                // E.g. out of file descriptors: retrying at once would only spin
+                System.err.println("JavaInspector Agent: Error accepting connection: " + e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_ACCEPT_BACKOFF_MS);
+                continue;
+            }
+            backoffMs = MIN_ACCEPT_BACKOFF_MS;
+            if (!permits.tryAcquire()) {
+                System.err.println("JavaInspector Agent: Refused connection, " + connections.size() + " already open");
+                refuse(clientSocket);
+                continue;
+            }
+            connections.add(clientSocket);
+            try {
+                executor.execute(() -> serve(clientSocket));
+            } catch (RuntimeException e) {
+                // Shutting down
+                release(clientSocket);
+            }
+        }
+    }
+
+    private void serve(Socket clientSocket) {
+        try {
+            clientSocket.setSoTimeout(idleTimeoutMs);
+            InspectorAgent.log("Client connected");
+            new AccessibilityBridge(clientSocket, grants::get, () -> release(clientSocket)).run();
+        } catch (IOException e) {
+            System.err.println("JavaInspector Agent: Connection error: " + e.getMessage());
+        } finally {
+            release(clientSocket);
+        }
+    }
+
+    // Frees the slot before closing, so a client that sees the close can reconnect at once
+    private void release(Socket clientSocket) {
+        if (connections.remove(clientSocket)) {
+            permits.release();
+        }
+        closeQuietly(clientSocket);
+    }
+
+    private static void refuse(Socket clientSocket) {
+        try (Socket socket = clientSocket) {
+            OutputStream out = socket.getOutputStream();
+            out.write("ERROR Too many connections\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            // Client already gone
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    /**
+     * Virtual threads on JDK 21+, looked up reflectively because the agent is built for Java 11;
+     * otherwise a pool of at most maxThreads daemon threads, released after a minute idle.
+     */
+    private static ExecutorService createExecutor(int maxThreads) {
+        try {
+            Method virtual = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // Platform threads below
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), task -> {
+                // Sessions must not keep the target alive on exit
+                Thread thread = new Thread(task, "InspectorAgent-session-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
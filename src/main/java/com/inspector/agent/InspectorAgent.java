@@ -1,9 +1,20 @@
 package com.inspector.agent;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.inspector.core.AgentSession;
+import com.inspector.core.EdtSliceBudget;
+import com.inspector.core.EdtTimeoutException;
+import com.inspector.core.ExtractionProfile;
+import com.inspector.core.TextExtractor;
+import com.inspector.core.TraversalBudget;
+import com.inspector.core.TraversalOrder;
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+import com.inspector.util.JsonOutput;
+import com.inspector.util.OutputFiles;
+
 import java.lang.instrument.Instrumentation;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
 
 /**
  * Java Agent for injecting into target Java processes.
@@ -13,18 +24,30 @@ import java.net.Socket;
  *   java -javaagent:inspector-agent.jar=port:9999 -jar TargetApp.jar
  * 
  * Or via Attach API:
- *   VirtualMachine.attach(pid).loadAgent("inspector-agent.jar", "port:9999");
+ *   VirtualMachine.attach(pid).loadAgent("inspector-agent.jar", "token:<token>;output:/path/to/output.json");
+ *
+ * An attached agent inspects once and then keeps a loopback server running, so that the
+ * inspector can request further inspections over an AgentSession instead of attaching again.
+ * The attach's "token:" admits the session, whose output is confined to the directory of the
+ * attach's output file. The server's connection limit and idle timeout are described in
+ * AgentServer.
  */
 public class InspectorAgent {
     
-    private static ServerSocket serverSocket;
-    private static Thread serverThread;
+    private static AgentServer server;
+    // Incremental explorers kept between attaches, one per window's accessible context
+    private static final java.util.Map<javax.accessibility.AccessibleContext, UITreeExplorer> incrementalExplorers =
+        new java.util.IdentityHashMap<>();
+    
+    // Progress goes to the target's stderr, and only with -Dinspector.agent.verbose=true in the
+    // target: its console is not ours to fill
+    private static final boolean VERBOSE = Boolean.getBoolean("inspector.agent.verbose");
     
     /**
      * Agent entry point when loaded at startup
      */
     public static void premain(String agentArgs, Instrumentation inst) {
-        System.out.println("JavaInspector Agent: Starting in premain mode");
+        log("Starting in premain mode");
         startAgent(agentArgs);
     }
     
@@ -32,149 +55,233 @@ public class InspectorAgent {
      * Agent entry point when loaded via Attach API
      */
     public static void agentmain(String agentArgs, Instrumentation inst) {
-        System.out.println("=== JavaInspector Agent: Starting inspection ===");
-        System.out.println("Agent args: " + agentArgs);
-        System.out.println("Working directory: " + System.getProperty("user.dir"));
-        
+        // Keep serving after this attach, so that later inspections need not attach again
+        startSessionServer();
+        grantSession(parseAgentArgs(agentArgs));
         try {
-            // Determine output file - use absolute path to avoid directory issues
-            String outputFile = System.getProperty("user.dir") + java.io.File.separator + "inspector-agent-output.json";
-            if (agentArgs != null && agentArgs.startsWith("output:")) {
-                outputFile = agentArgs.substring(7);
+            inspect(agentArgs);
+        } catch (Exception e) {
+            System.err.println("JavaInspector Agent: ERROR during inspection: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Inspect every visible window and write the result to the output file named in agentArgs.
+     * Runs once per attach, and again for each SNAPSHOT request of a session. Returns the output path.
+     */
+    static synchronized String inspect(String agentArgs) throws Exception {
+        log("Starting inspection");
+        log("Working directory: " + System.getProperty("user.dir"));
+        
+        java.util.Map<String, String> options = parseAgentArgs(agentArgs);
+        
+        // Determine output file - without one, a file of this inspection's own, so that
+        // concurrent inspections never write to the same file
+        String outputFile = options.containsKey("output")
+            ? options.get("output")
+            : OutputFiles.newSessionOutput(String.valueOf(ProcessHandle.current().pid())).toString();
+        ExtractionProfile profile = ExtractionProfile.parse(options.get("fields"));
+        // With "slice:<ms>,<nodes>", Swing trees are captured on the EDT in bounded slices
+        EdtSliceBudget sliceBudget = options.containsKey("slice") ? EdtSliceBudget.parse(options.get("slice")) : null;
+        // With "depth:<n>", trees are explored n levels deep
+        int maxDepth = options.containsKey("depth")
+            ? Integer.parseInt(options.get("depth").trim()) : UITreeExplorer.DEFAULT_MAX_DEPTH;
+        // With "budget:<deadlineMs>,<nodes>,<textBytes>", Swing captures stop early when a limit is
+        // reached. The budget is enforced by UITreeExplorer, so it implies a sliced capture.
+        TraversalBudget traversalBudget = options.containsKey("budget")
+            ? TraversalBudget.parse(options.get("budget")) : TraversalBudget.UNLIMITED;
+        if (sliceBudget == null && !traversalBudget.isUnlimited()) {
+            sliceBudget = EdtSliceBudget.DEFAULT;
+        }
+        // With "incremental:true", sliced captures reuse what the previous attach saw of each window
+        boolean incremental = sliceBudget != null && Boolean.parseBoolean(options.get("incremental"));
+        // With "pretty:false", the output is written without indentation
+        boolean pretty = !"false".equals(options.get("pretty"));
+        
+        log("Output file path: " + outputFile);
+        log("Extraction profile: " + profile);
+        if (sliceBudget != null) {
+            log("EDT slice budget: " + sliceBudget);
+        }
+        if (incremental) {
+            log("Incremental exploration: " + incrementalExplorers.size() + " cached window(s)");
+        }
+        
+        // Collect all windows from both AWT/Swing and JavaFX
+        java.util.List<WindowInfo> allWindows = new java.util.ArrayList<>();
+        
+        // 1. Find AWT/Swing windows
+        java.awt.Window[] awtWindows = java.awt.Window.getWindows();
+        log("Found " + awtWindows.length + " AWT/Swing windows");
+        for (java.awt.Window window : awtWindows) {
+            if (window.isVisible()) {
+                allWindows.add(new WindowInfo(window));
             }
+        }
+        
+        // 2. Find JavaFX windows
+        try {
+            log("Attempting to detect JavaFX windows...");
+            Class<?> platformClass = Class.forName("javafx.application.Platform");
+            log("JavaFX Platform class found");
             
-            System.out.println("Output file path: " + outputFile);
-            
-            // Delete old output file to prevent stale data
-            java.io.File oldFile = new java.io.File(outputFile);
-            if (oldFile.exists()) {
-                boolean deleted = oldFile.delete();
-                System.out.println("JavaInspector Agent: Deleted old output file: " + deleted);
-            }
+            Class<?> stageClass = Class.forName("javafx.stage.Stage");
+            Class<?> windowClass = Class.forName("javafx.stage.Window");
+            log("JavaFX Window classes loaded");
             
-            // Collect all windows from both AWT/Swing and JavaFX
-            java.util.List<WindowInfo> allWindows = new java.util.ArrayList<>();
+            // Get all JavaFX windows using reflection
+            java.lang.reflect.Method getWindowsMethod = windowClass.getMethod("getWindows");
+            log("Found getWindows() method");
             
-            // 1. Find AWT/Swing windows
-            java.awt.Window[] awtWindows = java.awt.Window.getWindows();
-            System.out.println("JavaInspector Agent: Found " + awtWindows.length + " AWT/Swing windows");
-            for (java.awt.Window window : awtWindows) {
-                if (window.isVisible()) {
-                    allWindows.add(new WindowInfo(window));
-                }
-            }
+            Object windowsList = getWindowsMethod.invoke(null);
+            log("getWindows() returned: " + windowsList);
             
-            // 2. Find JavaFX windows
-            try {
-                System.out.println("JavaInspector Agent: Attempting to detect JavaFX windows...");
-                Class<?> platformClass = Class.forName("javafx.application.Platform");
-                System.out.println("JavaInspector Agent: JavaFX Platform class found");
-                
-                Class<?> stageClass = Class.forName("javafx.stage.Stage");
-                Class<?> windowClass = Class.forName("javafx.stage.Window");
-                System.out.println("JavaInspector Agent: JavaFX Window classes loaded");
-                
-                // Get all JavaFX windows using reflection
-                java.lang.reflect.Method getWindowsMethod = windowClass.getMethod("getWindows");
-                System.out.println("JavaInspector Agent: Found getWindows() method");
+            if (windowsList instanceof javafx.collections.ObservableList) {
+                javafx.collections.ObservableList<?> fxWindows = (javafx.collections.ObservableList<?>) windowsList;
+                log("Found " + fxWindows.size() + " JavaFX windows (ObservableList)");
                 
-                Object windowsList = getWindowsMethod.invoke(null);
-                System.out.println("JavaInspector Agent: getWindows() returned: " + windowsList);
-                
-                if (windowsList instanceof javafx.collections.ObservableList) {
-                    javafx.collections.ObservableList<?> fxWindows = (javafx.collections.ObservableList<?>) windowsList;
-                    System.out.println("JavaInspector Agent: Found " + fxWindows.size() + " JavaFX windows (ObservableList)");
+                for (Object fxWindow : fxWindows) {
+                    log("Checking window: " + fxWindow.getClass().getName());
+                    java.lang.reflect.Method isShowingMethod = windowClass.getMethod("isShowing");
+                    boolean isShowing = (Boolean) isShowingMethod.invoke(fxWindow);
+                    log("Window showing: " + isShowing);
                     
-                    for (Object fxWindow : fxWindows) {
-                        System.out.println("JavaInspector Agent: Checking window: " + fxWindow.getClass().getName());
-                        java.lang.reflect.Method isShowingMethod = windowClass.getMethod("isShowing");
-                        boolean isShowing = (Boolean) isShowingMethod.invoke(fxWindow);
-                        System.out.println("JavaInspector Agent: Window showing: " + isShowing);
-                        
-                        if (isShowing) {
-                            allWindows.add(new WindowInfo(fxWindow, true));
-                            System.out.println("JavaInspector Agent: Added JavaFX window to list");
-                        }
+                    if (isShowing) {
+                        allWindows.add(new WindowInfo(fxWindow, true));
+                        log("Added JavaFX window to list");
                     }
-                } else if (windowsList instanceof java.util.List) {
-                    java.util.List<?> fxWindows = (java.util.List<?>) windowsList;
-                    System.out.println("JavaInspector Agent: Found " + fxWindows.size() + " JavaFX windows (List)");
+                }
+            } else if (windowsList instanceof java.util.List) {
+                java.util.List<?> fxWindows = (java.util.List<?>) windowsList;
+                log("Found " + fxWindows.size() + " JavaFX windows (List)");
+                
+                for (Object fxWindow : fxWindows) {
+                    java.lang.reflect.Method isShowingMethod = windowClass.getMethod("isShowing");
+                    boolean isShowing = (Boolean) isShowingMethod.invoke(fxWindow);
                     
-                    for (Object fxWindow : fxWindows) {
-                        java.lang.reflect.Method isShowingMethod = windowClass.getMethod("isShowing");
-                        boolean isShowing = (Boolean) isShowingMethod.invoke(fxWindow);
-                        
-                        if (isShowing) {
-                            allWindows.add(new WindowInfo(fxWindow, true));
-                        }
+                    if (isShowing) {
+                        allWindows.add(new WindowInfo(fxWindow, true));
                     }
-                } else {
-                    System.out.println("JavaInspector Agent: getWindows() returned unexpected type: " + 
-                        (windowsList != null ? windowsList.getClass().getName() : "null"));
                 }
-            } catch (ClassNotFoundException e) {
-                System.out.println("JavaInspector Agent: JavaFX not found in classpath: " + e.getMessage());
-            } catch (Exception e) {
-                System.out.println("JavaInspector Agent: Error inspecting JavaFX windows: " + e.getClass().getName() + ": " + e.getMessage());
-                e.printStackTrace();
+            } else {
+                log("getWindows() returned unexpected type: " + 
+                    (windowsList != null ? windowsList.getClass().getName() : "null"));
             }
-            
-            System.out.println("JavaInspector Agent: Total visible windows: " + allWindows.size());
-            
-            if (allWindows.isEmpty()) {
-                System.out.println("JavaInspector Agent: WARNING - No visible windows found");
-                // Write empty result instead of leaving stale data
-                java.io.PrintWriter writer = new java.io.PrintWriter(new java.io.FileWriter(outputFile));
-                writer.println("{");
-                writer.println("  \"timestamp\": \"" + new java.util.Date() + "\",");
-                writer.println("  \"targetPID\": \"" + java.lang.management.ManagementFactory.getRuntimeMXBean().getName() + "\",");
-                writer.println("  \"error\": \"No AWT/Swing/JavaFX windows found in target process. This may be a non-GUI Java application or the UI has not been initialized yet.\",");
-                writer.println("  \"totalWindows\": 0,");
-                writer.println("  \"windows\": []");
-                writer.println("}");
-                writer.close();
-                return;
+        } catch (ClassNotFoundException e) {
+            log("JavaFX not found in classpath: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("JavaInspector Agent: Error inspecting JavaFX windows: " + e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        log("Total visible windows: " + allWindows.size());
+        
+        if (allWindows.isEmpty()) {
+            log("No visible windows found");
+            // Write empty result instead of leaving stale data
+            try (OutputFiles.PendingOutput output = OutputFiles.begin(java.nio.file.Paths.get(outputFile));
+                 JsonGenerator gen = JsonOutput.createGenerator(output.getPath(), pretty)) {
+                gen.writeStartObject();
+                gen.writeStringField("timestamp", new java.util.Date().toString());
+                gen.writeStringField("targetPID", java.lang.management.ManagementFactory.getRuntimeMXBean().getName());
+                gen.writeStringField("error", "No AWT/Swing/JavaFX windows found in target process. This may be a non-GUI Java application or the UI has not been initialized yet.");
+                gen.writeNumberField("totalWindows", 0);
+                gen.writeArrayFieldStart("windows");
+                gen.writeEndArray();
+                gen.writeEndObject();
+                gen.close();
+                output.complete();
             }
-            
-            // Inspect and write detailed UI tree   
-            java.io.PrintWriter writer = new java.io.PrintWriter(new java.io.FileWriter(outputFile));
-            writer.println("{");
-            writer.println("  \"timestamp\": \"" + new java.util.Date() + "\",");
-            writer.println("  \"targetPID\": \"" + java.lang.management.ManagementFactory.getRuntimeMXBean().getName() + "\",");
-            writer.println("  \"totalWindows\": " + allWindows.size() + ",");
-            writer.println("  \"windows\": [");
-            
-            for (int i = 0; i < allWindows.size(); i++) {
-                WindowInfo windowInfo = allWindows.get(i);
-                
-                writer.println("    {");
-                writer.println("      \"visible\": true,");
-                writer.println("      \"class\": \"" + windowInfo.getClassName() + "\",");
-                writer.println("      \"type\": \"" + windowInfo.getType() + "\",");
-                writer.println("      \"title\": \"" + escapeJson(windowInfo.getTitle()) + "\",");
+            return outputFile;
+        }
+        
+        // Inspect and write detailed UI tree   
+        // Written next to the output and renamed into place, so readers never see a partial file
+        int edtSlices = 0;
+        long maxEdtStallNanos = 0;
+        TraversalBudget.Limit truncatedBy = null;
+        try (OutputFiles.PendingOutput output = OutputFiles.begin(java.nio.file.Paths.get(outputFile));
+             JsonGenerator gen = JsonOutput.createGenerator(output.getPath(), pretty)) {
+            gen.writeStartObject();
+            gen.writeStringField("timestamp", new java.util.Date().toString());
+            gen.writeStringField("targetPID", java.lang.management.ManagementFactory.getRuntimeMXBean().getName());
+            gen.writeNumberField("totalWindows", allWindows.size());
+            gen.writeArrayFieldStart("windows");
+            
+            for (WindowInfo windowInfo : allWindows) {
+                gen.writeStartObject();
+                gen.writeBooleanField("visible", true);
+                gen.writeStringField("class", windowInfo.getClassName());
+                gen.writeStringField("type", windowInfo.getType());
+                gen.writeStringField("title", windowInfo.getTitle());
                 
                 javax.accessibility.AccessibleContext ac = windowInfo.getAccessibleContext();
-                if (ac != null) {
-                    writer.println("      \"uiTree\": ");
-                    writeAccessibleTree(writer, ac, 8, 0, 20);
+                gen.writeFieldName("uiTree");
+                if (ac instanceof JavaFXAccessibleContextWrapper) {
+                    // Always sliced on the FX thread, with the requested budget or the default one
+                    writeJavaFXSceneGraph(gen, ((JavaFXAccessibleContextWrapper) ac).getFxWindow(), 0, maxDepth,
+                                          sliceBudget != null ? sliceBudget : EdtSliceBudget.DEFAULT);
+                } else if (ac != null && sliceBudget != null) {
+                    UITreeExplorer explorer = incremental
+                        ? incrementalExplorer(ac, maxDepth, profile)
+                        : new UITreeExplorer(maxDepth, true, TraversalOrder.DEPTH_FIRST, profile);
+                    explorer.setBudget(traversalBudget);
+                    ElementData snapshot;
+                    try {
+                        snapshot = explorer.snapshotOnEdt(ac, sliceBudget);
+                    } catch (EdtTimeoutException e) {
+                        // The EDT is blocked: report this window and go on with the others. Its
+                        // incremental explorer saw a cancelled capture and starts over next time.
+                        if (incremental) {
+                            discardIncrementalExplorer(ac);
+                        }
+                        gen.writeStartObject();
+                        gen.writeStringField("error", e.getMessage());
+                        gen.writeEndObject();
+                        gen.writeEndObject();
+                        continue;
+                    }
+                    if (incremental) {
+                        log("Reused " + explorer.getReusedElements() + " of "
+                            + explorer.getTotalElements() + " elements for " + windowInfo.getTitle());
+                    }
+                    edtSlices += explorer.getEdtSlices();
+                    maxEdtStallNanos = Math.max(maxEdtStallNanos, explorer.getMaxEdtStallNanos());
+                    if (explorer.isTruncated() && truncatedBy == null) {
+                        truncatedBy = explorer.getTruncatedBy();
+                    }
+                    writeElementTree(gen, snapshot);
+                } else if (ac != null) {
+                    // An AWT window: the Accessible its context came from
+                    writeAccessibleTree(gen, (javax.accessibility.Accessible) windowInfo.getRawWindow(), ac, 0,
+                                        maxDepth, profile);
                 } else {
-                    writer.println("      \"uiTree\": null");
+                    gen.writeNull();
                 }
-                
-                writer.println("    }" + (i < allWindows.size() - 1 ? "," : ""));
+                gen.writeEndObject();
             }
             
-            writer.println("  ]");
-            writer.println("}");
-            writer.close();
-            
-            System.out.println("JavaInspector Agent: Full UI tree written to: " + new java.io.File(outputFile).getAbsolutePath());
-            System.out.println("=== JavaInspector Agent: Inspection complete ===");
-            
-        } catch (Exception e) {
-            System.err.println("JavaInspector Agent: ERROR during inspection: " + e.getMessage());
-            e.printStackTrace();
+            if (incremental) {
+                releaseIncrementalExplorers(allWindows);
+            }
+            gen.writeEndArray();
+            if (sliceBudget != null) {
+                gen.writeNumberField("edtSlices", edtSlices);
+                gen.writeNumberField("edtMaxStallMs", maxEdtStallNanos / 1_000_000.0);
+            }
+            if (truncatedBy != null) {
+                gen.writeBooleanField("truncated", true);
+                gen.writeStringField("truncatedBy", truncatedBy.getKey());
+            }
+            gen.writeEndObject();
+            gen.close();
+            output.complete();
         }
+        
+        log("Full UI tree written to: " + new java.io.File(outputFile).getAbsolutePath());
+        log("Inspection complete");
+        return outputFile;
     }
     
     // Helper class to unify AWT/Swing and JavaFX windows
@@ -281,166 +388,113 @@ public class InspectorAgent {
         }
     }
     
-    private static void writeJavaFXSceneGraph(java.io.PrintWriter writer, Object fxWindow, int indent, int depth, int maxDepth) {
+    private static void writeJavaFXSceneGraph(JsonGenerator gen, Object fxWindow, int depth, int maxDepth,
+                                              EdtSliceBudget budget) throws IOException {
         if (fxWindow == null || depth > maxDepth) {
-            writer.println("null");
+            gen.writeNull();
             return;
         }
         
-        String indentStr = " ".repeat(indent);
+        // Read on the FX thread in slices; only writing happens here
+        JavaFXSceneCapture.FxWindow window;
         try {
-            writer.println("{");
-            
-            // Get Stage properties using reflection
-            Class<?> stageClass = fxWindow.getClass();
-            
-            // Role
-            writer.println(indentStr + "  \"role\": \"frame\",");
-            
-            // Title
-            java.lang.reflect.Method getTitleMethod = stageClass.getMethod("getTitle");
-            String title = (String) getTitleMethod.invoke(fxWindow);
-            writer.println(indentStr + "  \"name\": \"" + escapeJson(title) + "\",");
-            writer.println(indentStr + "  \"description\": \"JavaFX Stage\",");
-            writer.println(indentStr + "  \"className\": \"" + escapeJson(stageClass.getName()) + "\",");
-            
-            // Bounds (Stage position and size)
-            java.lang.reflect.Method getXMethod = stageClass.getMethod("getX");
-            java.lang.reflect.Method getYMethod = stageClass.getMethod("getY");
-            java.lang.reflect.Method getWidthMethod = stageClass.getMethod("getWidth");
-            java.lang.reflect.Method getHeightMethod = stageClass.getMethod("getHeight");
-            
-            double x = (Double) getXMethod.invoke(fxWindow);
-            double y = (Double) getYMethod.invoke(fxWindow);
-            double width = (Double) getWidthMethod.invoke(fxWindow);
-            double height = (Double) getHeightMethod.invoke(fxWindow);
-            
-            writer.println(indentStr + "  \"bounds\": {");
-            writer.println(indentStr + "    \"x\": " + (int)x + ",");
-            writer.println(indentStr + "    \"y\": " + (int)y + ",");
-            writer.println(indentStr + "    \"width\": " + (int)width + ",");
-            writer.println(indentStr + "    \"height\": " + (int)height);
-            writer.println(indentStr + "  },");
-            
-            writer.println(indentStr + "  \"indexInParent\": -1,");
-            writer.println(indentStr + "  \"states\": [\"enabled\", \"visible\", \"showing\"],");
-            writer.println(indentStr + "  \"actions\": [],");
-            writer.println(indentStr + "  \"text\": null,");
-            writer.println(indentStr + "  \"value\": null,");
-            
-            // Get Scene and traverse children
-            java.lang.reflect.Method getSceneMethod = stageClass.getMethod("getScene");
-            Object scene = getSceneMethod.invoke(fxWindow);
-            
-            if (scene != null && depth < maxDepth) {
-                Class<?> sceneClass = scene.getClass();
-                java.lang.reflect.Method getRootMethod = sceneClass.getMethod("getRoot");
-                Object root = getRootMethod.invoke(scene);
-                
-                if (root != null) {
-                    writer.println(indentStr + "  \"childCount\": 1,");
-                    writer.println(indentStr + "  \"children\": [");
-                    writeJavaFXNode(writer, root, indent + 4, depth + 1, maxDepth, (int)x, (int)y);
-                    writer.println(indentStr + "  ]");
-                } else {
-                    writer.println(indentStr + "  \"childCount\": 0,");
-                    writer.println(indentStr + "  \"children\": []");
-                }
-            } else {
-                writer.println(indentStr + "  \"childCount\": 0,");
-                writer.println(indentStr + "  \"children\": []");
-            }
-            
-            writer.println(indentStr + "}");
-            
-        } catch (Exception e) {
-            writer.println(indentStr + "\"error\": \"Failed to traverse JavaFX scene: " + e.getMessage() + "\"");
-            writer.println(indentStr + "}");
-        }
+            window = JavaFXSceneCapture.capture(fxWindow, depth, maxDepth, budget);
+            log("Captured JavaFX scene in " + window.slices
+                + " FX slice(s), longest " + (window.maxSliceNanos / 1_000_000.0) + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            window = JavaFXSceneCapture.FxWindow.failed("interrupted");
+        } catch (RuntimeException e) {
+            // Including an FX thread too busy or blocked to finish within the budget's timeout
+            window = JavaFXSceneCapture.FxWindow.failed(e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        writeJavaFXWindow(gen, window);
     }
     
-    private static void writeJavaFXNode(java.io.PrintWriter writer, Object node, int indent, int depth, int maxDepth, int windowX, int windowY) {
-        if (node == null || depth > maxDepth) {
-            writer.println("null");
+    /**
+     * Write a captured JavaFX window in the same layout as writeAccessibleTree.
+     */
+    static void writeJavaFXWindow(JsonGenerator gen, JavaFXSceneCapture.FxWindow window) throws IOException {
+        gen.writeStartObject();
+        if (window.error != null) {
+            gen.writeStringField("error", "Failed to traverse JavaFX scene: " + window.error);
+            gen.writeEndObject();
             return;
         }
         
-        String indentStr = " ".repeat(indent);
-        try {
-            writer.println(indentStr + "{");
-            
-            Class<?> nodeClass = node.getClass();
-            
-            // Determine role based on class name
-            String className = nodeClass.getSimpleName();
-            String role = determineJavaFXRole(className);
-            writer.println(indentStr + "  \"role\": \"" + role + "\",");
-            
-            // Get ID or styleClass as name
-            java.lang.reflect.Method getIdMethod = nodeClass.getMethod("getId");
-            String id = (String) getIdMethod.invoke(node);
-            writer.println(indentStr + "  \"name\": \"" + escapeJson(id != null ? id : className) + "\",");
-            writer.println(indentStr + "  \"description\": null,");
-            writer.println(indentStr + "  \"className\": \"" + escapeJson(nodeClass.getName()) + "\",");
-            
-            // Get bounds using layoutBounds
-            java.lang.reflect.Method getBoundsInParentMethod = nodeClass.getMethod("getBoundsInParent");
-            Object bounds = getBoundsInParentMethod.invoke(node);
-            
-            Class<?> boundsClass = bounds.getClass();
-            java.lang.reflect.Method getMinXMethod = boundsClass.getMethod("getMinX");
-            java.lang.reflect.Method getMinYMethod = boundsClass.getMethod("getMinY");
-            java.lang.reflect.Method getWidthMethod = boundsClass.getMethod("getWidth");
-            java.lang.reflect.Method getHeightMethod = boundsClass.getMethod("getHeight");
-            
-            int x = ((Double)getMinXMethod.invoke(bounds)).intValue();
-            int y = ((Double)getMinYMethod.invoke(bounds)).intValue();
-            int width = ((Double)getWidthMethod.invoke(bounds)).intValue();
-            int height = ((Double)getHeightMethod.invoke(bounds)).intValue();
-            
-            writer.println(indentStr + "  \"bounds\": {");
-            writer.println(indentStr + "    \"x\": " + x + ",");
-            writer.println(indentStr + "    \"y\": " + y + ",");
-            writer.println(indentStr + "    \"width\": " + width + ",");
-            writer.println(indentStr + "    \"height\": " + height);
-            writer.println(indentStr + "  },");
-            
-            writer.println(indentStr + "  \"indexInParent\": 0,");
-            writer.println(indentStr + "  \"states\": [\"enabled\", \"visible\"],");
-            writer.println(indentStr + "  \"actions\": [],");
-            
-            // Try to get text content
-            String text = getJavaFXText(node, nodeClass);
-            writer.println(indentStr + "  \"text\": " + (text != null ? "\"" + escapeJson(text) + "\"" : "null") + ",");
-            writer.println(indentStr + "  \"value\": null,");
-            
-            // Get children
-            java.util.List<?> children = getJavaFXChildren(node, nodeClass);
-            writer.println(indentStr + "  \"childCount\": " + (children != null ? children.size() : 0) + ",");
-            
-            if (children != null && !children.isEmpty() && depth < maxDepth) {
-                writer.println(indentStr + "  \"children\": [");
-                for (int i = 0; i < children.size(); i++) {
-                    writeJavaFXNode(writer, children.get(i), indent + 4, depth + 1, maxDepth, windowX, windowY);
-                    if (i < children.size() - 1) {
-                        writer.println(",");
-                    }
-                }
-                writer.println();
-                writer.println(indentStr + "  ]");
-            } else {
-                writer.println(indentStr + "  \"children\": []");
+        gen.writeStringField("role", "frame");
+        JsonOutput.writeString(gen, "name", window.title);
+        gen.writeStringField("description", "JavaFX Stage");
+        JsonOutput.writeString(gen, "className", window.className);
+        JsonOutput.writeBounds(gen, window.x, window.y, window.width, window.height);
+        gen.writeNumberField("indexInParent", -1);
+        JsonOutput.writeStrings(gen, "states", java.util.Arrays.asList("enabled", "visible", "showing"));
+        JsonOutput.writeStrings(gen, "actions", null);
+        gen.writeNullField("text");
+        gen.writeNullField("value");
+        
+        gen.writeNumberField("childCount", window.root != null ? 1 : 0);
+        gen.writeArrayFieldStart("children");
+        if (window.root != null) {
+            writeJavaFXNode(gen, window.root);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+    
+    // Iterative, with the children left to write of each open node on a stack: the depth comes
+    // from the agent's arguments, and the target's thread must not run out of stack
+    private static void writeJavaFXNode(JsonGenerator gen, JavaFXSceneCapture.FxNode root) throws IOException {
+        java.util.Deque<java.util.Iterator<JavaFXSceneCapture.FxNode>> open = new java.util.ArrayDeque<>();
+        if (startJavaFXNode(gen, root)) {
+            open.push(root.getChildren().iterator());
+        }
+        while (!open.isEmpty()) {
+            java.util.Iterator<JavaFXSceneCapture.FxNode> children = open.peek();
+            if (!children.hasNext()) {
+                gen.writeEndArray();
+                gen.writeEndObject();
+                open.pop();
+                continue;
+            }
+            JavaFXSceneCapture.FxNode child = children.next();
+            if (startJavaFXNode(gen, child)) {
+                open.push(child.getChildren().iterator());
             }
-            
-            writer.println(indentStr + "}");
-            
-        } catch (Exception e) {
-            writer.println(indentStr + "\"error\": \"" + e.getMessage() + "\"");
-            writer.println(indentStr + "}");
         }
     }
     
-    private static String determineJavaFXRole(String className) {
+    // Write node up to its open children array and return true, or write all of it and return false
+    private static boolean startJavaFXNode(JsonGenerator gen, JavaFXSceneCapture.FxNode node) throws IOException {
+        if (node == null) {
+            gen.writeNull();
+            return false;
+        }
+        
+        gen.writeStartObject();
+        if (node.error != null) {
+            gen.writeStringField("error", node.error);
+            gen.writeEndObject();
+            return false;
+        }
+        
+        gen.writeStringField("role", node.role);
+        JsonOutput.writeString(gen, "name", node.name);
+        gen.writeNullField("description");
+        JsonOutput.writeString(gen, "className", node.className);
+        JsonOutput.writeBounds(gen, node.x, node.y, node.width, node.height);
+        gen.writeNumberField("indexInParent", 0);
+        JsonOutput.writeStrings(gen, "states", java.util.Arrays.asList("enabled", "visible"));
+        JsonOutput.writeStrings(gen, "actions", null);
+        JsonOutput.writeString(gen, "text", node.text);
+        gen.writeNullField("value");
+        gen.writeNumberField("childCount", node.childCount);
+        
+        gen.writeArrayFieldStart("children");
+        return true;
+    }
+    
+    static String determineJavaFXRole(String className) {
         if (className.contains("Button")) return "push button";
         if (className.contains("Label")) return "label";
         if (className.contains("TextField")) return "text";
@@ -460,217 +514,343 @@ public class InspectorAgent {
         return "unknown";
     }
     
-    private static String getJavaFXText(Object node, Class<?> nodeClass) {
-        try {
-            java.lang.reflect.Method getTextMethod = nodeClass.getMethod("getText");
-            Object text = getTextMethod.invoke(node);
-            return text != null ? text.toString() : null;
-        } catch (Exception e) {
-            return null;
+    // An accessible whose children are being written
+    private static final class AccessibleFrame {
+        final javax.accessibility.AccessibleContext ac;
+        final int depth;
+        final int childCount;
+        int next;
+        
+        AccessibleFrame(javax.accessibility.AccessibleContext ac, int depth, int childCount) {
+            this.ac = ac;
+            this.depth = depth;
+            this.childCount = childCount;
         }
     }
     
-    private static java.util.List<?> getJavaFXChildren(Object node, Class<?> nodeClass) {
-        try {
-            // Try getChildren() for Parent nodes
-            java.lang.reflect.Method getChildrenMethod = nodeClass.getMethod("getChildrenUnmodifiable");
-            Object children = getChildrenMethod.invoke(node);
-            if (children instanceof java.util.List) {
-                return (java.util.List<?>) children;
+    /**
+     * Write the tree below ac, the context of owner. The owner lets text be read straight from a
+     * Swing text component's document. Iterative, with the open elements on a stack: the depth
+     * comes from the agent's arguments, and the target's thread must not run out of stack.
+     */
+    private static void writeAccessibleTree(JsonGenerator gen, javax.accessibility.Accessible owner,
+                                            javax.accessibility.AccessibleContext ac, int depth, int maxDepth,
+                                            ExtractionProfile profile) throws IOException {
+        java.util.Deque<AccessibleFrame> open = new java.util.ArrayDeque<>();
+        AccessibleFrame root = startAccessible(gen, owner, ac, depth, maxDepth, profile);
+        if (root != null) {
+            open.push(root);
+        }
+        while (!open.isEmpty()) {
+            AccessibleFrame frame = open.peek();
+            if (frame.next == frame.childCount) {
+                gen.writeEndArray();
+                gen.writeEndObject();
+                open.pop();
+                continue;
+            }
+            javax.accessibility.Accessible child = frame.ac.getAccessibleChild(frame.next++);
+            if (child != null) {
+                AccessibleFrame started = startAccessible(gen, child, child.getAccessibleContext(), frame.depth + 1,
+                                                          maxDepth, profile);
+                if (started != null) {
+                    open.push(started);
+                }
             }
-        } catch (Exception e) {
-            // Ignore
         }
-        return null;
     }
     
-    private static void writeAccessibleTree(java.io.PrintWriter writer, javax.accessibility.AccessibleContext ac, int indent, int depth, int maxDepth) {
+    // Write ac up to its open children array and return its frame, or write all of it and return null
+    private static AccessibleFrame startAccessible(JsonGenerator gen, javax.accessibility.Accessible owner,
+                                                   javax.accessibility.AccessibleContext ac, int depth, int maxDepth,
+                                                   ExtractionProfile profile) throws IOException {
         // Check if this is a JavaFX window wrapper
         if (ac instanceof JavaFXAccessibleContextWrapper) {
-            writeJavaFXSceneGraph(writer, ((JavaFXAccessibleContextWrapper) ac).getFxWindow(), indent, depth, maxDepth);
-            return;
+            writeJavaFXSceneGraph(gen, ((JavaFXAccessibleContextWrapper) ac).getFxWindow(), depth, maxDepth,
+                                  EdtSliceBudget.DEFAULT);
+            return null;
         }
         
         if (ac == null || depth > maxDepth) {
-            writer.println("null");
-            return;
+            gen.writeNull();
+            return null;
         }
         
-        String indentStr = " ".repeat(indent);
-        writer.println("{");
+        gen.writeStartObject();
         
         // Basic properties
-        writer.println(indentStr + "  \"role\": \"" + escapeJson(String.valueOf(ac.getAccessibleRole())) + "\",");
-        writer.println(indentStr + "  \"name\": \"" + escapeJson(ac.getAccessibleName()) + "\",");
-        writer.println(indentStr + "  \"description\": \"" + escapeJson(ac.getAccessibleDescription()) + "\",");
-        
-        // Class name
-        Object component = ac.getAccessibleComponent();
-        if (component != null) {
-            writer.println(indentStr + "  \"className\": \"" + component.getClass().getName() + "\",");
-        } else {
-            writer.println(indentStr + "  \"className\": \"unknown\",");
-        }
-        
-        // Bounds (coordinates and size)
-        javax.accessibility.AccessibleComponent accessibleComp = ac.getAccessibleComponent();
+        gen.writeStringField("role", String.valueOf(ac.getAccessibleRole()));
+        JsonOutput.writeString(gen, "name", profile.includes(ExtractionProfile.Field.NAME) ? ac.getAccessibleName() : null);
+        JsonOutput.writeString(gen, "description",
+                               profile.includes(ExtractionProfile.Field.DESCRIPTION) ? ac.getAccessibleDescription() : null);
+        
+        // Class name and bounds (coordinates and size)
+        javax.accessibility.AccessibleComponent accessibleComp = profile.includes(ExtractionProfile.Field.BOUNDS) 
+            ? ac.getAccessibleComponent() : null;
         if (accessibleComp != null) {
+            gen.writeStringField("className", accessibleComp.getClass().getName());
             java.awt.Rectangle bounds = accessibleComp.getBounds();
             if (bounds != null) {
-                writer.println(indentStr + "  \"bounds\": {");
-                writer.println(indentStr + "    \"x\": " + bounds.x + ",");
-                writer.println(indentStr + "    \"y\": " + bounds.y + ",");
-                writer.println(indentStr + "    \"width\": " + bounds.width + ",");
-                writer.println(indentStr + "    \"height\": " + bounds.height);
-                writer.println(indentStr + "  },");
+                JsonOutput.writeBounds(gen, bounds.x, bounds.y, bounds.width, bounds.height);
             } else {
-                writer.println(indentStr + "  \"bounds\": null,");
+                gen.writeNullField("bounds");
             }
         } else {
-            writer.println(indentStr + "  \"bounds\": null,");
+            gen.writeStringField("className", "unknown");
+            gen.writeNullField("bounds");
         }
         
         // Index in parent
-        writer.println(indentStr + "  \"indexInParent\": " + ac.getAccessibleIndexInParent() + ",");
+        if (profile.includes(ExtractionProfile.Field.INDEX)) {
+            gen.writeNumberField("indexInParent", ac.getAccessibleIndexInParent());
+        }
         
         // States (enabled, visible, focused, etc.)
-        javax.accessibility.AccessibleStateSet stateSet = ac.getAccessibleStateSet();
+        javax.accessibility.AccessibleStateSet stateSet = profile.includes(ExtractionProfile.Field.STATES) 
+            ? ac.getAccessibleStateSet() : null;
+        gen.writeArrayFieldStart("states");
         if (stateSet != null) {
-            writer.print(indentStr + "  \"states\": [");
-            javax.accessibility.AccessibleState[] states = stateSet.toArray();
-            for (int i = 0; i < states.length; i++) {
-                writer.print("\"" + escapeJson(states[i].toString()) + "\"");
-                if (i < states.length - 1) writer.print(", ");
+            for (javax.accessibility.AccessibleState state : stateSet.toArray()) {
+                gen.writeString(state.toString());
             }
-            writer.println("],");
-        } else {
-            writer.println(indentStr + "  \"states\": [],");
         }
+        gen.writeEndArray();
         
         // Actions (press, toggle, etc.)
-        javax.accessibility.AccessibleAction action = ac.getAccessibleAction();
-        if (action != null && action.getAccessibleActionCount() > 0) {
-            writer.print(indentStr + "  \"actions\": [");
+        javax.accessibility.AccessibleAction action = profile.includes(ExtractionProfile.Field.ACTIONS) 
+            ? ac.getAccessibleAction() : null;
+        gen.writeArrayFieldStart("actions");
+        if (action != null) {
             int actionCount = action.getAccessibleActionCount();
             for (int i = 0; i < actionCount; i++) {
-                String actionDesc = action.getAccessibleActionDescription(i);
-                writer.print("\"" + escapeJson(actionDesc) + "\"");
-                if (i < actionCount - 1) writer.print(", ");
+                gen.writeString(action.getAccessibleActionDescription(i));
             }
-            writer.println("],");
-        } else {
-            writer.println(indentStr + "  \"actions\": [],");
         }
+        gen.writeEndArray();
         
         // Text content (for text fields, labels, etc.)
-        javax.accessibility.AccessibleText accessibleText = ac.getAccessibleText();
+        javax.accessibility.AccessibleText accessibleText = profile.includes(ExtractionProfile.Field.TEXT) 
+            ? ac.getAccessibleText() : null;
+        String textContent = null;
         if (accessibleText != null) {
-            int charCount = accessibleText.getCharCount();
-            if (charCount > 0) {
-                try {
-                    StringBuilder textContent = new StringBuilder();
-                    for (int idx = 0; idx < charCount; idx++) {
-                        textContent.append(accessibleText.getAtIndex(javax.accessibility.AccessibleText.CHARACTER, idx));
-                    }
-                    writer.println(indentStr + "  \"text\": \"" + escapeJson(textContent.toString()) + "\",");
-                } catch (Exception e) {
-                    writer.println(indentStr + "  \"text\": null,");
-                }
-            } else {
-                writer.println(indentStr + "  \"text\": \"\",");
+            try {
+                TextExtractor.Result textResult = TextExtractor.extract(owner, ac);
+                textContent = textResult != null ? textResult.text : "";
+            } catch (Exception e) {
+                // Written as null
             }
-        } else {
-            writer.println(indentStr + "  \"text\": null,");
         }
+        JsonOutput.writeString(gen, "text", textContent);
         
         // Value (for sliders, scrollbars, progress bars)
-        javax.accessibility.AccessibleValue accessibleValue = ac.getAccessibleValue();
+        javax.accessibility.AccessibleValue accessibleValue = profile.includes(ExtractionProfile.Field.VALUE) 
+            ? ac.getAccessibleValue() : null;
         if (accessibleValue != null) {
-            Number currentValue = accessibleValue.getCurrentAccessibleValue();
-            Number minValue = accessibleValue.getMinimumAccessibleValue();
-            Number maxValue = accessibleValue.getMaximumAccessibleValue();
-            writer.println(indentStr + "  \"value\": {");
-            writer.println(indentStr + "    \"current\": " + (currentValue != null ? currentValue : "null") + ",");
-            writer.println(indentStr + "    \"min\": " + (minValue != null ? minValue : "null") + ",");
-            writer.println(indentStr + "    \"max\": " + (maxValue != null ? maxValue : "null"));
-            writer.println(indentStr + "  },");
+            gen.writeObjectFieldStart("value");
+            gen.writeObjectField("current", accessibleValue.getCurrentAccessibleValue());
+            gen.writeObjectField("min", accessibleValue.getMinimumAccessibleValue());
+            gen.writeObjectField("max", accessibleValue.getMaximumAccessibleValue());
+            gen.writeEndObject();
         } else {
-            writer.println(indentStr + "  \"value\": null,");
+            gen.writeNullField("value");
         }
         
-        writer.println(indentStr + "  \"childCount\": " + ac.getAccessibleChildrenCount() + ",");
-        
-        // Get children
+        // Children, written by the caller
         int childCount = ac.getAccessibleChildrenCount();
-        if (childCount > 0 && depth < maxDepth) {
-            writer.println(indentStr + "  \"children\": [");
-            for (int i = 0; i < childCount; i++) {
-                javax.accessibility.Accessible child = ac.getAccessibleChild(i);
-                if (child != null) {
-                    javax.accessibility.AccessibleContext childAc = child.getAccessibleContext();
-                    writer.print(indentStr + "    ");
-                    writeAccessibleTree(writer, childAc, indent + 4, depth + 1, maxDepth);
-                    if (i < childCount - 1) writer.println(",");
-                    else writer.println();
-                }
+        gen.writeNumberField("childCount", childCount);
+        gen.writeArrayFieldStart("children");
+        return new AccessibleFrame(ac, depth, depth < maxDepth ? childCount : 0);
+    }
+    
+    /**
+     * Write a tree captured by UITreeExplorer in the same layout as writeAccessibleTree.
+     * Snapshots carry only the current value, so "value" has no min or max. Iterative, as
+     * writeAccessibleTree is.
+     */
+    private static void writeElementTree(JsonGenerator gen, ElementData root) throws IOException {
+        java.util.Deque<java.util.Iterator<ElementData>> open = new java.util.ArrayDeque<>();
+        startElement(gen, root);
+        open.push(root.getChildren().iterator());
+        while (!open.isEmpty()) {
+            java.util.Iterator<ElementData> children = open.peek();
+            if (!children.hasNext()) {
+                gen.writeEndArray();
+                gen.writeEndObject();
+                open.pop();
+                continue;
             }
-            writer.println(indentStr + "  ]");
+            ElementData child = children.next();
+            startElement(gen, child);
+            open.push(child.getChildren().iterator());
+        }
+    }
+    
+    // Write element up to its open children array
+    private static void startElement(JsonGenerator gen, ElementData element) throws IOException {
+        gen.writeStartObject();
+        JsonOutput.writeString(gen, "role", element.getRole());
+        JsonOutput.writeString(gen, "name", element.getName());
+        JsonOutput.writeString(gen, "description", element.getDescription());
+        gen.writeStringField("className", element.getClassName() != null ? element.getClassName() : "unknown");
+        
+        ElementData.BoundsData bounds = element.getBounds();
+        if (bounds != null) {
+            JsonOutput.writeBounds(gen, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
         } else {
-            writer.println(indentStr + "  \"children\": []");
+            gen.writeNullField("bounds");
         }
         
-        writer.print(indentStr + "}");
+        if (element.getIndexInParent() != null) {
+            gen.writeNumberField("indexInParent", element.getIndexInParent());
+        }
+        JsonOutput.writeStrings(gen, "states", element.getStates());
+        JsonOutput.writeStrings(gen, "actions", element.getActions());
+        JsonOutput.writeString(gen, "text", element.getText());
+        if (element.getValue() != null) {
+            gen.writeObjectFieldStart("value");
+            JsonOutput.writeNumber(gen, "current", element.getValue());
+            gen.writeEndObject();
+        } else {
+            gen.writeNullField("value");
+        }
+        gen.writeObjectField("childCount", element.getChildrenCount());
+        if (element.getElidedChildren() != null) {
+            gen.writeNumberField("elidedChildren", element.getElidedChildren());
+        }
+        
+        gen.writeArrayFieldStart("children");
     }
     
-    private static String escapeJson(String str) {
-        if (str == null) return "null";
-        return str.replace("\\", "\\\\")
-                 .replace("\"", "\\\"")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r")
-                 .replace("\t", "\\t");
+    private static synchronized UITreeExplorer incrementalExplorer(javax.accessibility.AccessibleContext ac,
+                                                                    int maxDepth, ExtractionProfile profile) {
+        UITreeExplorer explorer = incrementalExplorers.get(ac);
+        if (explorer == null || explorer.getMaxDepth() != maxDepth
+                || !explorer.getProfile().toSpec().equals(profile.toSpec())) {
+            if (explorer != null) {
+                explorer.dispose();
+            }
+            explorer = new UITreeExplorer(maxDepth, true, TraversalOrder.DEPTH_FIRST, profile);
+            explorer.setIncremental(true);
+            incrementalExplorers.put(ac, explorer);
+        }
+        return explorer;
     }
-    
+
+    private static synchronized void discardIncrementalExplorer(javax.accessibility.AccessibleContext ac) {
+        UITreeExplorer explorer = incrementalExplorers.remove(ac);
+        if (explorer != null) {
+            explorer.dispose();
+        }
+    }
+
+    // Drop the explorers, and their listeners, of windows that have gone away since the last attach
+    private static synchronized void releaseIncrementalExplorers(java.util.List<WindowInfo> windows) {
+        java.util.Set<javax.accessibility.AccessibleContext> current =
+            java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+        for (WindowInfo window : windows) {
+            current.add(window.getAccessibleContext());
+        }
+        java.util.Iterator<java.util.Map.Entry<javax.accessibility.AccessibleContext, UITreeExplorer>> it =
+            incrementalExplorers.entrySet().iterator();
+        while (it.hasNext()) {
+            java.util.Map.Entry<javax.accessibility.AccessibleContext, UITreeExplorer> entry = it.next();
+            if (!current.contains(entry.getKey())) {
+                entry.getValue().dispose();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Start the server of an agent loaded at startup, e.g. with "port:9999;token:<token>". It
+     * admits only the given token, with output to the temp directory or the directory of an
+     * "output:" file.
+     */
     private static void startAgent(String agentArgs) {
-        int port = parsePort(agentArgs);
+        java.util.Map<String, String> options = parseAgentArgs(agentArgs);
+        startServer(parsePort(options), null);
+        if (!options.containsKey("token")) {
+            System.err.println("JavaInspector Agent: No token given, the server admits no sessions");
+        }
+        grantSession(options);
+    }
+    
+    // Admit sessions with the token of this attach, writing where its output goes
+    private static synchronized void grantSession(java.util.Map<String, String> options) {
+        String token = options.get("token");
+        if (server == null || token == null || token.isEmpty()) {
+            return;
+        }
+        String output = options.get("output");
+        java.nio.file.Path outputDir = output != null
+            ? java.nio.file.Paths.get(output).toAbsolutePath().getParent()
+            : java.nio.file.Paths.get(System.getProperty("java.io.tmpdir"));
+        server.grant(token, outputDir);
+    }
+    
+    /**
+     * Start the server an attached inspector keeps its AgentSession with: an ephemeral port on
+     * the loopback interface, published in the AgentSession.PORT_PROPERTY system property where
+     * the inspector reads it over the Attach API.
+     */
+    private static void startSessionServer() {
+        startServer(0, java.net.InetAddress.getLoopbackAddress());
+    }
+    
+    private static synchronized void startServer(int port, java.net.InetAddress bindAddress) {
+        if (server != null && server.isRunning()) {
+            // One server per JVM, however often the agent is loaded
+            return;
+        }
         
         try {
             // Enable accessibility
             enableAccessibility();
             
-            // Start server socket to accept connections
-            serverSocket = new ServerSocket(port);
-            System.out.println("JavaInspector Agent: Listening on port " + port);
-            
-            serverThread = new Thread(() -> {
-                while (!Thread.interrupted()) {
-                    try {
-                        Socket clientSocket = serverSocket.accept();
-                        System.out.println("JavaInspector Agent: Client connected");
-                        
-                        // Handle client connection
-                        AccessibilityBridge bridge = new AccessibilityBridge(clientSocket);
-                        new Thread(bridge).start();
-                        
-                    } catch (IOException e) {
-                        if (!serverSocket.isClosed()) {
-                            System.err.println("JavaInspector Agent: Error accepting connection: " + e.getMessage());
-                        }
-                    }
-                }
-            });
-            serverThread.setDaemon(true);
-            serverThread.start();
+            // Start server socket to accept connections, with bounded threads and connections
+            server = AgentServer.configured(port, bindAddress);
+            server.start();
+            System.setProperty(AgentSession.PORT_PROPERTY, String.valueOf(server.getPort()));
+            log("Listening on port " + server.getPort());
             
         } catch (IOException e) {
             System.err.println("JavaInspector Agent: Failed to start server: " + e.getMessage());
         }
     }
     
-    private static int parsePort(String agentArgs) {
-        if (agentArgs != null && agentArgs.startsWith("port:")) {
+    /**
+     * Parse agent arguments of the form "key:value;key:value", e.g. "fields:layout;output:C:\\out.json".
+     * "output:" must come last and takes the rest of the string, so Windows paths survive intact.
+     */
+    static java.util.Map<String, String> parseAgentArgs(String agentArgs) {
+        java.util.Map<String, String> options = new java.util.HashMap<>();
+        if (agentArgs == null) {
+            return options;
+        }
+        String remaining = agentArgs;
+        while (!remaining.isEmpty()) {
+            if (remaining.startsWith("output:")) {
+                options.put("output", remaining.substring(7));
+                break;
+            }
+            int end = remaining.indexOf(';');
+            String token = end >= 0 ? remaining.substring(0, end) : remaining;
+            int colon = token.indexOf(':');
+            if (colon > 0) {
+                options.put(token.substring(0, colon), token.substring(colon + 1));
+            }
+            if (end < 0) {
+                break;
+            }
+            remaining = remaining.substring(end + 1);
+        }
+        return options;
+    }
+    
+    private static int parsePort(java.util.Map<String, String> options) {
+        if (options.containsKey("port")) {
             try {
-                return Integer.parseInt(agentArgs.substring(5));
+                return Integer.parseInt(options.get("port"));
             } catch (NumberFormatException e) {
                 System.err.println("JavaInspector Agent: Invalid port, using default 9999");
             }
@@ -683,22 +863,26 @@ public class InspectorAgent {
             // Enable Java Accessibility Bridge
             System.setProperty("javax.accessibility.assistive_technologies", 
                              "com.sun.java.accessibility.util.Translator");
-            System.out.println("JavaInspector Agent: Accessibility enabled");
+            log("Accessibility enabled");
         } catch (Exception e) {
             System.err.println("JavaInspector Agent: Could not enable accessibility: " + e.getMessage());
         }
     }
     
-    public static void shutdown() {
-        try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
-            }
-            if (serverThread != null) {
-                serverThread.interrupt();
-            }
-        } catch (IOException e) {
-            System.err.println("JavaInspector Agent: Error during shutdown: " + e.getMessage());
+    /**
+     * Stop the agent server and close its open connections. The next attach starts a new one.
+     */
+    public static synchronized void shutdown() {
+        if (server != null) {
+            server.shutdown();
+            server = null;
+            System.clearProperty(AgentSession.PORT_PROPERTY);
+        }
+    }
+    
+    static void log(String message) {
+        if (VERBOSE) {
+            System.err.println("JavaInspector Agent: " + message);
         }
     }
 }
@@ -0,0 +1,158 @@
+package com.inspector.agent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * The JavaFX getters the agent reads scene graphs with, resolved once per node class.
+ *
+ * The agent cannot link against JavaFX (the target may not have it), so nodes are read
+ * reflectively. Looking the methods up for every node made reflection dominate large scenes;
+ * here each node class and bounds class is resolved once into MethodHandles, including the
+ * absence of optional getters such as getText(), and reused for every node of that class.
+ */
+public final class JavaFXNodeAccessors {
+
+    private static final ClassValue<JavaFXNodeAccessors> nodeClasses = new ClassValue<>() {
+        @Override
+        protected JavaFXNodeAccessors computeValue(Class<?> type) {
+            return new JavaFXNodeAccessors(type);
+        }
+    };
+
+    private static final ClassValue<MethodHandle[]> boundsClasses = new ClassValue<>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            MethodType getter = MethodType.methodType(double.class, Object.class);
+            return new MethodHandle[] {
+                find(type, "getMinX", getter), find(type, "getMinY", getter),
+                find(type, "getWidth", getter), find(type, "getHeight", getter)
+            };
+        }
+    };
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> type;
+    // Each (Object)Object, or null if the class has no such public method
+    private final MethodHandle id;
+    private final MethodHandle boundsInParent;
+    private final MethodHandle text;
+    private final MethodHandle children;
+
+    private JavaFXNodeAccessors(Class<?> type) {
+        this.type = type;
+        this.id = find(type, "getId", OBJECT_GETTER);
+        this.boundsInParent = find(type, "getBoundsInParent", OBJECT_GETTER);
+        this.text = find(type, "getText", OBJECT_GETTER);
+        this.children = find(type, "getChildrenUnmodifiable", OBJECT_GETTER);
+    }
+
+    /**
+     * The accessors for a node's class.
+     */
+    public static JavaFXNodeAccessors of(Object node) {
+        return nodeClasses.get(node.getClass());
+    }
+
+    public String getId(Object node) throws Exception {
+        return (String) call(require(id, "getId"), node);
+    }
+
+    /**
+     * The node's bounds in its parent as x, y, width and height, truncated to int.
+     */
+    public int[] getBoundsInParent(Object node) throws Exception {
+        Object bounds = call(require(boundsInParent, "getBoundsInParent"), node);
+        MethodHandle[] getters = boundsClasses.get(bounds.getClass());
+        int[] result = new int[4];
+        for (int i = 0; i < 4; i++) {
+            if (getters[i] == null) {
+                throw new NoSuchMethodException(bounds.getClass().getName() + " has no bounds getters");
+            }
+            try {
+                result[i] = (int) (double) getters[i].invokeExact(bounds);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The node's text, or null if it has none or its class has no getText().
+     */
+    public String getText(Object node) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            Object value = call(text, node);
+            return value != null ? value.toString() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * The node's children, or null if it is not a Parent.
+     */
+    public List<?> getChildren(Object node) {
+        if (children == null) {
+            return null;
+        }
+        try {
+            Object value = call(children, node);
+            return value instanceof List ? (List<?>) value : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private MethodHandle require(MethodHandle handle, String name) throws NoSuchMethodException {
+        if (handle == null) {
+            throw new NoSuchMethodException(type.getName() + "." + name + "()");
+        }
+        return handle;
+    }
+
+    private static Object call(MethodHandle handle, Object target) throws Exception {
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * A public no-argument method of type, adapted to getterType, or null if there is none. Looked
+     * up through the nearest public class, since node classes themselves may be private.
+     */
+    private static MethodHandle find(Class<?> type, String name, MethodType getterType) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                continue;
+            }
+            try {
+                Method method = c.getMethod(name);
+                MethodHandle handle = MethodHandles.publicLookup()
+                    .findVirtual(c, name, MethodType.methodType(method.getReturnType()));
+                return handle.asType(getterType);
+            } catch (NoSuchMethodException e) {
+                // Superclasses have no such method either
+                return null;
+            } catch (IllegalAccessException | RuntimeException e) {
+                // Not accessible from here, or the return type does not fit; try the superclass
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,271 @@
+package com.inspector.agent;
+
+import com.inspector.core.EdtSliceBudget;
+import com.inspector.core.EdtSlicer;
+import javafx.application.Platform;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Captures a JavaFX window's scene graph on the FX Application Thread, in slices, into a
+ * snapshot that can be serialized on any thread.
+ *
+ * JavaFX nodes may only be read on the FX thread, where reads also cannot race layout. The
+ * capture runs there through Platform.runLater(), a slice at a time: each slice reads nodes
+ * until the EdtSliceBudget's time or node limit is reached and then posts the next slice, so
+ * pulses (and the target's frame rate) keep going during a large capture. This is the JavaFX
+ * counterpart of UITreeExplorer.snapshotOnEdt(); the scene is assumed not to change structurally
+ * between slices, and a node read in a later slice shows its state at that time. A capture
+ * that does not complete within the budget's timeout is cancelled.
+ *
+ * Only loaded when the target has JavaFX windows, so linking against JavaFX is safe.
+ */
+final class JavaFXSceneCapture {
+
+    /**
+     * A captured node. Never changed once the capture has completed.
+     */
+    static final class FxNode {
+        final String role;
+        final String name;
+        final String className;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        final String text;
+        final int childCount;
+        // Why the node could not be read, or null
+        final String error;
+        private final List<FxNode> children = new ArrayList<>();
+
+        FxNode(String role, String name, String className, int[] bounds, String text, int childCount) {
+            this.role = role;
+            this.name = name;
+            this.className = className;
+            this.x = bounds[0];
+            this.y = bounds[1];
+            this.width = bounds[2];
+            this.height = bounds[3];
+            this.text = text;
+            this.childCount = childCount;
+            this.error = null;
+        }
+
+        FxNode(String error) {
+            this.role = null;
+            this.name = null;
+            this.className = null;
+            this.x = 0;
+            this.y = 0;
+            this.width = 0;
+            this.height = 0;
+            this.text = null;
+            this.childCount = 0;
+            this.error = error;
+        }
+
+        /** The children read, empty below the depth limit; null entries stand for null nodes. */
+        List<FxNode> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        // Only while capturing
+        void addChild(FxNode child) {
+            children.add(child);
+        }
+    }
+
+    /**
+     * A captured window: the Stage's own properties and its scene's root node.
+     */
+    static final class FxWindow {
+        final String title;
+        final String className;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        // Null if the window has no scene or root, or the depth limit stops at the window
+        final FxNode root;
+        // Why the window could not be read, or null
+        final String error;
+        final int slices;
+        final long maxSliceNanos;
+
+        FxWindow(String title, String className, int[] bounds, FxNode root, int slices, long maxSliceNanos) {
+            this(title, className, bounds, root, null, slices, maxSliceNanos);
+        }
+
+        private FxWindow(String title, String className, int[] bounds, FxNode root, String error,
+                         int slices, long maxSliceNanos) {
+            this.title = title;
+            this.className = className;
+            this.x = bounds[0];
+            this.y = bounds[1];
+            this.width = bounds[2];
+            this.height = bounds[3];
+            this.root = root;
+            this.error = error;
+            this.slices = slices;
+            this.maxSliceNanos = maxSliceNanos;
+        }
+
+        /**
+         * A window that could not be captured, and why.
+         */
+        static FxWindow failed(String error) {
+            return new FxWindow(null, null, new int[4], null, error, 0, 0);
+        }
+    }
+
+    // The FX Application Thread, for EdtSlicer
+    private static final EdtSlicer.UiThread FX_THREAD = new EdtSlicer.UiThread() {
+        @Override
+        public boolean isCurrent() {
+            return Platform.isFxApplicationThread();
+        }
+
+        @Override
+        public void post(Runnable task) {
+            Platform.runLater(task);
+        }
+    };
+
+    // A node still to read, and where its snapshot goes
+    private static final class Pending {
+        final Object node;
+        final int depth;
+        final FxNode parent;
+
+        Pending(Object node, int depth, FxNode parent) {
+            this.node = node;
+            this.depth = depth;
+            this.parent = parent;
+        }
+    }
+
+    private final Object stage;
+    private final int depth;
+    private final int maxDepth;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private boolean started;
+    // What the capture has read so far
+    private String title;
+    private String className;
+    private final int[] bounds = new int[4];
+    private FxNode root;
+    private String error;
+    private int slices;
+    private long maxSliceNanos;
+
+    private JavaFXSceneCapture(Object stage, int depth, int maxDepth) {
+        this.stage = stage;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Capture a window whose own depth is depth, reading nodes down to maxDepth. Blocks until the
+     * capture has completed on the FX thread (or runs it directly when called on that thread).
+     * Throws an EdtTimeoutException if it has not completed within the budget's timeout.
+     */
+    static FxWindow capture(Object stage, int depth, int maxDepth, EdtSliceBudget budget) throws InterruptedException {
+        JavaFXSceneCapture capture = new JavaFXSceneCapture(stage, depth, maxDepth);
+        EdtSlicer.run(FX_THREAD, budget, capture::slice, "JavaFX capture");
+        return capture.result();
+    }
+
+    private FxWindow result() {
+        return error != null
+            ? FxWindow.failed(error)
+            : new FxWindow(title, className, bounds, root, slices, maxSliceNanos);
+    }
+
+    // Read up to maxNodes nodes or until deadline; true once the capture is complete
+    private boolean slice(int maxNodes, long deadline) {
+        long start = System.nanoTime();
+        try {
+            if (!started) {
+                started = true;
+                readStage();
+            }
+            int read = 0;
+            while (!pending.isEmpty()) {
+                if (read >= maxNodes || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)) {
+                    return false;
+                }
+                readNode(pending.pollLast());
+                read++;
+            }
+            return true;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            slices++;
+            maxSliceNanos = Math.max(maxSliceNanos, nanos);
+        }
+    }
+
+    private void readStage() {
+        try {
+            Class<?> stageClass = stage.getClass();
+            className = stageClass.getName();
+            title = (String) stageClass.getMethod("getTitle").invoke(stage);
+            bounds[0] = (int) (double) (Double) stageClass.getMethod("getX").invoke(stage);
+            bounds[1] = (int) (double) (Double) stageClass.getMethod("getY").invoke(stage);
+            bounds[2] = (int) (double) (Double) stageClass.getMethod("getWidth").invoke(stage);
+            bounds[3] = (int) (double) (Double) stageClass.getMethod("getHeight").invoke(stage);
+
+            Object scene = stageClass.getMethod("getScene").invoke(stage);
+            if (scene != null && depth < maxDepth) {
+                Object root = scene.getClass().getMethod("getRoot").invoke(scene);
+                if (root != null) {
+                    pending.addLast(new Pending(root, depth + 1, null));
+                }
+            }
+        } catch (Exception e) {
+            error = describe(e);
+        }
+    }
+
+    private void readNode(Pending next) {
+        FxNode node;
+        List<?> children = null;
+        if (next.node == null) {
+            // Written as null
+            node = null;
+        } else try {
+            JavaFXNodeAccessors accessors = JavaFXNodeAccessors.of(next.node);
+            String className = next.node.getClass().getSimpleName();
+            String id = accessors.getId(next.node);
+            int[] bounds = accessors.getBoundsInParent(next.node);
+            String text = accessors.getText(next.node);
+            children = accessors.getChildren(next.node);
+            node = new FxNode(InspectorAgent.determineJavaFXRole(className), id != null ? id : className,
+                              next.node.getClass().getName(), bounds, text, children != null ? children.size() : 0);
+        } catch (Exception e) {
+            node = new FxNode(describe(e));
+        }
+
+        if (next.parent == null) {
+            root = node;
+        } else {
+            next.parent.addChild(node);
+        }
+        if (children != null && next.depth < maxDepth) {
+            // Pushed in reverse, so children are read, and appended, in order
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.addLast(new Pending(children.get(i), next.depth + 1, node));
+            }
+        }
+    }
+
+    // A null error would read as success
+    private static String describe(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+}
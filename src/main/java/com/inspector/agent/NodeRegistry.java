@@ -0,0 +1,66 @@
+package com.inspector.agent;
+
+import javax.accessibility.AccessibleContext;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Integer handles for the accessible contexts the agent has sent to inspectors, so that a client
+ * can ask for more of an element it has already seen (EXPAND, GET).
+ *
+ * Contexts are held weakly: a handle stops resolving once its UI element has been garbage
+ * collected, and the registry never keeps a closed window alive. The same context always gets
+ * the same handle while it lives. Thread-safe.
+ */
+final class NodeRegistry {
+
+    private final Map<AccessibleContext, Integer> handles = new WeakHashMap<>();
+    private final Map<Integer, Ref> contexts = new HashMap<>();
+    private final ReferenceQueue<AccessibleContext> collected = new ReferenceQueue<>();
+    private int nextHandle = 1;
+
+    private static final class Ref extends WeakReference<AccessibleContext> {
+        final int handle;
+
+        Ref(AccessibleContext context, int handle, ReferenceQueue<AccessibleContext> queue) {
+            super(context, queue);
+            this.handle = handle;
+        }
+    }
+
+    synchronized int register(AccessibleContext context) {
+        expunge();
+        Integer handle = handles.get(context);
+        if (handle == null) {
+            handle = nextHandle++;
+            handles.put(context, handle);
+            contexts.put(handle, new Ref(context, handle, collected));
+        }
+        return handle;
+    }
+
+    /**
+     * The context registered under a handle, or null if the handle is unknown or its element has
+     * been collected.
+     */
+    synchronized AccessibleContext resolve(int handle) {
+        expunge();
+        Ref ref = contexts.get(handle);
+        return ref != null ? ref.get() : null;
+    }
+
+    synchronized int size() {
+        expunge();
+        return contexts.size();
+    }
+
+    private void expunge() {
+        Ref ref;
+        while ((ref = (Ref) collected.poll()) != null) {
+            contexts.remove(ref.handle);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.inspector.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspector.core.ChangeTracker;
+import com.inspector.model.ElementData;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A connection's SUBSCRIBE: polls a ChangeTracker at most once per interval and pushes the
+ * changes found as one line,
+ *
+ *   EVENT [{"type":"changed","handle":12,"element":{...}},
+ *          {"type":"added","handle":40,"parent":12,"element":{...}},
+ *          {"type":"removed","handle":9}]
+ *
+ * Elements are sent without children, with their handles; an added subtree comes parent first.
+ * Nothing is sent for an interval without changes.
+ */
+final class Subscription {
+
+    private final ChangeTracker tracker;
+    private final NodeRegistry nodes;
+    private final PrintWriter out;
+    private final ObjectMapper mapper;
+    private final long intervalMs;
+    private final ScheduledExecutorService timer;
+
+    Subscription(ChangeTracker tracker, NodeRegistry nodes, PrintWriter out, ObjectMapper mapper, long intervalMs) {
+        this.tracker = tracker;
+        this.nodes = nodes;
+        this.out = out;
+        this.mapper = mapper;
+        this.intervalMs = intervalMs;
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "InspectorAgent-subscription");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start pushing; call once the reply to SUBSCRIBE has been sent.
+     */
+    void start() {
+        // With a fixed delay, a slow poll lowers the rate instead of queueing more polls
+        timer.scheduleWithFixedDelay(this::push, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop pushing and remove the tracker's listeners, after any poll in progress.
+     */
+    void stop() {
+        try {
+            timer.execute(tracker::close);
+        } catch (RuntimeException e) {
+            // Already stopped
+        }
+        // Cancels the periodic poll; the close above still runs
+        timer.shutdown();
+    }
+
+    private void push() {
+        try {
+            List<ChangeTracker.Change> changes = tracker.poll();
+            if (changes.isEmpty()) {
+                return;
+            }
+            List<Map<String, Object>> batch = new ArrayList<>(changes.size());
+            for (ChangeTracker.Change change : changes) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                int handle = nodes.register(change.getContext());
+                entry.put("type", change.getKind().name().toLowerCase(Locale.ROOT));
+                entry.put("handle", handle);
+                if (change.getParent() != null) {
+                    entry.put("parent", nodes.register(change.getParent()));
+                }
+                ElementData element = change.getElement();
+                if (element != null) {
+                    element.setHandle(handle);
+                    entry.put("element", element);
+                }
+                batch.add(entry);
+            }
+            // println() holds the writer's lock, so events never split a command's reply
+            out.println("EVENT " + mapper.writeValueAsString(batch));
+            if (out.checkError()) {
+                stop();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Keep the subscription; the next change retries
+            System.err.println("AccessibilityBridge: Subscription poll failed: " + e.getMessage());
+        }
+    }
+}
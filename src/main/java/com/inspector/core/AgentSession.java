@@ -0,0 +1,326 @@
+package com.inspector.core;
+
+import com.inspector.util.FrameProtocol;
+import com.inspector.util.JsonOutput;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A connection to the agent server inside an attached JVM, kept open between inspections.
+ *
+ * The first inspection of a process attaches and loads the agent, which starts a loopback
+ * server and publishes its port as PORT_PROPERTY. Later inspections send commands over the
+ * session instead of attaching and loading the agent again. The attach passes the agent a
+ * fresh token (newToken()), which the session presents before its first command; the server
+ * admits no one else. One session is kept per PID;
+ * a session whose target has gone away fails its next request and is discarded.
+ *
+ * The protocol is line based: one command per line, answered by one line starting with
+ * "OK " or "ERROR ". upgradeToBinary() switches the session to the framed protocol of
+ * FrameProtocol, which streams large replies as Smile instead of a single JSON line. After a
+ * SUBSCRIBE request the agent also pushes "EVENT " lines, read with nextEvent(). Events that
+ * arrive while waiting for a reply are kept for nextEvent(), up to MAX_PENDING_EVENTS; beyond
+ * that the oldest are dropped and counted in getDroppedEvents().
+ */
+public class AgentSession implements Closeable {
+
+    /** System property in the target JVM that holds the agent server's port. */
+    public static final String PORT_PROPERTY = "inspector.agent.port";
+    /** The first command of a session: "AUTH <token>". */
+    public static final String AUTH_COMMAND = "AUTH";
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    // Generous: a request runs a full inspection of the target
+    private static final int READ_TIMEOUT_MS = 60000;
+
+    private static final Map<String, AgentSession> sessions = new ConcurrentHashMap<>();
+    // Replies come from another process, so what is read from them is bounded
+    private static final ObjectMapper jsonMapper = new ObjectMapper(JsonFactory.builder()
+        .streamReadConstraints(JsonOutput.remoteReadConstraints())
+        .streamWriteConstraints(JsonOutput.writeConstraints())
+        .build());
+    private static final SecureRandom random = new SecureRandom();
+    private static final String EVENT_PREFIX = "EVENT ";
+
+    /** Events kept for nextEvent() while a caller sends requests instead of reading them. */
+    public static final int MAX_PENDING_EVENTS = 1024;
+
+    private final String pid;
+    private final Socket socket;
+    private final BufferedReader in;
+    private final PrintWriter out;
+
+    // Set once the session has switched to the framed protocol
+    private DataInputStream frameIn;
+    private DataOutputStream frameOut;
+    private boolean deflate;
+    private int nextRequestId = 1;
+    private final Deque<String> events = new ArrayDeque<>();
+    private int droppedEvents;
+
+    private AgentSession(String pid, Socket socket) throws IOException {
+        this.pid = pid;
+        this.socket = socket;
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * The open session for a process, or null if there is none.
+     */
+    public static AgentSession get(String pid) {
+        AgentSession session = sessions.get(pid);
+        if (session != null && session.socket.isClosed()) {
+            sessions.remove(pid, session);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * A random token to pass the agent as "token:" when attaching, and then to open().
+     */
+    public static String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(32);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Connect to an agent bridge that needs no token, replacing any earlier session.
+     */
+    public static AgentSession open(String pid, int port) throws IOException {
+        return open(pid, port, null);
+    }
+
+    /**
+     * Connect to the agent server of a process on this machine with the token the agent was
+     * attached with, replacing any earlier session.
+     */
+    public static AgentSession open(String pid, int port, String token) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            AgentSession session = new AgentSession(pid, socket);
+            if (token != null) {
+                session.requestText(AUTH_COMMAND + " " + token);
+            }
+            AgentSession previous = sessions.put(pid, session);
+            if (previous != null) {
+                previous.closeSocket();
+            }
+            return session;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Switch the session to the framed binary protocol, asking for Deflate-compressed replies if
+     * deflate is set. Returns false, leaving the session in the text protocol, if the agent cannot
+     * speak it (e.g. Smile is not on the target's classpath).
+     */
+    public synchronized boolean upgradeToBinary(boolean deflate) throws IOException {
+        if (frameOut == null) {
+            try {
+                requestText(FrameProtocol.UPGRADE_COMMAND);
+            } catch (AgentException e) {
+                return false;
+            }
+            frameIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            frameOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+        this.deflate = deflate;
+        return true;
+    }
+
+    public synchronized boolean isBinary() {
+        return frameOut != null;
+    }
+
+    /**
+     * Send one command and return the agent's reply without its "OK " prefix: the reply text, or
+     * JSON for a structured reply. An "ERROR" reply is thrown as an IOException; a broken
+     * connection also closes the session.
+     */
+    public synchronized String request(String command) throws IOException {
+        if (frameOut == null) {
+            return requestText(command);
+        }
+        Object reply = request(command, Object.class);
+        return reply instanceof String ? (String) reply : jsonMapper.writeValueAsString(reply);
+    }
+
+    /**
+     * Send one command and read the agent's reply as a value of the given type, e.g. an
+     * ElementData for EXPLORE.
+     */
+    public synchronized <T> T request(String command, Class<T> type) throws IOException {
+        if (frameOut == null) {
+            String reply = requestText(command);
+            return type == String.class ? type.cast(reply) : jsonMapper.readValue(reply, type);
+        }
+        int requestId = nextRequestId++;
+        try {
+            FrameProtocol.writeFrame(frameOut, requestId, FrameProtocol.REQUEST,
+                deflate ? FrameProtocol.FLAG_DEFLATE : 0, command);
+            frameOut.flush();
+            try (InputStream body = FrameProtocol.openResponse(frameIn, requestId)) {
+                return FrameProtocol.smileMapper().readValue(body, type);
+            }
+        } catch (FrameProtocol.RemoteException e) {
+            throw new AgentException("Agent in PID " + pid + " failed: " + e.getMessage());
+        } catch (JsonProcessingException e) {
+            // The rest of the response was still read, unless that failed too
+            if (e.getSuppressed().length > 0) {
+                close();
+            }
+            throw e;
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private String requestText(String command) throws IOException {
+        String response;
+        try {
+            out.println(command);
+            if (out.checkError()) {
+                throw new IOException("Agent session for PID " + pid + " is closed");
+            }
+            response = in.readLine();
+            while (response != null && response.startsWith(EVENT_PREFIX)) {
+                // Pushed by a subscription in between; kept for nextEvent()
+                if (events.size() == MAX_PENDING_EVENTS) {
+                    events.poll();
+                    droppedEvents++;
+                }
+                events.add(response.substring(EVENT_PREFIX.length()));
+                response = in.readLine();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        if (response == null) {
+            close();
+            throw new IOException("Agent in PID " + pid + " closed the session");
+        }
+        if (response.startsWith("OK ")) {
+            return response.substring(3);
+        }
+        throw new AgentException("Agent in PID " + pid + " failed: " + response);
+    }
+
+    // An "ERROR" reply: the session itself is still usable
+    private static class AgentException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        AgentException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The next batch of changes pushed after a SUBSCRIBE request, as the JSON array the agent sent
+     * (see the agent's Subscription). Blocks until one arrives; a read timeout closes the session.
+     */
+    public synchronized String nextEvent() throws IOException {
+        if (frameOut != null) {
+            throw new IllegalStateException("Subscriptions need the text protocol");
+        }
+        if (!events.isEmpty()) {
+            return events.poll();
+        }
+        String line;
+        try {
+            line = in.readLine();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        if (line == null) {
+            close();
+            throw new IOException("Agent in PID " + pid + " closed the session");
+        }
+        if (!line.startsWith(EVENT_PREFIX)) {
+            throw new IOException("Unexpected reply from agent in PID " + pid + ": " + line);
+        }
+        return line.substring(EVENT_PREFIX.length());
+    }
+
+    /**
+     * The number of events dropped because MAX_PENDING_EVENTS were already waiting for
+     * nextEvent(). Once any were dropped, a mirror kept from events is stale and should be
+     * fetched again with a new SUBSCRIBE.
+     */
+    public synchronized int getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    /**
+     * Run the same inspection an attach runs, with the same agent arguments, and return the path
+     * of the output file the agent wrote.
+     */
+    public String snapshot(String agentArgs) throws IOException {
+        return request("SNAPSHOT " + agentArgs);
+    }
+
+    public String getPid() {
+        return pid;
+    }
+
+    @Override
+    public void close() {
+        sessions.remove(pid, this);
+        closeSocket();
+    }
+
+    /**
+     * Close every open session, e.g. when the inspector exits.
+     */
+    public static void closeAll() {
+        for (AgentSession session : new ArrayList<>(sessions.values())) {
+            session.close();
+        }
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
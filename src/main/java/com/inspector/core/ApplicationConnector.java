@@ -1,10 +1,14 @@
 package com.inspector.core;
 
+import com.inspector.util.OutputFiles;
 import com.inspector.util.WindowEnumerator;
 import com.inspector.uia.WindowsUIAInspector;
 
 import javax.accessibility.AccessibleContext;
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 public class ApplicationConnector {
@@ -27,9 +31,53 @@ public class ApplicationConnector {
     }
     
     public static ConnectionResult connectByPid(int pid) {
+        return connectByPid(pid, ExtractionProfile.ALL);
+    }
+    
+    /**
+     * Connect to a process by PID. For Java processes the profile is forwarded to the agent so
+     * that only the selected property groups are queried inside the target.
+     */
+    public static ConnectionResult connectByPid(int pid, ExtractionProfile profile) {
+        return connectByPid(pid, profile, null);
+    }
+    
+    /**
+     * As connectByPid(pid, profile), additionally asking the agent to capture Swing windows on
+     * the target's EDT in slices of the given budget. A null budget keeps the direct walk.
+     */
+    public static ConnectionResult connectByPid(int pid, ExtractionProfile profile, EdtSliceBudget sliceBudget) {
+        return connectByPid(pid, profile, sliceBudget, OutputFiles.newSessionOutput(String.valueOf(pid)));
+    }
+    
+    /**
+     * As connectByPid(pid, profile, sliceBudget), writing the result of an agent or UIA
+     * inspection to outputFile, which exists afterwards exactly when the inspection succeeded.
+     * The result is written once, next to outputFile and renamed into place; inspections into
+     * different files can run side by side.
+     */
+    public static ConnectionResult connectByPid(int pid, ExtractionProfile profile, EdtSliceBudget sliceBudget,
+                                                Path outputFile) {
+        return connectByPid(pid, profile, sliceBudget, UITreeExplorer.DEFAULT_MAX_DEPTH, TraversalBudget.UNLIMITED,
+                            outputFile);
+    }
+    
+    /**
+     * As connectByPid(pid, profile, sliceBudget, outputFile), with the depth and traversal budget
+     * an agent explores with. A limited budget makes the agent capture Swing windows in EDT
+     * slices even without a slice budget of its own.
+     */
+    public static ConnectionResult connectByPid(int pid, ExtractionProfile profile, EdtSliceBudget sliceBudget,
+                                                int maxDepth, TraversalBudget budget, Path outputFile) {
+        try {
+            // Whatever the file held is replaced; it must not pass for this inspection's result
+            Files.deleteIfExists(outputFile);
+        } catch (IOException e) {
+            return new ConnectionResult("Cannot replace " + outputFile + ": " + e.getMessage());
+        }
         // First check if it's a Java process using Attach API
         if (AttachConnector.isJavaProcess(String.valueOf(pid))) {
-            System.out.println("Detected Java process via Attach API");
+            System.err.println("Detected Java process via Attach API");
             // Try to get accessible context through agent injection
             try {
                 // Get absolute path to agent JAR
@@ -41,16 +89,24 @@ public class ApplicationConnector {
                 }
                 
                 if (agentFile.exists()) {
-                    System.out.println("Attempting to inject agent into target process...");
-                    System.out.println("Agent path: " + agentFile.getAbsolutePath());
+                    System.err.println("Attempting to inject agent into target process...");
+                    System.err.println("Agent path: " + agentFile.getAbsolutePath());
                     
-                    // Specify output file path in our directory, not target process's directory
-                    String outputPath = new java.io.File(System.getProperty("user.dir"), "inspector-agent-output.json").getAbsolutePath();
-                    String result = AttachConnector.attachAndInspect(String.valueOf(pid), agentFile.getAbsolutePath(), "output:" + outputPath);
-                    System.out.println(result);
+                    // An absolute path, as the target process has its own working directory
+                    String outputPath = outputFile.toAbsolutePath().toString();
+                    String agentArgs = "fields:" + profile.toSpec() + ";"
+                        + (sliceBudget != null ? "slice:" + sliceBudget.toSpec() + ";" : "")
+                        + "depth:" + maxDepth + ";"
+                        + (!budget.isUnlimited() ? "budget:" + budget.toSpec() + ";" : "")
+                        + "output:" + outputPath;
+                    String result = inspectOverSession(String.valueOf(pid), agentArgs);
+                    if (result == null) {
+                        result = AttachConnector.attachAndInspect(String.valueOf(pid), agentFile.getAbsolutePath(), agentArgs);
+                    }
+                    System.err.println(result);
                     
                     // Check if agent JSON output file was created
-                    java.io.File jsonOutput = new java.io.File("inspector-agent-output.json");
+                    java.io.File jsonOutput = outputFile.toFile();
                     if (jsonOutput.exists()) {
                         return new ConnectionResult("Agent successfully inspected target process.\nResults saved to: " + jsonOutput.getAbsolutePath());
                     }
@@ -63,17 +119,17 @@ public class ApplicationConnector {
                     
                     return new ConnectionResult("Agent injected but no output file created. Check target process console.");
                 } else {
-                    System.out.println("Agent JAR not found at: " + agentFile.getAbsolutePath());
+                    System.err.println("Agent JAR not found at: " + agentFile.getAbsolutePath());
                 }
             } catch (Exception e) {
-                System.out.println("Attach API failed: " + e.getMessage());
+                System.err.println("Attach API failed: " + e.getMessage());
                 // Fall through to try window-based approach
             }
         } else {
             // Non-Java process - use Windows UIA
-            System.out.println("Detected non-Java process");
-            System.out.println("Switching to Windows UI Automation...");
-            String result = WindowsUIAInspector.inspectProcess(pid);
+            System.err.println("Detected non-Java process");
+            System.err.println("Switching to Windows UI Automation...");
+            String result = WindowsUIAInspector.inspectProcess(pid, outputFile);
             return new ConnectionResult(result);
         }
         
@@ -85,6 +141,24 @@ public class ApplicationConnector {
         return connectToWindow(window);
     }
     
+    /**
+     * Repeat an inspection over the process's agent session, if one is open. Returns null when
+     * the process has to be attached instead.
+     */
+    private static String inspectOverSession(String pid, String agentArgs) {
+        AgentSession session = AgentSession.get(pid);
+        if (session == null) {
+            return null;
+        }
+        try {
+            session.snapshot(agentArgs);
+            return "Agent session reused for PID " + pid;
+        } catch (IOException e) {
+            System.err.println("Agent session lost (" + e.getMessage() + "), attaching again");
+            return null;
+        }
+    }
+    
     public static ConnectionResult connectByTitle(String titlePattern) {
         WindowEnumerator.WindowInfo window = WindowEnumerator.findWindowByTitle(titlePattern);
         if (window == null) {
@@ -1,5 +1,6 @@
 package com.inspector.core;
 
+import com.inspector.util.OutputFiles;
 import com.sun.tools.attach.VirtualMachine;
 import com.sun.tools.attach.VirtualMachineDescriptor;
 import com.sun.tools.attach.AttachNotSupportedException;
@@ -7,6 +8,9 @@ import com.sun.tools.attach.AgentLoadException;
 import com.sun.tools.attach.AgentInitializationException;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
@@ -16,69 +20,73 @@ import java.util.List;
 public class AttachConnector {
     
     /**
-     * Check if a PID corresponds to a Java process.
+     * Check if a PID corresponds to a Java process. Answered from JvmDiscoveryService's cached
+     * listing, so it is cheap enough to call for every window of a process list.
      */
     public static boolean isJavaProcess(String pid) {
-        List<VirtualMachineDescriptor> vms = VirtualMachine.list();
-        for (VirtualMachineDescriptor vmd : vms) {
-            if (vmd.id().equals(pid)) {
-                return true;
-            }
-        }
-        return false;
+        return JvmDiscoveryService.getDefault().isJavaProcess(pid);
     }
     
     /**
      * List all Java processes.
      */
     public static List<VirtualMachineDescriptor> listJavaProcesses() {
-        return VirtualMachine.list();
+        return JvmDiscoveryService.getDefault().list();
     }
     
     /**
      * Attach to a running JVM and load inspection agent.
-     * The agent will expose the accessibility tree via a socket or file.
+     * The agent writes the accessibility tree to the output file named in agentArgs, to a temp
+     * file first and then renamed into place, so the file only appears once it is complete.
+     * The inspection runs in the agent's agentmain, which loadAgent waits for, so the file is
+     * there when this returns unless the inspection failed.
+     * The VirtualMachine stays attached in AttachSessionCache for the next operation on pid.
+     *
+     * The agent is also given a fresh token, with which an AgentSession is opened for later
+     * inspections into the same directory.
      */
     public static String attachAndInspect(String pid, String agentJarPath, String agentArgs) throws IOException, AttachNotSupportedException, AgentLoadException, AgentInitializationException {
-        VirtualMachine vm = null;
+        // Extract output file path from agent args ("output:" is always the last option); without
+        // one, the agent is given a file of this inspection's own
+        int outputIndex = agentArgs != null ? agentArgs.indexOf("output:") : -1;
+        Path outputFile;
+        if (outputIndex >= 0) {
+            outputFile = Paths.get(agentArgs.substring(outputIndex + 7)).toAbsolutePath();
+        } else {
+            outputFile = OutputFiles.newSessionOutput(pid);
+            agentArgs = (agentArgs != null && !agentArgs.isEmpty() ? agentArgs + ";" : "") + "output:" + outputFile;
+        }
+        // A file left by an earlier run must not pass for this run's result
+        Files.deleteIfExists(outputFile);
+        String token = AgentSession.newToken();
+        String args = "token:" + token + ";" + agentArgs;
+        
+        // Load our agent into the target JVM. loadAgent returns only once the agent's agentmain
+        // has, so the lease is held for the whole inspection and the output is complete by then
+        AttachSessionCache.getDefault().withVm(pid, vm -> {
+            vm.loadAgent(agentJarPath, args);
+            openSession(vm, pid, token);
+            return null;
+        });
+        
+        if (Files.exists(outputFile)) {
+            return "Agent loaded successfully into PID " + pid + ", output: " + outputFile;
+        } else {
+            // The agent reports what went wrong on the target's stderr
+            return "Agent loaded into PID " + pid + " but its inspection failed, no output was written to "
+                + outputFile + ". Check target process console for errors.";
+        }
+    }
+    
+    // The agent leaves a server running; connect to it so that later inspections can skip attaching
+    private static void openSession(VirtualMachine vm, String pid, String token) {
         try {
-            vm = VirtualMachine.attach(pid);
-            
-            // Load our agent into the target JVM
-            vm.loadAgent(agentJarPath, agentArgs);
-            
-            // Extract output file path from agent args
-            String outputFilePath = "inspector-agent-output.json";
-            if (agentArgs != null && agentArgs.startsWith("output:")) {
-                outputFilePath = agentArgs.substring(7);
-            }
-            
-            // Wait for agent to write output file (max 10 seconds)
-            java.io.File outputFile = new java.io.File(outputFilePath);
-            int maxWaitMs = 10000;
-            int waitedMs = 0;
-            int pollIntervalMs = 100;
-            
-            while (!outputFile.exists() && waitedMs < maxWaitMs) {
-                try {
-                    Thread.sleep(pollIntervalMs);
-                    waitedMs += pollIntervalMs;
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-            
-            if (outputFile.exists()) {
-                return "Agent loaded successfully into PID " + pid;
-            } else {
-                return "Agent loaded but did not produce output within " + (maxWaitMs/1000) + " seconds. Check target process console for errors.";
-            }
-            
-        } finally {
-            if (vm != null) {
-                vm.detach();
+            String port = vm.getSystemProperties().getProperty(AgentSession.PORT_PROPERTY);
+            if (port != null) {
+                AgentSession.open(pid, Integer.parseInt(port), token);
             }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Could not open agent session: " + e.getMessage());
         }
     }
     
@@ -86,14 +94,38 @@ public class AttachConnector {
      * Get system properties from target JVM.
      */
     public static java.util.Properties getSystemProperties(String pid) throws IOException, AttachNotSupportedException {
-        VirtualMachine vm = null;
+        return query(pid, VirtualMachine::getSystemProperties);
+    }
+    
+    /**
+     * Get the agent properties of the target JVM (e.g. the JMX connector address once the
+     * management agent runs), as jcmd's VM.system_properties does for system properties.
+     */
+    public static java.util.Properties getAgentProperties(String pid) throws IOException, AttachNotSupportedException {
+        return query(pid, VirtualMachine::getAgentProperties);
+    }
+    
+    /**
+     * Start the local JMX management agent of the target JVM, as jcmd's
+     * ManagementAgent.start_local does, and return its connector address.
+     */
+    public static String startLocalManagementAgent(String pid) throws IOException, AttachNotSupportedException {
+        return query(pid, VirtualMachine::startLocalManagementAgent);
+    }
+    
+    // A call of the attach session cache that cannot fail with an agent's exceptions
+    private static <T> T query(String pid, AttachSessionCache.VmCall<T> call) throws IOException, AttachNotSupportedException {
         try {
-            vm = VirtualMachine.attach(pid);
-            return vm.getSystemProperties();
-        } finally {
-            if (vm != null) {
-                vm.detach();
-            }
+            return AttachSessionCache.getDefault().withVm(pid, call);
+        } catch (AgentLoadException | AgentInitializationException e) {
+            throw new IllegalStateException(e);
         }
     }
+    
+    /**
+     * Attach latency and reuse counts of the attach session cache.
+     */
+    public static java.util.Map<String, Object> getAttachStatistics() {
+        return AttachSessionCache.getDefault().getStatistics();
+    }
 }
@@ -0,0 +1,314 @@
+package com.inspector.core;
+
+import com.sun.tools.attach.AgentInitializationException;
+import com.sun.tools.attach.AgentLoadException;
+import com.sun.tools.attach.AttachNotSupportedException;
+import com.sun.tools.attach.VirtualMachine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Attached VirtualMachines kept by PID, so that a series of operations on one process pays the
+ * attach handshake once.
+ *
+ * An operation takes a Lease, which holds the process's VirtualMachine for itself until closed;
+ * operations on different processes run side by side. A VirtualMachine nobody has leased for
+ * the idle time is detached. A lease whose operation failed with an IOException should be
+ * invalidated, which detaches the VirtualMachine when the lease is closed: the target is
+ * probably gone. withVm() does all of this for a single call.
+ *
+ * Attach latency, reuses and detaches are counted for getStatistics().
+ */
+public class AttachSessionCache implements Closeable {
+
+    /** Idle time before detaching when none is given, overridden by -Dinspector.attach.idleMs. */
+    public static final long DEFAULT_IDLE_MS = Long.getLong("inspector.attach.idleMs", 30000);
+
+    private static AttachSessionCache defaultCache;
+
+    /**
+     * Attaches to a process; VirtualMachine::attach outside of tests.
+     */
+    public interface Attacher {
+        VirtualMachine attach(String pid) throws IOException, AttachNotSupportedException;
+    }
+
+    /**
+     * An operation on a leased VirtualMachine, for withVm().
+     */
+    public interface VmCall<T> {
+        T call(VirtualMachine vm) throws IOException, AgentLoadException, AgentInitializationException;
+    }
+
+    // A process's VirtualMachine; lock is held by the lease using it
+    private static final class Entry {
+        final String pid;
+        final ReentrantLock lock = new ReentrantLock();
+        // Written with lock held; read without it for the statistics
+        volatile VirtualMachine vm;
+        long lastUsed;
+
+        Entry(String pid) {
+            this.pid = pid;
+        }
+    }
+
+    /**
+     * The VirtualMachine of one process, for the caller alone until closed.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final boolean reused;
+        private boolean invalid;
+        private boolean closed;
+
+        Lease(Entry entry, boolean reused) {
+            this.entry = entry;
+            this.reused = reused;
+        }
+
+        public VirtualMachine vm() {
+            return entry.vm;
+        }
+
+        /**
+         * Whether the VirtualMachine was attached by an earlier lease.
+         */
+        public boolean isReused() {
+            return reused;
+        }
+
+        /**
+         * Detach when closed rather than keep the VirtualMachine.
+         */
+        public void invalidate() {
+            invalid = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (invalid || AttachSessionCache.this.closed) {
+                    detach(entry);
+                } else {
+                    entry.lastUsed = System.nanoTime();
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    private final long idleNanos;
+    private final Attacher attacher;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+    private ScheduledFuture<?> sweep;
+    private volatile boolean closed;
+
+    private int attaches;
+    private int reuses;
+    private int detaches;
+    private int failedAttaches;
+    private long attachNanos;
+    private long maxAttachNanos;
+
+    public AttachSessionCache(long idleMs) {
+        this(idleMs, VirtualMachine::attach);
+    }
+
+    public AttachSessionCache(long idleMs, Attacher attacher) {
+        if (idleMs <= 0) {
+            throw new IllegalArgumentException("Idle time must be positive: " + idleMs);
+        }
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMs);
+        this.attacher = attacher;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attach-session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The cache AttachConnector uses.
+     */
+    public static synchronized AttachSessionCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new AttachSessionCache(DEFAULT_IDLE_MS);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Lease the VirtualMachine of a process, attaching if none is kept. Blocks while another
+     * lease of the same process is open.
+     */
+    public Lease acquire(String pid) throws IOException, AttachNotSupportedException {
+        if (closed) {
+            throw new IllegalStateException("Attach session cache is closed");
+        }
+        while (true) {
+            Entry entry = entries.computeIfAbsent(pid, Entry::new);
+            entry.lock.lock();
+            if (entries.get(pid) != entry) {
+                // Detached and dropped while we waited
+                entry.lock.unlock();
+                continue;
+            }
+            if (entry.vm != null) {
+                synchronized (this) {
+                    reuses++;
+                }
+                return new Lease(entry, true);
+            }
+            long start = System.nanoTime();
+            try {
+                entry.vm = attacher.attach(pid);
+            } catch (IOException | AttachNotSupportedException | RuntimeException e) {
+                entries.remove(pid, entry);
+                entry.lock.unlock();
+                synchronized (this) {
+                    failedAttaches++;
+                }
+                throw e;
+            }
+            long nanos = System.nanoTime() - start;
+            synchronized (this) {
+                attaches++;
+                attachNanos += nanos;
+                maxAttachNanos = Math.max(maxAttachNanos, nanos);
+                if (sweep == null && !closed) {
+                    long period = Math.max(TimeUnit.MILLISECONDS.toNanos(50), idleNanos / 2);
+                    sweep = reaper.scheduleWithFixedDelay(this::detachIdle, period, period, TimeUnit.NANOSECONDS);
+                }
+            }
+            return new Lease(entry, false);
+        }
+    }
+
+    /**
+     * Run call on the VirtualMachine of a process under a lease, which is invalidated if call
+     * fails with an IOException.
+     */
+    public <T> T withVm(String pid, VmCall<T> call)
+            throws IOException, AttachNotSupportedException, AgentLoadException, AgentInitializationException {
+        try (Lease lease = acquire(pid)) {
+            try {
+                return call.call(lease.vm());
+            } catch (IOException e) {
+                lease.invalidate();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Detach the VirtualMachines nobody has leased for the idle time.
+     */
+    public void detachIdle() {
+        long now = System.nanoTime();
+        for (Entry entry : entries.values()) {
+            if (entry.lock.tryLock()) {
+                try {
+                    if (entry.vm != null && now - entry.lastUsed >= idleNanos) {
+                        detach(entry);
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+        synchronized (this) {
+            if (entries.isEmpty() && sweep != null) {
+                sweep.cancel(false);
+                sweep = null;
+            }
+        }
+    }
+
+    /**
+     * The number of VirtualMachines currently attached.
+     */
+    public int size() {
+        return (int) entries.values().stream().filter(entry -> entry.vm != null).count();
+    }
+
+    /**
+     * Attaches, reuses, detaches and attach latency so far, as in the statistics block of an
+     * ExplorationResult.
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("attaches", attaches);
+        stats.put("failed_attaches", failedAttaches);
+        stats.put("reuses", reuses);
+        stats.put("detaches", detaches);
+        stats.put("attached", size());
+        stats.put("attach_ms_total", attachNanos / 1_000_000.0);
+        stats.put("attach_ms_max", maxAttachNanos / 1_000_000.0);
+        stats.put("attach_ms_mean", attaches > 0 ? attachNanos / 1_000_000.0 / attaches : 0.0);
+        return stats;
+    }
+
+    /**
+     * Stop detaching idle VirtualMachines and detach everything not leased at the moment; leased
+     * VirtualMachines are detached when their lease is closed. No lease can be taken afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            if (sweep != null) {
+                sweep.cancel(false);
+                sweep = null;
+            }
+        }
+        reaper.shutdownNow();
+        List<Entry> all = new ArrayList<>(entries.values());
+        for (Entry entry : all) {
+            if (entry.lock.tryLock()) {
+                try {
+                    // A hold count above one: leased by this thread
+                    if (entry.lock.getHoldCount() == 1) {
+                        detach(entry);
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    // With entry's lock held
+    private void detach(Entry entry) {
+        entries.remove(entry.pid, entry);
+        if (entry.vm == null) {
+            return;
+        }
+        try {
+            entry.vm.detach();
+        } catch (IOException e) {
+            // The target is gone; nothing to release
+        }
+        entry.vm = null;
+        synchronized (this) {
+            detaches++;
+        }
+    }
+}
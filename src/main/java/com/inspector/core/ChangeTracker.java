@@ -0,0 +1,157 @@
+package com.inspector.core;
+
+import com.inspector.model.ElementData;
+
+import javax.accessibility.AccessibleContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Follows a subtree of a live UI and reports what changed between two looks at it, for keeping
+ * a remote mirror up to date without sending the whole tree again.
+ *
+ * Built on an incremental UITreeExplorer: poll() does nothing until an element has fired a
+ * change event, and then re-captures only the changed parts of the tree. Changes are coalesced:
+ * however many events arrive between two polls, each element is reported at most once, by
+ * comparing the new capture with the previous one. Bounds changes fire no events, so moves and
+ * resizes are only reported along with another change of the same element.
+ *
+ * Not thread-safe: start() and poll() must be called from one thread at a time (not the EDT).
+ */
+public class ChangeTracker {
+
+    public enum Kind { ADDED, REMOVED, CHANGED }
+
+    /**
+     * One changed element. ADDED changes of a new subtree come parent first.
+     */
+    public static final class Change {
+        private final Kind kind;
+        private final AccessibleContext context;
+        private final AccessibleContext parent;
+        private final ElementData element;
+
+        Change(Kind kind, AccessibleContext context, AccessibleContext parent, ElementData element) {
+            this.kind = kind;
+            this.context = context;
+            this.parent = parent;
+            this.element = element;
+        }
+
+        public Kind getKind() { return kind; }
+
+        public AccessibleContext getContext() { return context; }
+
+        /** The parent's context for ADDED changes, null for the others and for the root. */
+        public AccessibleContext getParent() { return parent; }
+
+        /** The element's new values without children, null for REMOVED changes. */
+        public ElementData getElement() { return element; }
+    }
+
+    private final AccessibleContext root;
+    private final UITreeExplorer explorer;
+    private final EdtSliceBudget sliceBudget;
+    private Map<AccessibleContext, RawElement> previous = Collections.emptyMap();
+
+    public ChangeTracker(AccessibleContext root, int maxDepth, boolean includeInvisible,
+                         ExtractionProfile profile, EdtSliceBudget sliceBudget) {
+        this.root = root;
+        this.explorer = new UITreeExplorer(maxDepth, includeInvisible, TraversalOrder.DEPTH_FIRST, profile);
+        this.explorer.setIncremental(true);
+        this.sliceBudget = sliceBudget;
+    }
+
+    /**
+     * Capture the subtree as the baseline for later polls. Returns null if the root is no longer
+     * accessible.
+     */
+    public RawElement start() throws InterruptedException {
+        RawElement capture = explorer.captureOnEdt(root, sliceBudget);
+        previous = index(capture, null);
+        return capture;
+    }
+
+    /**
+     * The explorer behind this tracker, e.g. to process() the capture start() returned.
+     */
+    public UITreeExplorer getExplorer() {
+        return explorer;
+    }
+
+    /**
+     * The changes since the last call (or start()), empty if there were none.
+     */
+    public List<Change> poll() throws InterruptedException {
+        if (!explorer.hasPendingChanges()) {
+            return Collections.emptyList();
+        }
+        RawElement capture = explorer.captureOnEdt(root, sliceBudget);
+        Map<AccessibleContext, AccessibleContext> parents = new IdentityHashMap<>();
+        Map<AccessibleContext, RawElement> current = index(capture, parents);
+
+        List<Change> changes = new ArrayList<>();
+        if (capture != null) {
+            Deque<RawElement> elements = new ArrayDeque<>();
+            elements.push(capture);
+            while (!elements.isEmpty()) {
+                RawElement raw = elements.pop();
+                RawElement before = previous.get(raw.context);
+                if (before == raw) {
+                    // Subtree taken from the cache as it is: nothing in it changed
+                    continue;
+                } else if (before == null) {
+                    changes.add(new Change(Kind.ADDED, raw.context, parents.get(raw.context),
+                                           SnapshotProcessor.toElementData(raw)));
+                } else if (!before.sameProperties(raw)) {
+                    changes.add(new Change(Kind.CHANGED, raw.context, null, SnapshotProcessor.toElementData(raw)));
+                }
+                for (int i = raw.children.size() - 1; i >= 0; i--) {
+                    elements.push(raw.children.get(i));
+                }
+            }
+        }
+        for (Map.Entry<AccessibleContext, RawElement> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                changes.add(new Change(Kind.REMOVED, entry.getKey(), null, null));
+            }
+        }
+        previous = current;
+        return changes;
+    }
+
+    /**
+     * Remove the change listeners from the UI.
+     */
+    public void close() {
+        explorer.dispose();
+        previous = Collections.emptyMap();
+    }
+
+    // Map every element of a capture by its context, and optionally each context to its parent's
+    private static Map<AccessibleContext, RawElement> index(RawElement capture,
+                                                           Map<AccessibleContext, AccessibleContext> parents) {
+        Map<AccessibleContext, RawElement> byContext = new IdentityHashMap<>();
+        if (capture == null) {
+            return byContext;
+        }
+        Deque<RawElement> elements = new ArrayDeque<>();
+        elements.push(capture);
+        while (!elements.isEmpty()) {
+            RawElement raw = elements.pop();
+            byContext.put(raw.context, raw);
+            for (RawElement child : raw.children) {
+                if (parents != null) {
+                    parents.put(child.context, raw.context);
+                }
+                elements.push(child);
+            }
+        }
+        return byContext;
+    }
+}
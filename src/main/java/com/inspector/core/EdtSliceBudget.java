@@ -0,0 +1,82 @@
+package com.inspector.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much work a sliced snapshot may do on the Event Dispatch Thread before yielding.
+ * A slice ends at whichever limit is reached first.
+ *
+ * The budget also bounds how long the caller waits for the whole snapshot: a UI thread that is
+ * blocked, or too busy to run the slices, fails the snapshot with an EdtTimeoutException instead
+ * of hanging its caller.
+ */
+public class EdtSliceBudget {
+
+    /** How long a caller waits for a whole snapshot when no timeout is given. */
+    public static final long DEFAULT_TIMEOUT_MS = 30000;
+
+    /** 2 ms or 500 elements per slice: well under a 60 Hz frame. */
+    public static final EdtSliceBudget DEFAULT = new EdtSliceBudget(TimeUnit.MILLISECONDS.toNanos(2), 500);
+
+    private final long maxNanos;
+    private final int maxNodes;
+    private final long timeoutNanos;
+
+    public EdtSliceBudget(long maxNanos, int maxNodes) {
+        this(maxNanos, maxNodes, TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MS));
+    }
+
+    public EdtSliceBudget(long maxNanos, int maxNodes, long timeoutNanos) {
+        if (maxNanos <= 0 || maxNodes <= 0 || timeoutNanos <= 0) {
+            throw new IllegalArgumentException("Slice budget must be positive: " + maxNanos + "ns, " + maxNodes
+                + " nodes, " + timeoutNanos + "ns timeout");
+        }
+        this.maxNanos = maxNanos;
+        this.maxNodes = maxNodes;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * Parse "<ms>", "<ms>,<nodes>" or "<ms>,<nodes>,<timeoutMs>", e.g. "2" or "2.5,200,10000".
+     * The node limit and the timeout default to DEFAULT's.
+     */
+    public static EdtSliceBudget parse(String spec) {
+        String[] parts = spec.trim().split(",");
+        try {
+            long nanos = (long) (Double.parseDouble(parts[0].trim()) * TimeUnit.MILLISECONDS.toNanos(1));
+            int nodes = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : DEFAULT.maxNodes;
+            long timeoutNanos = parts.length > 2
+                ? TimeUnit.MILLISECONDS.toNanos(Long.parseLong(parts[2].trim())) : DEFAULT.timeoutNanos;
+            return new EdtSliceBudget(nanos, nodes, timeoutNanos);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid slice budget: " + spec + " (expected <ms>[,<nodes>[,<timeoutMs>]])");
+        }
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * How long a caller waits for a whole snapshot.
+     */
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    /**
+     * The inverse of parse().
+     */
+    public String toSpec() {
+        return (maxNanos / 1_000_000.0) + "," + maxNodes + "," + TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+    }
+
+    @Override
+    public String toString() {
+        return toSpec();
+    }
+}
@@ -0,0 +1,110 @@
+package com.inspector.core;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a resumable walk on a UI thread in slices of an EdtSliceBudget, while the calling thread
+ * waits for it.
+ *
+ * Each slice is posted to the UI thread, runs until the budget's time or element limit is
+ * reached, and posts the rest, so queued paint and input events run in between. If the walk is
+ * not complete within the budget's timeout, or the caller is interrupted, the slices still
+ * queued are cancelled. Called on the UI thread itself, the walk cannot yield and runs as a
+ * single slice.
+ *
+ * Used by UITreeExplorer.captureOnEdt(), ElementQuery.findOnEdt() and the agent's JavaFX capture.
+ */
+public final class EdtSlicer {
+
+    /**
+     * A thread that owns a UI toolkit's state.
+     */
+    public interface UiThread {
+        boolean isCurrent();
+
+        void post(Runnable task);
+    }
+
+    /**
+     * A walk that can stop and resume where it stopped.
+     */
+    public interface Walk {
+        /**
+         * Continue for up to maxNodes elements or until System.nanoTime() reaches deadline
+         * (Long.MAX_VALUE for none). Returns true once the walk is complete.
+         */
+        boolean run(int maxNodes, long deadline);
+    }
+
+    /** Swing's Event Dispatch Thread. */
+    public static final UiThread SWING = new UiThread() {
+        @Override
+        public boolean isCurrent() {
+            return SwingUtilities.isEventDispatchThread();
+        }
+
+        @Override
+        public void post(Runnable task) {
+            SwingUtilities.invokeLater(task);
+        }
+    };
+
+    private EdtSlicer() {
+    }
+
+    /**
+     * Run walk to completion on thread. what names the walk in exceptions, e.g. "EDT snapshot".
+     *
+     * @throws EdtTimeoutException if the walk is not complete within the budget's timeout
+     */
+    public static void run(UiThread thread, EdtSliceBudget budget, Walk walk, String what) throws InterruptedException {
+        if (thread.isCurrent()) {
+            walk.run(Integer.MAX_VALUE, Long.MAX_VALUE);
+            return;
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        thread.post(new Runnable() {
+            @Override
+            public void run() {
+                if (done.isDone()) {
+                    return; // Cancelled by the caller
+                }
+                try {
+                    long start = System.nanoTime();
+                    if (walk.run(budget.getMaxNodes(), start + budget.getMaxNanos())) {
+                        done.complete(null);
+                    } else {
+                        thread.post(this);
+                    }
+                } catch (Throwable t) {
+                    done.completeExceptionally(t);
+                }
+            }
+        });
+
+        try {
+            done.get(budget.getTimeoutNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            done.cancel(false);
+            throw e;
+        } catch (TimeoutException e) {
+            done.cancel(false);
+            throw new EdtTimeoutException(what + " did not complete within "
+                + TimeUnit.NANOSECONDS.toMillis(budget.getTimeoutNanos()) + " ms");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(what + " failed", cause);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.inspector.core;
+
+/**
+ * Thrown when a snapshot sliced onto a UI thread does not complete within its EdtSliceBudget's
+ * timeout, e.g. because the thread is blocked. The slices still queued are cancelled.
+ */
+public class EdtTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public EdtTimeoutException(String message) {
+        super(message);
+    }
+}
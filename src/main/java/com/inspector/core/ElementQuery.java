@@ -0,0 +1,269 @@
+package com.inspector.core;
+
+import javax.accessibility.Accessible;
+import javax.accessibility.AccessibleContext;
+import javax.accessibility.AccessibleRole;
+import javax.accessibility.AccessibleState;
+import javax.accessibility.AccessibleStateSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the elements of a live accessibility tree that match a Selector, without capturing the
+ * rest of the tree.
+ *
+ * The walk reads each element's role, and its name and states only when a step that could match
+ * there needs them. It keeps, per element, the set of selector steps the element may still match
+ * given its ancestors, so the whole path is checked in one pass. Subtrees are pruned below
+ * invisible elements (unless includeInvisible), below maxDepth, and wherever no step can match
+ * any more, which for an anchored selector ("> ...") bounds the walk by the selector's length.
+ * The walk stops at the limit-th match.
+ *
+ * Matches are captured as RawElements without children, with the ExtractionProfile's properties
+ * and their contexts, so callers can hand out handles for them.
+ */
+public class ElementQuery {
+
+    /** Matches returned when no limit is set. */
+    public static final int DEFAULT_LIMIT = 100;
+
+    private final Selector selector;
+    private final int maxDepth;
+    private final boolean includeInvisible;
+    private final UITreeExplorer matchExplorer;
+    private int limit = DEFAULT_LIMIT;
+    private int visitedElements;
+    private int prunedSubtrees;
+    private boolean limitReached;
+
+    public ElementQuery(Selector selector, int maxDepth, boolean includeInvisible, ExtractionProfile profile) {
+        this.selector = selector;
+        this.maxDepth = maxDepth;
+        this.includeInvisible = includeInvisible;
+        this.matchExplorer = new UITreeExplorer(0, true, TraversalOrder.DEPTH_FIRST, profile);
+        this.matchExplorer.setKeepContexts(true);
+    }
+
+    /**
+     * Stop the walk once this many elements have matched.
+     */
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Query limit must be positive: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * The matches below (and including) root in pre-order, walking on the calling thread.
+     */
+    public List<RawElement> find(AccessibleContext root) {
+        return find(Collections.singletonList(root));
+    }
+
+    /**
+     * The matches below each of roots in turn, the limit counting across them all.
+     */
+    public List<RawElement> find(List<AccessibleContext> roots) {
+        Walk walk = new Walk(roots);
+        walk.run(Integer.MAX_VALUE, Long.MAX_VALUE);
+        return walk.matches;
+    }
+
+    /**
+     * Like find(), walking on the Event Dispatch Thread in slices of the given budget, as
+     * UITreeExplorer.captureOnEdt() does (see EdtSlicer). The calling thread blocks until the
+     * walk is complete, or throws an EdtTimeoutException after the budget's timeout.
+     */
+    public List<RawElement> findOnEdt(List<AccessibleContext> roots, EdtSliceBudget budget) throws InterruptedException {
+        Walk walk = new Walk(roots);
+        EdtSlicer.run(EdtSlicer.SWING, budget, walk::run, "EDT query");
+        return walk.matches;
+    }
+
+    /**
+     * Elements read by the last walk.
+     */
+    public int getVisitedElements() {
+        return visitedElements;
+    }
+
+    /**
+     * Subtrees the last walk skipped: invisible, too deep, or where no step could match.
+     */
+    public int getPrunedSubtrees() {
+        return prunedSubtrees;
+    }
+
+    /**
+     * Whether the last walk stopped at the limit, so that more elements may match.
+     */
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    // An element still to visit, or the children of parent from index on, with the steps they
+    // may match as bits
+    private static final class Pending {
+        final AccessibleContext context;
+        final AccessibleContext parent;
+        final int index;
+        final int count;
+        final int depth;
+        final long candidates;
+
+        Pending(AccessibleContext context, int depth, long candidates) {
+            this(context, null, 0, 0, depth, candidates);
+        }
+
+        Pending(AccessibleContext context, AccessibleContext parent, int index, int count, int depth, long candidates) {
+            this.context = context;
+            this.parent = parent;
+            this.index = index;
+            this.count = count;
+            this.depth = depth;
+            this.candidates = candidates;
+        }
+    }
+
+    private final class Walk {
+        final Deque<Pending> pending = new ArrayDeque<>();
+        final Set<AccessibleContext> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<RawElement> matches = new ArrayList<>();
+        final long lastStep = 1L << (selector.steps.length - 1);
+
+        Walk(List<AccessibleContext> roots) {
+            visitedElements = 0;
+            prunedSubtrees = 0;
+            limitReached = false;
+            // An anchored selector starts below the root, so the root matches no step
+            long rootCandidates = selector.anchored ? 0 : 1;
+            for (int i = roots.size() - 1; i >= 0; i--) {
+                pending.push(new Pending(roots.get(i), 0, rootCandidates));
+            }
+        }
+
+        // Walk until done, maxNodes elements have been read or deadline has passed; true when done
+        boolean run(int maxNodes, long deadline) {
+            int read = 0;
+            while (!pending.isEmpty()) {
+                if (read >= maxNodes || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)) {
+                    return false;
+                }
+                Pending next = pending.pop();
+                if (next.parent != null) {
+                    // Children are fetched one at a time, as Swing finds the i-th by counting, so
+                    // a walk stopped at its limit fetches no more of them
+                    if (next.index + 1 < next.count) {
+                        pending.push(new Pending(null, next.parent, next.index + 1, next.count, next.depth, next.candidates));
+                    }
+                    Accessible child = next.parent.getAccessibleChild(next.index);
+                    if (child == null) {
+                        continue;
+                    }
+                    next = new Pending(child.getAccessibleContext(), next.depth, next.candidates);
+                }
+                AccessibleContext ac = next.context;
+                if (ac == null || !visited.add(ac)) {
+                    continue;
+                }
+                read++;
+                visitedElements++;
+                visit(next);
+                if (matches.size() >= limit) {
+                    limitReached = !pending.isEmpty();
+                    pending.clear();
+                }
+            }
+            return true;
+        }
+
+        private void visit(Pending next) {
+            AccessibleContext ac = next.context;
+            AccessibleStateSet states = null;
+            if (!includeInvisible) {
+                states = ac.getAccessibleStateSet();
+                if (states != null && !states.contains(AccessibleState.VISIBLE)) {
+                    prunedSubtrees++;
+                    return;
+                }
+            }
+
+            // Bits of the steps this element matches
+            long matched = 0;
+            if (next.candidates != 0) {
+                AccessibleRole role = ac.getAccessibleRole();
+                String roleName = role != null ? SnapshotProcessor.displayName(role).toLowerCase(Locale.ROOT) : null;
+                String name = null;
+                boolean nameRead = false;
+                for (int i = 0; i < selector.steps.length; i++) {
+                    if ((next.candidates & (1L << i)) == 0) {
+                        continue;
+                    }
+                    Selector.Step step = selector.steps[i];
+                    if (step.role != null && !step.role.equals(roleName)) {
+                        continue;
+                    }
+                    if (step.needsName() && !nameRead) {
+                        name = ac.getAccessibleName();
+                        nameRead = true;
+                    }
+                    if (step.needsStates() && states == null) {
+                        states = ac.getAccessibleStateSet();
+                    }
+                    if (matches(step, name, states)) {
+                        matched |= 1L << i;
+                    }
+                }
+            }
+            if ((matched & lastStep) != 0) {
+                matches.add(matchExplorer.capture(ac));
+            }
+
+            // A child may match: the first step again (unless anchored), the step after one
+            // this element matched, or a descendant step this element was a candidate for
+            long childCandidates = (matched << 1) & ((lastStep << 1) - 1) | (next.candidates & selector.descendantSteps);
+            if (!selector.anchored || next.depth == 0) {
+                childCandidates |= 1;
+            }
+            int childCount = ac.getAccessibleChildrenCount();
+            if (childCount == 0) {
+                return;
+            }
+            if (childCandidates == 0 || next.depth >= maxDepth) {
+                prunedSubtrees++;
+                return;
+            }
+            pending.push(new Pending(null, ac, 0, childCount, next.depth + 1, childCandidates));
+        }
+    }
+
+    private static boolean matches(Selector.Step step, String name, AccessibleStateSet states) {
+        if (step.nameEquals != null && !step.nameEquals.equals(name)) {
+            return false;
+        }
+        for (Pattern pattern : step.namePatterns) {
+            if (name == null || !pattern.matcher(name).find()) {
+                return false;
+            }
+        }
+        for (AccessibleState state : step.requiredStates) {
+            if (states == null || !states.contains(state)) {
+                return false;
+            }
+        }
+        for (AccessibleState state : step.excludedStates) {
+            if (states != null && states.contains(state)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
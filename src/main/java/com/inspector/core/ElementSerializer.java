@@ -3,6 +3,10 @@ package com.inspector.core;
 import com.inspector.model.ElementData;
 import com.inspector.model.ExplorationResult;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ElementSerializer {
@@ -10,6 +14,13 @@ public class ElementSerializer {
     public static ExplorationResult createResult(ElementData rootElement, String pid, String title, 
                                                   Map<String, Integer> elementCounts, int totalElements,
                                                   long durationMs) {
+        return createResult(rootElement, pid, title, elementCounts, Collections.emptyMap(), totalElements, durationMs);
+    }
+    
+    public static ExplorationResult createResult(ElementData rootElement, String pid, String title, 
+                                                  Map<String, Integer> elementCounts,
+                                                  Map<String, Integer> textStrategyCounts, int totalElements,
+                                                  long durationMs) {
         ExplorationResult result = new ExplorationResult();
         
         // Set application info
@@ -20,23 +31,58 @@ public class ElementSerializer {
         result.setApplication(appInfo);
         
         // Set statistics
-        Map<String, Object> stats = result.getStatistics();
+        result.setStatistics(createStatistics(elementCounts, textStrategyCounts, totalElements, durationMs,
+                                              calculateMaxDepth(rootElement)));
+        
+        // Set UI tree
+        result.setUiTree(rootElement);
+        
+        return result;
+    }
+    
+    /**
+     * Build the statistics block of an ExplorationResult. Used directly by streaming exports,
+     * which never hold the full tree and so track the exploration depth themselves.
+     */
+    public static Map<String, Object> createStatistics(Map<String, Integer> elementCounts,
+                                                       Map<String, Integer> textStrategyCounts,
+                                                       int totalElements, long durationMs, int explorationDepth) {
+        Map<String, Object> stats = new HashMap<>();
         stats.put("total_elements", totalElements);
         stats.put("duration_ms", durationMs);
-        stats.put("exploration_depth", calculateMaxDepth(rootElement, 0));
+        stats.put("exploration_depth", explorationDepth);
+        if (!textStrategyCounts.isEmpty()) {
+            stats.put("text_extraction", textStrategyCounts);
+        }
         
         // Add element counts
         for (Map.Entry<String, Integer> entry : elementCounts.entrySet()) {
             stats.put(entry.getKey().toLowerCase().replace(" ", "_"), entry.getValue());
         }
-        
-        // Set UI tree
-        result.setUiTree(rootElement);
-        
-        return result;
+        return stats;
+    }
+    
+    /**
+     * Add the slice count and longest EDT stall of a UITreeExplorer.snapshotOnEdt() capture.
+     */
+    public static void addEdtStatistics(Map<String, Object> stats, int slices, long maxStallNanos) {
+        stats.put("edt_slices", slices);
+        stats.put("edt_max_stall_ms", maxStallNanos / 1_000_000.0);
+    }
+    
+    /**
+     * Mark a result as partial, recording which TraversalBudget limit stopped the exploration.
+     */
+    public static void addTruncation(ExplorationResult result, TraversalBudget.Limit limit) {
+        result.setTruncated(true);
+        addTruncationStatistics(result.getStatistics(), limit);
     }
     
-    private static String detectToolkit(ElementData element) {
+    public static void addTruncationStatistics(Map<String, Object> stats, TraversalBudget.Limit limit) {
+        stats.put("truncated_by", limit.getKey());
+    }
+    
+    public static String detectToolkit(ElementData element) {
         if (element == null || element.getClassName() == null) {
             return "Unknown";
         }
@@ -52,17 +98,26 @@ public class ElementSerializer {
         return "Unknown";
     }
     
-    private static int calculateMaxDepth(ElementData element, int currentDepth) {
-        if (element == null || element.getChildren() == null || element.getChildren().isEmpty()) {
-            return currentDepth;
+    private static int calculateMaxDepth(ElementData root) {
+        if (root == null) {
+            return 0;
         }
         
-        int maxChildDepth = currentDepth;
-        for (ElementData child : element.getChildren()) {
-            int childDepth = calculateMaxDepth(child, currentDepth + 1);
-            maxChildDepth = Math.max(maxChildDepth, childDepth);
+        // Level-order walk: the depth is the number of levels below the root
+        int depth = 0;
+        List<ElementData> level = Collections.singletonList(root);
+        while (true) {
+            List<ElementData> next = new ArrayList<>();
+            for (ElementData element : level) {
+                if (element.getChildren() != null) {
+                    next.addAll(element.getChildren());
+                }
+            }
+            if (next.isEmpty()) {
+                return depth;
+            }
+            depth++;
+            level = next;
         }
-        
-        return maxChildDepth;
     }
 }
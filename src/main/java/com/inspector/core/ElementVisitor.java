@@ -0,0 +1,27 @@
+package com.inspector.core;
+
+import com.inspector.model.ElementData;
+
+/**
+ * Receives exploration events from UITreeExplorer as the tree is walked.
+ *
+ * Events arrive in depth-first pre-order and always nest: every enterElement is matched by a
+ * leaveElement at the same depth after all of the element's descendants have been reported.
+ * Elements passed to a visitor carry all extracted properties but no children, so nothing
+ * forces the explorer to keep the whole tree alive.
+ */
+public interface ElementVisitor {
+
+    /**
+     * Called when an element has been extracted, before any of its children.
+     *
+     * @param element the element's properties; its children list is always empty
+     * @param depth   the element's depth, 0 for the root
+     */
+    void enterElement(ElementData element, int depth);
+
+    /**
+     * Called after the element's last descendant has been reported.
+     */
+    void leaveElement(ElementData element, int depth);
+}
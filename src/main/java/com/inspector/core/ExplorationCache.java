@@ -0,0 +1,150 @@
+package com.inspector.core;
+
+import javax.accessibility.Accessible;
+import javax.accessibility.AccessibleContext;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What an incremental UITreeExplorer remembers between explorations: the RawElement captured for
+ * each visited context, and which contexts have reported changes since.
+ *
+ * A PropertyChangeListener is registered on every cached context. Child, name, state, text and
+ * value events mark the context dirty; the next exploration re-captures dirty contexts and
+ * reuses everything else, re-walking only the ancestors needed to reach a dirty descendant.
+ */
+class ExplorationCache {
+
+    // Events that change what a capture would record for the source context. Bounds changes
+    // fire no accessibility event, so moved or resized components keep their cached bounds.
+    private static final Set<String> DIRTYING_PROPERTIES = Set.of(
+        AccessibleContext.ACCESSIBLE_CHILD_PROPERTY,
+        AccessibleContext.ACCESSIBLE_NAME_PROPERTY,
+        AccessibleContext.ACCESSIBLE_STATE_PROPERTY,
+        AccessibleContext.ACCESSIBLE_DESCRIPTION_PROPERTY,
+        AccessibleContext.ACCESSIBLE_TEXT_PROPERTY,
+        AccessibleContext.ACCESSIBLE_VALUE_PROPERTY,
+        AccessibleContext.ACCESSIBLE_VISIBLE_DATA_PROPERTY);
+
+    static final class Entry {
+        RawElement raw;
+        AccessibleContext parent;
+        final int depth;
+        int indexInParent;
+        final List<Accessible> childOwners = new ArrayList<>();
+        final List<AccessibleContext> childContexts = new ArrayList<>();
+        final List<Integer> childIndexes = new ArrayList<>();
+        boolean dirty;
+        boolean dirtyBelow;
+
+        Entry(RawElement raw, AccessibleContext parent, int depth, int indexInParent) {
+            this.raw = raw;
+            this.parent = parent;
+            this.depth = depth;
+            this.indexInParent = indexInParent;
+        }
+
+        void addChild(Accessible owner, AccessibleContext context, int index) {
+            childOwners.add(owner);
+            childContexts.add(context);
+            childIndexes.add(index);
+        }
+
+        void reverseChildren() {
+            Collections.reverse(childOwners);
+            Collections.reverse(childContexts);
+            Collections.reverse(childIndexes);
+        }
+    }
+
+    private final Map<AccessibleContext, Entry> entries = new IdentityHashMap<>();
+    // Written from whichever thread fires the event, usually the EDT
+    private final Set<AccessibleContext> dirty = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final PropertyChangeListener listener = this::propertyChange;
+
+    private void propertyChange(PropertyChangeEvent event) {
+        if (event.getSource() instanceof AccessibleContext && DIRTYING_PROPERTIES.contains(event.getPropertyName())) {
+            dirty.add((AccessibleContext) event.getSource());
+        }
+    }
+
+    /**
+     * Apply the changes reported since the last exploration. Events that arrive while an
+     * exploration runs are kept for the next one.
+     */
+    void begin() {
+        Iterator<AccessibleContext> it = dirty.iterator();
+        while (it.hasNext()) {
+            Entry entry = entries.get(it.next());
+            it.remove();
+            if (entry == null) {
+                continue;
+            }
+            entry.dirty = true;
+            for (Entry ancestor = entries.get(entry.parent); ancestor != null && !ancestor.dirtyBelow;
+                 ancestor = entries.get(ancestor.parent)) {
+                ancestor.dirtyBelow = true;
+            }
+        }
+    }
+
+    /**
+     * Whether any context has reported a change since the last exploration began.
+     */
+    boolean hasPendingChanges() {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * The entry for a context that can be reused at this depth, or null if it must be captured.
+     */
+    Entry reusable(AccessibleContext context, int depth) {
+        Entry entry = entries.get(context);
+        return entry != null && !entry.dirty && entry.depth == depth ? entry : null;
+    }
+
+    /**
+     * Record a fresh capture of a context, replacing any earlier one.
+     */
+    Entry record(AccessibleContext context, AccessibleContext parent, RawElement raw, int depth, int indexInParent) {
+        Entry entry = new Entry(raw, parent, depth, indexInParent);
+        if (entries.put(context, entry) == null) {
+            context.addPropertyChangeListener(listener);
+        }
+        return entry;
+    }
+
+    /**
+     * Forget contexts the last exploration did not reach.
+     */
+    void retain(Set<AccessibleContext> visited) {
+        Iterator<Map.Entry<AccessibleContext, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            AccessibleContext context = it.next().getKey();
+            if (!visited.contains(context)) {
+                context.removePropertyChangeListener(listener);
+                it.remove();
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        for (AccessibleContext context : entries.keySet()) {
+            context.removePropertyChangeListener(listener);
+        }
+        entries.clear();
+        dirty.clear();
+    }
+}
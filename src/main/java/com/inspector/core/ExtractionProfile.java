@@ -0,0 +1,113 @@
+package com.inspector.core;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Selects which property groups UITreeExplorer and the agent query for each element.
+ * Groups that are switched off are never requested from the accessibility API.
+ *
+ * The role and child count are always extracted because traversal and statistics depend on them.
+ */
+public class ExtractionProfile {
+
+    public enum Field {
+        /** AccessibleContext.getAccessibleName() */
+        NAME,
+        /** AccessibleContext.getAccessibleDescription() */
+        DESCRIPTION,
+        /** The AccessibleStateSet, rendered as state names */
+        STATES,
+        /** AccessibleComponent bounds and the component class name */
+        BOUNDS,
+        /** Index in parent; Swing's getAccessibleIndexInParent() scans the parent's children */
+        INDEX,
+        /** Text content, see TextExtractor */
+        TEXT,
+        /** AccessibleValue current value */
+        VALUE,
+        /** AccessibleAction descriptions */
+        ACTIONS
+    }
+
+    public static final ExtractionProfile ALL = new ExtractionProfile(EnumSet.allOf(Field.class));
+
+    /** Roles and bounds only - enough for the highlight overlay. */
+    public static final ExtractionProfile LAYOUT = new ExtractionProfile(EnumSet.of(Field.BOUNDS));
+
+    /** Roles, names, states and bounds - enough to navigate and identify controls. */
+    public static final ExtractionProfile STRUCTURE = new ExtractionProfile(
+        EnumSet.of(Field.NAME, Field.STATES, Field.BOUNDS));
+
+    private final Set<Field> fields;
+
+    private ExtractionProfile(Set<Field> fields) {
+        this.fields = fields;
+    }
+
+    public static ExtractionProfile of(Set<Field> fields) {
+        return new ExtractionProfile(fields.isEmpty() ? EnumSet.noneOf(Field.class) : EnumSet.copyOf(fields));
+    }
+
+    /**
+     * Parse a profile specification: a preset name ("all", "layout", "structure", "none") or a
+     * comma-separated list of field names such as "name,bounds,states".
+     */
+    public static ExtractionProfile parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return ALL;
+        }
+        switch (spec.trim().toLowerCase(Locale.ROOT)) {
+            case "all":
+                return ALL;
+            case "layout":
+                return LAYOUT;
+            case "structure":
+                return STRUCTURE;
+            case "none":
+            case "roles":
+                return new ExtractionProfile(EnumSet.noneOf(Field.class));
+            default:
+                break;
+        }
+
+        EnumSet<Field> fields = EnumSet.noneOf(Field.class);
+        for (String part : spec.split(",")) {
+            String name = part.trim();
+            if (name.isEmpty() || name.equalsIgnoreCase("role") || name.equalsIgnoreCase("roles")) {
+                continue;
+            }
+            try {
+                fields.add(Field.valueOf(name.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown field: " + name + " (expected one of " + ALL.toSpec() + ")");
+            }
+        }
+        return new ExtractionProfile(fields);
+    }
+
+    public boolean includes(Field field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * The inverse of parse(): a comma-separated field list, or "none".
+     */
+    public String toSpec() {
+        if (fields.isEmpty()) {
+            return "none";
+        }
+        StringJoiner joiner = new StringJoiner(",");
+        for (Field field : fields) {
+            joiner.add(field.name().toLowerCase(Locale.ROOT));
+        }
+        return joiner.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toSpec();
+    }
+}
@@ -0,0 +1,264 @@
+package com.inspector.core;
+
+import com.inspector.util.OutputFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Inspects many processes at once, at most parallelism of them at a time.
+ *
+ * Each process gets its own output file and its own timeout, counted from when its inspection
+ * starts rather than from when it was queued. A process that runs out of time is reported as
+ * timed out right away and its worker is interrupted; an inspection that ignores the interrupt
+ * (an attach blocked in the target) keeps its worker until it returns, which is what bounds the
+ * number of targets being attached to at any time.
+ *
+ * An inspection writes to a path of its own in the temp directory, which is moved to its output
+ * file only if it succeeds in time; whatever a timed-out inspection writes, then or later, never
+ * reaches the output file.
+ */
+public class FleetInspection {
+
+    /** The timeout of one process when none is given. */
+    public static final long DEFAULT_TIMEOUT_MS = 60000;
+
+    /**
+     * Inspects one process, writing its result to output. Throws if there is no result.
+     */
+    public interface Inspection {
+        void inspect(int pid, Path output) throws Exception;
+    }
+
+    public enum Status {
+        OK, FAILED, TIMED_OUT;
+
+        public String getKey() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * How the inspection of one process went.
+     */
+    public static final class Result {
+        private final int pid;
+        private final Status status;
+        private final Path output;
+        private final String error;
+        private final long nanos;
+
+        Result(int pid, Status status, Path output, String error, long nanos) {
+            this.pid = pid;
+            this.status = status;
+            this.output = output;
+            this.error = error;
+            this.nanos = nanos;
+        }
+
+        public int getPid() { return pid; }
+        public Status getStatus() { return status; }
+        public Path getOutput() { return output; }
+        public String getError() { return error; }
+        public long getNanos() { return nanos; }
+    }
+
+    private final int parallelism;
+    private final long timeoutMs;
+    private Consumer<Result> listener = result -> { };
+    private long wallNanos;
+
+    public FleetInspection(int parallelism, long timeoutMs) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive: " + timeoutMs);
+        }
+        this.parallelism = parallelism;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Called with each result as soon as it is known, one at a time, in no particular order.
+     */
+    public void setListener(Consumer<Result> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Inspect every process of pids into the file outputFor gives it, and return the results in
+     * the order of pids once all are known.
+     */
+    public List<Result> run(List<Integer> pids, IntFunction<Path> outputFor, Inspection inspection) throws InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, pids.size())),
+                                                               daemonThreads("fleet-inspection"));
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreads("fleet-watchdog"));
+        try {
+            List<CompletableFuture<Result>> futures = new ArrayList<>();
+            for (int pid : pids) {
+                Path output = outputFor.apply(pid);
+                CompletableFuture<Result> future = new CompletableFuture<>();
+                futures.add(future);
+                workers.execute(() -> inspect(pid, output, inspection, future, watchdog));
+            }
+
+            List<Result> results = new ArrayList<>();
+            for (CompletableFuture<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Fleet inspection failed", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            // Workers still stuck in a timed-out inspection are daemons and are left behind
+            workers.shutdownNow();
+            watchdog.shutdownNow();
+            wallNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void inspect(int pid, Path output, Inspection inspection, CompletableFuture<Result> future,
+                         ScheduledExecutorService watchdog) {
+        long start = System.nanoTime();
+        Thread worker = Thread.currentThread();
+        AtomicBoolean settled = new AtomicBoolean();
+        // Set, under the lock of settled, once the worker is past the inspection
+        boolean[] finished = new boolean[1];
+        ScheduledFuture<?> alarm = watchdog.schedule(() -> {
+            if (complete(settled, future, new Result(pid, Status.TIMED_OUT, output,
+                                            "No result within " + timeoutMs + " ms", System.nanoTime() - start))) {
+                synchronized (settled) {
+                    if (!finished[0]) {
+                        worker.interrupt();
+                    }
+                }
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        // Not output itself, which a timed-out inspection could still write to after its result
+        Path attempt = OutputFiles.newSessionOutput(String.valueOf(pid));
+        Result result;
+        try {
+            inspection.inspect(pid, attempt);
+            result = Files.exists(attempt)
+                ? new Result(pid, Status.OK, output, null, System.nanoTime() - start)
+                : new Result(pid, Status.FAILED, output, "No output written", System.nanoTime() - start);
+        } catch (Exception | LinkageError e) {
+            // LinkageError: a native library of the inspection (JNA) that cannot be loaded here
+            String message = e.getMessage() != null ? e.getMessage() : e.toString();
+            result = new Result(pid, Status.FAILED, output, message, System.nanoTime() - start);
+        } finally {
+            alarm.cancel(false);
+            synchronized (settled) {
+                finished[0] = true;
+            }
+            // An interrupt meant for a timed-out inspection must not reach the next one
+            Thread.interrupted();
+        }
+        if (!settled.compareAndSet(false, true)) {
+            deleteQuietly(attempt); // Timed out: not a result
+            return;
+        }
+        if (result.status == Status.OK) {
+            try {
+                OutputFiles.publish(attempt, output);
+            } catch (IOException e) {
+                result = new Result(pid, Status.FAILED, output, "Cannot write " + output + ": " + e.getMessage(),
+                                    result.nanos);
+            }
+        }
+        deleteQuietly(attempt);
+        report(future, result);
+    }
+
+    // Tell the listener and complete future with result, unless the inspection was first
+    private boolean complete(AtomicBoolean settled, CompletableFuture<Result> future, Result result) {
+        if (!settled.compareAndSet(false, true)) {
+            return false;
+        }
+        report(future, result);
+        return true;
+    }
+
+    // The listener goes first, so that run() returns only once it has seen everything
+    private void report(CompletableFuture<Result> future, Result result) {
+        try {
+            synchronized (this) {
+                listener.accept(result);
+            }
+        } finally {
+            future.complete(result);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Left in the temp directory
+        }
+    }
+
+    /**
+     * Wall-clock time of the last run().
+     */
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * Counts by status and the spread of per-process times of results, as in the statistics
+     * block of an ExplorationResult.
+     */
+    public Map<String, Object> statistics(List<Result> results) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("processes", results.size());
+        for (Status status : Status.values()) {
+            stats.put(status.getKey(), results.stream().filter(r -> r.status == status).count());
+        }
+        stats.put("parallelism", parallelism);
+        stats.put("timeout_ms", timeoutMs);
+        stats.put("wall_ms", wallNanos / 1_000_000.0);
+        if (!results.isEmpty()) {
+            long[] nanos = results.stream().mapToLong(Result::getNanos).toArray();
+            Arrays.sort(nanos);
+            stats.put("total_ms", Arrays.stream(nanos).sum() / 1_000_000.0);
+            stats.put("min_ms", nanos[0] / 1_000_000.0);
+            stats.put("median_ms", nanos[nanos.length / 2] / 1_000_000.0);
+            stats.put("p95_ms", nanos[(int) Math.ceil(nanos.length * 0.95) - 1] / 1_000_000.0);
+            stats.put("max_ms", nanos[nanos.length - 1] / 1_000_000.0);
+        }
+        return stats;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,234 @@
+package com.inspector.core;
+
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+import com.sun.tools.attach.spi.AttachProvider;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Knows which processes are JVMs the Attach API can attach to, without listing them per lookup.
+ *
+ * VirtualMachine.list() opens the performance data of every JVM on the machine, so asking it
+ * about each window of a process list listed every JVM once per window. This service keeps the
+ * last listing as a map by PID and answers from it. Each JVM creates a file named after its PID
+ * in the hsperfdata directory, which is watched: a new file adds its PID and a deleted file drops
+ * it, without listing again. A JVM added this way has its PID as display name until the next
+ * listing, which the perfdata file is needed for. The listing is renewed once the TTL has
+ * passed, which covers JVMs whose files live elsewhere (other users, containers), display names,
+ * and file systems that cannot be watched; it is renewed right away if watch events were lost.
+ *
+ * Thread-safe. Lookups between changes cost a map lookup and a poll of the watch service.
+ */
+public class JvmDiscoveryService implements Closeable {
+
+    /** Well above the 5 seconds of the process list's refresh, which the watch keeps current. */
+    public static final long DEFAULT_TTL_MS = 60000;
+
+    private static JvmDiscoveryService defaultService;
+
+    private final Path perfDataDir;
+    private final long ttlNanos;
+    private Map<String, VirtualMachineDescriptor> jvms = Collections.emptyMap();
+    private WatchService watcher;
+    private boolean listed;
+    private long listedAt;
+    private int listings;
+
+    /**
+     * A service watching perfDataDir (see defaultPerfDataDir()) and listing again at least every
+     * ttlMs milliseconds.
+     */
+    public JvmDiscoveryService(Path perfDataDir, long ttlMs) {
+        this.perfDataDir = perfDataDir;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    /**
+     * The service AttachConnector uses, watching this user's hsperfdata directory.
+     */
+    public static synchronized JvmDiscoveryService getDefault() {
+        if (defaultService == null) {
+            defaultService = new JvmDiscoveryService(defaultPerfDataDir(), DEFAULT_TTL_MS);
+        }
+        return defaultService;
+    }
+
+    /**
+     * Where the JVMs of the current user publish their performance data.
+     */
+    public static Path defaultPerfDataDir() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "hsperfdata_" + System.getProperty("user.name"));
+    }
+
+    public synchronized boolean isJavaProcess(String pid) {
+        return current().containsKey(pid);
+    }
+
+    /**
+     * The descriptor of a JVM, or null if pid is not one.
+     */
+    public synchronized VirtualMachineDescriptor get(String pid) {
+        return current().get(pid);
+    }
+
+    /**
+     * All JVMs, as VirtualMachine.list() returned them.
+     */
+    public synchronized List<VirtualMachineDescriptor> list() {
+        return new ArrayList<>(current().values());
+    }
+
+    /**
+     * Make the next lookup list the JVMs again.
+     */
+    public synchronized void invalidate() {
+        listed = false;
+    }
+
+    /**
+     * How many times VirtualMachine.list() has been called.
+     */
+    public synchronized int getListings() {
+        return listings;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeWatcher();
+        jvms = Collections.emptyMap();
+        listed = false;
+    }
+
+    private Map<String, VirtualMachineDescriptor> current() {
+        boolean stale = !listed || System.nanoTime() - listedAt >= ttlNanos;
+        if (applyWatchEvents() || stale) {
+            relist();
+        }
+        return jvms;
+    }
+
+    // Add the PIDs of created files and drop those of deleted ones; true if events were lost
+    private boolean applyWatchEvents() {
+        if (watcher == null) {
+            return false;
+        }
+        boolean lost = false;
+        WatchKey key;
+        while ((key = watcher.poll()) != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    lost |= !added(event.context().toString());
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    removed(event.context().toString());
+                } else {
+                    lost = true;
+                }
+            }
+            if (!key.reset()) {
+                // The directory is gone; watch it again once it is back
+                closeWatcher();
+                return true;
+            }
+        }
+        return lost;
+    }
+
+    // False if pid could not be added without a listing
+    private boolean added(String pid) {
+        if (!isPid(pid) || jvms.containsKey(pid)) {
+            return true;
+        }
+        AttachProvider provider = provider();
+        if (provider == null) {
+            return false;
+        }
+        Map<String, VirtualMachineDescriptor> grown = new HashMap<>(jvms);
+        grown.put(pid, new VirtualMachineDescriptor(provider, pid));
+        jvms = grown;
+        return true;
+    }
+
+    private void removed(String pid) {
+        if (jvms.containsKey(pid)) {
+            Map<String, VirtualMachineDescriptor> remaining = new HashMap<>(jvms);
+            remaining.remove(pid);
+            jvms = remaining;
+        }
+    }
+
+    // The provider the listed JVMs came from, i.e. the one that can attach to this user's JVMs
+    private AttachProvider provider() {
+        if (!jvms.isEmpty()) {
+            return jvms.values().iterator().next().provider();
+        }
+        List<AttachProvider> providers = AttachProvider.providers();
+        return providers.isEmpty() ? null : providers.get(0);
+    }
+
+    // Other files (e.g. a JVM's temporary ones) share the directory
+    private static boolean isPid(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void relist() {
+        if (watcher == null) {
+            // Before listing, so that no JVM can start unseen in between
+            watch();
+        }
+        Map<String, VirtualMachineDescriptor> listing = new HashMap<>();
+        for (VirtualMachineDescriptor vmd : VirtualMachine.list()) {
+            listing.put(vmd.id(), vmd);
+        }
+        jvms = listing;
+        listed = true;
+        listedAt = System.nanoTime();
+        listings++;
+    }
+
+    private void watch() {
+        if (!Files.isDirectory(perfDataDir)) {
+            return;
+        }
+        try {
+            watcher = perfDataDir.getFileSystem().newWatchService();
+            perfDataDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException | UnsupportedOperationException e) {
+            // The TTL alone keeps the listing current
+            closeWatcher();
+        }
+    }
+
+    private void closeWatcher() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            watcher = null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.inspector.core;
+
+import java.util.Arrays;
+
+/**
+ * Compact record of the explored tree's shape: one parent ID and one path segment per node.
+ * The rules for building path strings live here too.
+ *
+ * Node IDs are dense integers assigned in visit order, so the index costs a constant amount of
+ * memory per node (an int and a reference to a string the element already holds). Path strings
+ * are only built when someone asks for them.
+ *
+ * A streamed walk only takes IDs, with assign(): it carries each pending node's parent path on
+ * its own stack, which is dropped once the node's subtree has been emitted, so its memory stays
+ * bounded by the frontier. The paths of assigned nodes cannot be asked for here.
+ */
+public class NodeIndex {
+
+    public static final int NO_PARENT = -1;
+
+    private int[] parentIds = new int[256];
+    private String[] segments = new String[256];
+    // IDs handed out, and how many of them (the first ones) were recorded by add()
+    private int size = 0;
+    private int recorded = 0;
+
+    /**
+     * A node's path segment: its name, or its role if it has no name.
+     */
+    public static String segment(String name, String roleName) {
+        return name != null ? name : roleName;
+    }
+
+    /**
+     * The path of a node with the given segment whose parent's path is parentPath ("" for the root).
+     */
+    public static String childPath(String parentPath, String segment) {
+        return parentPath + "/" + segment;
+    }
+
+    /**
+     * Register a node and return its ID.
+     *
+     * @param parentId the parent's ID, or NO_PARENT for the root
+     * @param segment  the node's path segment (its name, or its role if it has no name)
+     */
+    public int add(int parentId, String segment) {
+        if (recorded != size) {
+            throw new IllegalStateException("Cannot record nodes after assigned ones");
+        }
+        if (size == parentIds.length) {
+            parentIds = Arrays.copyOf(parentIds, size * 2);
+            segments = Arrays.copyOf(segments, size * 2);
+        }
+        parentIds[size] = parentId;
+        segments[size] = segment;
+        recorded++;
+        return size++;
+    }
+
+    /**
+     * Give a node of a streamed walk its ID without recording it.
+     */
+    public int assign() {
+        return size++;
+    }
+
+    public int getParentId(int id) {
+        checkRecorded(id);
+        return parentIds[id];
+    }
+
+    public String getSegment(int id) {
+        checkRecorded(id);
+        return segments[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(segments, 0, recorded, null);
+        size = 0;
+        recorded = 0;
+    }
+
+    /**
+     * The node's own path, e.g. "/frame/root pane/OK".
+     */
+    public String pathOf(int id) {
+        checkRecorded(id);
+        int length = 0;
+        for (int current = id; current != NO_PARENT; current = parentIds[current]) {
+            length++;
+        }
+        String[] chain = new String[length];
+        for (int current = id, i = length - 1; current != NO_PARENT; current = parentIds[current], i--) {
+            chain[i] = segments[current];
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String segment : chain) {
+            sb.append('/').append(segment);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The path of the node's parent, "" for the root. This is the value of ElementData.parentPath.
+     */
+    public String parentPathOf(int id) {
+        checkRecorded(id);
+        int parentId = parentIds[id];
+        return parentId == NO_PARENT ? "" : pathOf(parentId);
+    }
+
+    private void checkRecorded(int id) {
+        if (id < 0 || id >= recorded) {
+            throw new IllegalArgumentException("Node " + id + " is not recorded in the index");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.inspector.core;
+
+import javax.accessibility.AccessibleContext;
+import javax.accessibility.AccessibleRole;
+import javax.accessibility.AccessibleState;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One element of a captured snapshot, holding the accessibility API's values as returned.
+ *
+ * Capture only stores what the target hands back (role and state objects, the bounds rectangle,
+ * the value as a Number). Turning those into display strings and ElementData is left to
+ * SnapshotProcessor, off the thread that walked the UI. Instances are filled in by
+ * UITreeExplorer and read-only from outside this package.
+ */
+public final class RawElement {
+
+    AccessibleRole role;
+    String roleName;
+    String name;
+    String description;
+    AccessibleState[] states;
+    Rectangle bounds;
+    String className;
+    String text;
+    TextExtractor.Strategy textStrategy;
+    Number value;
+    String[] actions;
+    Integer indexInParent;
+    int childrenCount;
+    int nodeId = -1;
+    int elidedChildren;
+    final List<RawElement> children = new ArrayList<>();
+    // Only kept by incremental explorers, to find the cache entries of a reused subtree, and on request
+    AccessibleContext context;
+
+    RawElement() {}
+
+    /**
+     * A copy of this element's properties with no children, for re-walking below an element
+     * whose own properties are unchanged.
+     */
+    RawElement copyWithoutChildren() {
+        RawElement copy = new RawElement();
+        copy.role = role;
+        copy.roleName = roleName;
+        copy.name = name;
+        copy.description = description;
+        copy.states = states;
+        copy.bounds = bounds;
+        copy.className = className;
+        copy.text = text;
+        copy.textStrategy = textStrategy;
+        copy.value = value;
+        copy.actions = actions;
+        copy.indexInParent = indexInParent;
+        copy.childrenCount = childrenCount;
+        copy.context = context;
+        return copy;
+    }
+
+    /**
+     * Whether this element holds the same captured values as another, ignoring children and the
+     * per-exploration node ID.
+     */
+    boolean sameProperties(RawElement other) {
+        return role == other.role
+            && Objects.equals(name, other.name)
+            && Objects.equals(description, other.description)
+            && Arrays.equals(states, other.states)
+            && Objects.equals(bounds, other.bounds)
+            && Objects.equals(className, other.className)
+            && Objects.equals(text, other.text)
+            && Objects.equals(value, other.value)
+            && Arrays.equals(actions, other.actions)
+            && Objects.equals(indexInParent, other.indexInParent)
+            && childrenCount == other.childrenCount;
+    }
+
+    public AccessibleRole getRole() { return role; }
+
+    /** The role's display name, as used for path segments and statistics. */
+    public String getRoleName() { return roleName; }
+
+    public String getName() { return name; }
+
+    public String getDescription() { return description; }
+
+    /** The captured states, or null if states were not extracted. */
+    public AccessibleState[] getStates() { return states == null ? null : states.clone(); }
+
+    public Rectangle getBounds() { return bounds == null ? null : new Rectangle(bounds); }
+
+    public String getClassName() { return className; }
+
+    public String getText() { return text; }
+
+    /** How the text was read, or null if the element has no text. */
+    public TextExtractor.Strategy getTextStrategy() { return textStrategy; }
+
+    public Number getValue() { return value; }
+
+    /** Action descriptions, or null if the element exposes no AccessibleAction. */
+    public String[] getActions() { return actions == null ? null : actions.clone(); }
+
+    public Integer getIndexInParent() { return indexInParent; }
+
+    public int getChildrenCount() { return childrenCount; }
+
+    public int getNodeId() { return nodeId; }
+
+    /** The context this element was read from, or null unless the explorer kept contexts. */
+    public AccessibleContext getContext() { return context; }
+
+    public List<RawElement> getChildren() { return Collections.unmodifiableList(children); }
+
+    /** Children left unexplored because the traversal budget ran out. */
+    public int getElidedChildren() { return elidedChildren; }
+}
@@ -0,0 +1,258 @@
+package com.inspector.core;
+
+import com.inspector.model.StateTable;
+
+import javax.accessibility.AccessibleState;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compact query for elements of an accessibility tree, evaluated by ElementQuery.
+ *
+ * A selector is a path of steps, each a role followed by any number of conditions:
+ *
+ *   panel[name=Orders] push_button[state=enabled]
+ *   > root_pane > * > panel[name~="^Tab \d+$"] > text[state!=editable]
+ *
+ * Roles are display names as in ElementData, with '_' or '-' for spaces ("push_button") or
+ * quoted ("\"push button\""); '*' or no role matches any role. Conditions are
+ *
+ *   [name=Save]      the name equals the value
+ *   [name~=^Save]    the name contains a match of the regular expression
+ *   [state=enabled]  the element has the state
+ *   [state!=focused] the element does not have the state
+ *
+ * Values may be quoted with double quotes, where a backslash escapes a quote or a backslash,
+ * and must be when they contain ']'. Steps separated by whitespace match any descendant of the previous
+ * step's element, steps separated by '>' only its children. A leading '>' anchors the first
+ * step to the children of the query's root; otherwise it matches at any depth, the root included.
+ */
+public final class Selector {
+
+    /** More steps than fit the bit set ElementQuery tracks them in. */
+    static final int MAX_STEPS = 63;
+
+    final String spec;
+    final Step[] steps;
+    final boolean anchored;
+    // Bit k set when step k may match any descendant of a match of step k - 1
+    final long descendantSteps;
+
+    private Selector(String spec, Step[] steps, boolean anchored) {
+        this.spec = spec;
+        this.steps = steps;
+        this.anchored = anchored;
+        long descendant = 0;
+        for (int i = 1; i < steps.length; i++) {
+            if (!steps[i].child) {
+                descendant |= 1L << i;
+            }
+        }
+        this.descendantSteps = descendant;
+    }
+
+    // One step of the path
+    static final class Step {
+        // Lower case with spaces, null for any role
+        final String role;
+        // Separated from the previous step by '>'
+        final boolean child;
+        String nameEquals;
+        final List<Pattern> namePatterns = new ArrayList<>();
+        final List<AccessibleState> requiredStates = new ArrayList<>();
+        final List<AccessibleState> excludedStates = new ArrayList<>();
+
+        Step(String role, boolean child) {
+            this.role = role;
+            this.child = child;
+        }
+
+        boolean needsName() {
+            return nameEquals != null || !namePatterns.isEmpty();
+        }
+
+        boolean needsStates() {
+            return !requiredStates.isEmpty() || !excludedStates.isEmpty();
+        }
+    }
+
+    /**
+     * Parse a selector. Throws IllegalArgumentException, naming the position, if it is malformed.
+     */
+    public static Selector parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty selector");
+        }
+        return new Parser(spec).parse();
+    }
+
+    /**
+     * The number of steps.
+     */
+    public int size() {
+        return steps.length;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    private static final class Parser {
+        private final String spec;
+        private int pos;
+
+        Parser(String spec) {
+            this.spec = spec;
+        }
+
+        Selector parse() {
+            List<Step> steps = new ArrayList<>();
+            skipSpaces();
+            boolean anchored = peek() == '>';
+            boolean child = false;
+            while (true) {
+                skipSpaces();
+                if (peek() == '>') {
+                    pos++;
+                    child = true;
+                    skipSpaces();
+                }
+                if (atEnd()) {
+                    if (child) {
+                        throw error("Expected a step after '>'");
+                    }
+                    break;
+                }
+                steps.add(parseStep(child && !steps.isEmpty()));
+                child = false;
+                if (!atEnd() && !Character.isWhitespace(peek()) && peek() != '>') {
+                    throw error("Unexpected '" + peek() + "'");
+                }
+            }
+            if (steps.isEmpty()) {
+                throw error("Empty selector");
+            }
+            if (steps.size() > MAX_STEPS) {
+                throw new IllegalArgumentException("Selector has more than " + MAX_STEPS + " steps: " + spec);
+            }
+            return new Selector(spec.trim(), steps.toArray(new Step[0]), anchored);
+        }
+
+        private Step parseStep(boolean child) {
+            String role;
+            if (peek() == '"') {
+                role = quoted().toLowerCase(Locale.ROOT);
+            } else if (peek() == '*') {
+                pos++;
+                role = null;
+            } else {
+                int start = pos;
+                while (!atEnd() && (Character.isLetterOrDigit(peek()) || peek() == '_' || peek() == '-')) {
+                    pos++;
+                }
+                role = pos > start
+                    ? spec.substring(start, pos).replace('_', ' ').replace('-', ' ').toLowerCase(Locale.ROOT)
+                    : null;
+                if (role == null && peek() != '[') {
+                    throw error(atEnd() ? "Expected a step" : "Unexpected '" + peek() + "'");
+                }
+            }
+            Step step = new Step(role, child);
+            while (peek() == '[') {
+                pos++;
+                parseCondition(step);
+            }
+            return step;
+        }
+
+        private void parseCondition(Step step) {
+            int start = pos;
+            while (!atEnd() && Character.isLetter(peek())) {
+                pos++;
+            }
+            String field = spec.substring(start, pos).toLowerCase(Locale.ROOT);
+            String operator;
+            if (spec.startsWith("~=", pos) || spec.startsWith("!=", pos)) {
+                operator = spec.substring(pos, pos + 2);
+                pos += 2;
+            } else if (peek() == '=') {
+                operator = "=";
+                pos++;
+            } else {
+                throw error("Expected '=', '~=' or '!='");
+            }
+            String value = peek() == '"' ? quoted() : bare();
+            if (peek() != ']') {
+                throw error("Expected ']'");
+            }
+            pos++;
+
+            if (field.equals("name") && operator.equals("=")) {
+                step.nameEquals = value;
+            } else if (field.equals("name") && operator.equals("~=")) {
+                try {
+                    step.namePatterns.add(Pattern.compile(value));
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid pattern in selector: " + value + " (" + e.getDescription() + ")");
+                }
+            } else if (field.equals("state") && !operator.equals("~=")) {
+                AccessibleState state = StateTable.byName(value);
+                if (state == null) {
+                    throw new IllegalArgumentException("Unknown state in selector: " + value);
+                }
+                (operator.equals("=") ? step.requiredStates : step.excludedStates).add(state);
+            } else {
+                throw new IllegalArgumentException("Unsupported condition in selector: [" + field + operator + "...]"
+                    + " (expected name=, name~=, state= or state!=)");
+            }
+        }
+
+        private String quoted() {
+            StringBuilder value = new StringBuilder();
+            pos++;
+            while (!atEnd() && peek() != '"') {
+                // Other backslashes are kept, for patterns such as "\\d+"
+                if (peek() == '\\' && pos + 1 < spec.length()
+                        && (spec.charAt(pos + 1) == '"' || spec.charAt(pos + 1) == '\\')) {
+                    pos++;
+                }
+                value.append(spec.charAt(pos++));
+            }
+            if (atEnd()) {
+                throw error("Unterminated quote");
+            }
+            pos++;
+            return value.toString();
+        }
+
+        private String bare() {
+            int start = pos;
+            while (!atEnd() && peek() != ']') {
+                pos++;
+            }
+            return spec.substring(start, pos).trim();
+        }
+
+        private void skipSpaces() {
+            while (!atEnd() && Character.isWhitespace(peek())) {
+                pos++;
+            }
+        }
+
+        private boolean atEnd() {
+            return pos >= spec.length();
+        }
+
+        private char peek() {
+            return atEnd() ? 0 : spec.charAt(pos);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " of selector: " + spec);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.inspector.core;
+
+import com.inspector.model.ElementData;
+import com.inspector.model.StateTable;
+
+import javax.accessibility.AccessibleBundle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Turns a captured RawElement tree into ElementData, together with the role and text strategy
+ * counts that feed the statistics block.
+ *
+ * Subtrees are independent, so they are converted as fork/join tasks. A task forks its children
+ * only while the pool is short of queued work, and otherwise converts them inline, so small trees
+ * cost about the same as a sequential walk.
+ */
+public class SnapshotProcessor {
+
+    // AccessibleBundle.toString() looks the name up in a resource bundle on every call
+    private static final Map<AccessibleBundle, String> displayNames = new ConcurrentHashMap<>();
+    private static final int MAX_INTERNED_ACTIONS = 4096;
+    private static final Map<List<String>, List<String>> internedActions = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool pool;
+    private final NodeIndex paths;
+
+    /**
+     * A processor filling in parentPath from paths, the index of the capture, or leaving it unset
+     * if paths is null.
+     */
+    public SnapshotProcessor(ForkJoinPool pool, NodeIndex paths) {
+        this.pool = pool;
+        this.paths = paths;
+    }
+
+    public static final class Result {
+        public final ElementData root;
+        public final Map<String, Integer> roleCounts;
+        public final Map<TextExtractor.Strategy, Integer> textStrategyCounts;
+
+        Result(ElementData root, Map<String, Integer> roleCounts,
+               Map<TextExtractor.Strategy, Integer> textStrategyCounts) {
+            this.root = root;
+            this.roleCounts = roleCounts;
+            this.textStrategyCounts = textStrategyCounts;
+        }
+    }
+
+    public Result process(RawElement root) {
+        if (root == null) {
+            return new Result(null, new HashMap<>(), new EnumMap<>(TextExtractor.Strategy.class));
+        }
+        Subtree subtree = pool.invoke(new ConvertTask(root, ""));
+        return new Result(subtree.element, subtree.roleCounts, subtree.textStrategyCounts);
+    }
+
+    /**
+     * The localized name of a role or state, cached per constant.
+     */
+    public static String displayName(AccessibleBundle bundle) {
+        return displayNames.computeIfAbsent(bundle, AccessibleBundle::toString);
+    }
+
+    /**
+     * Convert a single element, ignoring its children.
+     */
+    public static ElementData toElementData(RawElement raw) {
+        ElementData element = new ElementData();
+        element.setName(raw.name);
+        element.setRole(raw.roleName);
+        element.setDescription(raw.description);
+        element.setIndexInParent(raw.indexInParent);
+        element.setChildrenCount(raw.childrenCount);
+        if (raw.states != null) {
+            element.setStates(StateTable.names(raw.states), StateTable.bits(raw.states));
+        }
+        if (raw.bounds != null) {
+            element.setBounds(new ElementData.BoundsData(raw.bounds));
+        }
+        element.setClassName(raw.className);
+        element.setText(raw.text);
+        if (raw.value != null) {
+            element.setValue(raw.value.toString());
+        }
+        if (raw.actions != null) {
+            element.setActions(internActions(raw.actions));
+        }
+        if (raw.elidedChildren > 0) {
+            element.setElidedChildren(raw.elidedChildren);
+        }
+        element.setNodeId(raw.nodeId);
+        return element;
+    }
+
+    // Elements of the same kind expose the same actions, so their lists are shared too
+    private static List<String> internActions(String[] actions) {
+        if (actions.length == 0) {
+            return Collections.emptyList();
+        }
+        List<String> key = Arrays.asList(actions);
+        List<String> list = internedActions.get(key);
+        if (list == null) {
+            list = Collections.unmodifiableList(key);
+            if (internedActions.size() < MAX_INTERNED_ACTIONS) {
+                List<String> existing = internedActions.putIfAbsent(key, list);
+                if (existing != null) {
+                    list = existing;
+                }
+            }
+        }
+        return list;
+    }
+
+    // A converted subtree and the statistics gathered from it
+    private static final class Subtree {
+        ElementData element;
+        final Map<String, Integer> roleCounts = new HashMap<>();
+        final Map<TextExtractor.Strategy, Integer> textStrategyCounts = new EnumMap<>(TextExtractor.Strategy.class);
+    }
+
+    // A subtree handed to another worker, and where its result goes
+    private static final class Forked {
+        final ConvertTask task;
+        final ElementData parent;
+        final int slot;
+
+        Forked(ConvertTask task, ElementData parent, int slot) {
+            this.task = task;
+            this.parent = parent;
+            this.slot = slot;
+        }
+    }
+
+    // A node waiting to be converted by the current task
+    private static final class Pending {
+        final RawElement raw;
+        final ElementData parent;
+        final int slot;
+        final String parentPath;
+
+        Pending(RawElement raw, ElementData parent, int slot, String parentPath) {
+            this.raw = raw;
+            this.parent = parent;
+            this.slot = slot;
+            this.parentPath = parentPath;
+        }
+    }
+
+    private final class ConvertTask extends RecursiveTask<Subtree> {
+        private static final long serialVersionUID = 1L;
+
+        private final RawElement raw;
+        private final String parentPath;
+
+        ConvertTask(RawElement raw, String parentPath) {
+            this.raw = raw;
+            this.parentPath = parentPath;
+        }
+
+        @Override
+        protected Subtree compute() {
+            Subtree subtree = new Subtree();
+            List<Forked> forked = new ArrayList<>();
+            ArrayDeque<Pending> pending = new ArrayDeque<>();
+            pending.push(new Pending(raw, null, -1, parentPath));
+
+            // Iterative, so a deep chain cannot overflow the worker's stack
+            while (!pending.isEmpty()) {
+                Pending node = pending.pop();
+                ElementData element = toElementData(node.raw);
+                if (node.parent == null) {
+                    subtree.element = element;
+                } else {
+                    node.parent.getChildren().set(node.slot, element);
+                }
+                if (node.raw.roleName != null) {
+                    subtree.roleCounts.merge(node.raw.roleName, 1, Integer::sum);
+                }
+                if (node.raw.textStrategy != null) {
+                    subtree.textStrategyCounts.merge(node.raw.textStrategy, 1, Integer::sum);
+                }
+
+                String path = null;
+                if (paths != null) {
+                    element.setParentPath(node.parentPath);
+                    path = NodeIndex.childPath(node.parentPath, paths.getSegment(node.raw.nodeId));
+                }
+
+                List<RawElement> children = node.raw.children;
+                int count = children.size();
+                if (count == 0) {
+                    continue;
+                }
+                // Reserve a slot per child so that results can arrive in any order
+                element.setChildren(new ArrayList<>(Collections.nCopies(count, null)));
+                // Keep the first child here and hand the rest to idle workers while they are short of work
+                boolean fork = count > 1 && getSurplusQueuedTaskCount() < 2;
+                for (int i = count - 1; i >= 0; i--) {
+                    if (fork && i > 0) {
+                        ConvertTask task = new ConvertTask(children.get(i), path);
+                        task.fork();
+                        forked.add(new Forked(task, element, i));
+                    } else {
+                        pending.push(new Pending(children.get(i), element, i, path));
+                    }
+                }
+            }
+
+            for (Forked child : forked) {
+                Subtree result = child.task.join();
+                child.parent.getChildren().set(child.slot, result.element);
+                result.roleCounts.forEach((role, count) -> subtree.roleCounts.merge(role, count, Integer::sum));
+                result.textStrategyCounts.forEach((strategy, count) -> subtree.textStrategyCounts.merge(strategy, count, Integer::sum));
+            }
+            return subtree;
+        }
+    }
+}
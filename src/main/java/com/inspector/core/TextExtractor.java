@@ -0,0 +1,156 @@
+package com.inspector.core;
+
+import javax.accessibility.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Extracts the text content of an accessible element using the cheapest API it supports.
+ *
+ * Strategies are tried in order of cost: direct document access for Swing text components,
+ * bulk range reads through AccessibleEditableText / AccessibleExtendedText, line and
+ * attribute-run segments, and finally the one-call-per-character AccessibleText loop.
+ */
+public class TextExtractor {
+
+    /** Texts at or above this length are skipped to prevent huge strings. */
+    public static final int MAX_CHARS = 10000;
+
+    public enum Strategy {
+        DOCUMENT("document"),
+        EDITABLE_RANGE("editable_range"),
+        EXTENDED_RANGE("extended_range"),
+        LINE_SEGMENTS("line_segments"),
+        ATTRIBUTE_RUNS("attribute_runs"),
+        CHARACTER("character");
+
+        private final String key;
+
+        Strategy(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    public static class Result {
+        public final String text;
+        public final Strategy strategy;
+
+        Result(String text, Strategy strategy) {
+            this.text = text;
+            this.strategy = strategy;
+        }
+    }
+
+    /**
+     * Extract the text of an element.
+     *
+     * @param owner the Accessible the context was obtained from, or null if unknown
+     * @param ac    the element's context
+     * @return the text and the strategy that produced it, or null if the element has no text
+     */
+    public static Result extract(Accessible owner, AccessibleContext ac) {
+        AccessibleText text = ac.getAccessibleText();
+        if (text == null) {
+            return null;
+        }
+
+        int charCount = text.getCharCount();
+        if (charCount <= 0 || charCount >= MAX_CHARS) {
+            return null;
+        }
+
+        String result = fromDocument(owner, charCount);
+        if (result != null) {
+            return new Result(result, Strategy.DOCUMENT);
+        }
+
+        if (text instanceof AccessibleEditableText) {
+            result = nonEmpty(((AccessibleEditableText) text).getTextRange(0, charCount));
+            if (result != null) {
+                return new Result(result, Strategy.EDITABLE_RANGE);
+            }
+        }
+
+        if (text instanceof AccessibleExtendedText) {
+            AccessibleExtendedText extended = (AccessibleExtendedText) text;
+            result = nonEmpty(extended.getTextRange(0, charCount));
+            if (result != null) {
+                return new Result(result, Strategy.EXTENDED_RANGE);
+            }
+            result = fromSequences(extended, AccessibleExtendedText.LINE, charCount);
+            if (result != null) {
+                return new Result(result, Strategy.LINE_SEGMENTS);
+            }
+            result = fromSequences(extended, AccessibleExtendedText.ATTRIBUTE_RUN, charCount);
+            if (result != null) {
+                return new Result(result, Strategy.ATTRIBUTE_RUNS);
+            }
+        }
+
+        result = fromCharacters(text, charCount);
+        if (result != null) {
+            return new Result(result, Strategy.CHARACTER);
+        }
+        return null;
+    }
+
+    private static String fromDocument(Accessible owner, int charCount) {
+        if (!(owner instanceof JTextComponent)) {
+            return null;
+        }
+        Document doc = ((JTextComponent) owner).getDocument();
+        if (doc == null) {
+            return null;
+        }
+
+        // render() holds the document's read lock so we never see a half-applied edit
+        String[] holder = new String[1];
+        doc.render(() -> {
+            try {
+                holder[0] = doc.getText(0, Math.min(charCount, doc.getLength()));
+            } catch (BadLocationException e) {
+                // Document shrank between getCharCount() and now - fall back
+            }
+        });
+        return nonEmpty(holder[0]);
+    }
+
+    private static String fromSequences(AccessibleExtendedText text, int part, int charCount) {
+        StringBuilder sb = new StringBuilder(charCount);
+        int index = 0;
+        while (index < charCount) {
+            AccessibleTextSequence seq = text.getTextSequenceAt(part, index);
+            if (seq == null || seq.text == null || seq.startIndex > index) {
+                return null;
+            }
+            int offset = index - seq.startIndex;
+            if (offset >= seq.text.length()) {
+                return null;
+            }
+            sb.append(seq.text, offset, seq.text.length());
+            index = seq.startIndex + seq.text.length();
+        }
+        // Segment boundaries are implementation-defined; only trust an exact reassembly
+        return sb.length() == charCount ? sb.toString() : null;
+    }
+
+    private static String fromCharacters(AccessibleText text, int charCount) {
+        StringBuilder sb = new StringBuilder(charCount);
+        for (int i = 0; i < charCount; i++) {
+            String charAtIndex = text.getAtIndex(AccessibleText.CHARACTER, i);
+            if (charAtIndex != null) {
+                sb.append(charAtIndex);
+            }
+        }
+        return nonEmpty(sb.toString());
+    }
+
+    private static String nonEmpty(String str) {
+        return str == null || str.isEmpty() ? null : str;
+    }
+}
@@ -0,0 +1,158 @@
+package com.inspector.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on a whole exploration, as opposed to EdtSliceBudget's limits on one EDT slice.
+ *
+ * When a limit is reached the explorer stops, keeps what it has captured, and records on each
+ * element how many of its children were left unexplored. Each limit can be left unbounded.
+ */
+public class TraversalBudget {
+
+    public static final long NO_LIMIT = Long.MAX_VALUE;
+
+    /** No deadline, node cap or text cap: explore everything up to maxDepth. */
+    public static final TraversalBudget UNLIMITED = new TraversalBudget(NO_LIMIT, NO_LIMIT, NO_LIMIT);
+
+    /**
+     * The limit that stopped an exploration.
+     */
+    public enum Limit {
+        DEADLINE("deadline"),
+        NODES("nodes"),
+        TEXT_BYTES("text_bytes");
+
+        private final String key;
+
+        Limit(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private final long maxNanos;
+    private final long maxNodes;
+    private final long maxTextBytes;
+
+    /**
+     * @param maxNanos     wall-clock time from the start of the exploration, or NO_LIMIT
+     * @param maxNodes     elements in the result, or NO_LIMIT
+     * @param maxTextBytes UTF-8 bytes of extracted text, summed over all elements, or NO_LIMIT
+     */
+    public TraversalBudget(long maxNanos, long maxNodes, long maxTextBytes) {
+        if (maxNanos <= 0 || maxNodes <= 0 || maxTextBytes <= 0) {
+            throw new IllegalArgumentException("Traversal budget must be positive: " + maxNanos + "ns, "
+                + maxNodes + " nodes, " + maxTextBytes + " text bytes");
+        }
+        this.maxNanos = maxNanos;
+        this.maxNodes = maxNodes;
+        this.maxTextBytes = maxTextBytes;
+    }
+
+    public TraversalBudget withDeadlineMillis(long millis) {
+        return new TraversalBudget(TimeUnit.MILLISECONDS.toNanos(millis), maxNodes, maxTextBytes);
+    }
+
+    public TraversalBudget withMaxNodes(long nodes) {
+        return new TraversalBudget(maxNanos, nodes, maxTextBytes);
+    }
+
+    public TraversalBudget withMaxTextBytes(long bytes) {
+        return new TraversalBudget(maxNanos, maxNodes, bytes);
+    }
+
+    /**
+     * Parse "<deadlineMs>,<nodes>,<textBytes>", with "-" for no limit, e.g. "500,-,65536".
+     * Trailing limits may be left out and are then unbounded.
+     */
+    public static TraversalBudget parse(String spec) {
+        String[] parts = spec.trim().split(",");
+        if (parts.length > 3) {
+            throw new IllegalArgumentException("Invalid traversal budget: " + spec
+                + " (expected <deadlineMs>[,<nodes>[,<textBytes>]])");
+        }
+        try {
+            long millis = parseLimit(parts[0]);
+            return new TraversalBudget(
+                millis == NO_LIMIT ? NO_LIMIT : TimeUnit.MILLISECONDS.toNanos(millis),
+                parts.length > 1 ? parseLimit(parts[1]) : NO_LIMIT,
+                parts.length > 2 ? parseLimit(parts[2]) : NO_LIMIT);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid traversal budget: " + spec
+                + " (expected <deadlineMs>[,<nodes>[,<textBytes>]])");
+        }
+    }
+
+    private static long parseLimit(String part) {
+        String trimmed = part.trim();
+        return trimmed.equals("-") ? NO_LIMIT : Long.parseLong(trimmed);
+    }
+
+    /**
+     * The inverse of parse().
+     */
+    public String toSpec() {
+        return (maxNanos == NO_LIMIT ? "-" : String.valueOf(TimeUnit.NANOSECONDS.toMillis(maxNanos))) + ","
+            + (maxNodes == NO_LIMIT ? "-" : String.valueOf(maxNodes)) + ","
+            + (maxTextBytes == NO_LIMIT ? "-" : String.valueOf(maxTextBytes));
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    public long getMaxTextBytes() {
+        return maxTextBytes;
+    }
+
+    public boolean isUnlimited() {
+        return maxNanos == NO_LIMIT && maxNodes == NO_LIMIT && maxTextBytes == NO_LIMIT;
+    }
+
+    /**
+     * The encoded length of a string in UTF-8, without encoding it.
+     */
+    static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        if (isUnlimited()) {
+            return "unlimited";
+        }
+        StringBuilder sb = new StringBuilder();
+        if (maxNanos != NO_LIMIT) {
+            sb.append("deadline ").append(maxNanos / 1_000_000.0).append("ms");
+        }
+        if (maxNodes != NO_LIMIT) {
+            sb.append(sb.length() > 0 ? ", " : "").append(maxNodes).append(" nodes");
+        }
+        if (maxTextBytes != NO_LIMIT) {
+            sb.append(sb.length() > 0 ? ", " : "").append(maxTextBytes).append(" text bytes");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package com.inspector.core;
+
+/**
+ * Order in which UITreeExplorer visits the accessibility tree.
+ * Both orders produce the same ElementData tree for acyclic hierarchies.
+ */
+public enum TraversalOrder {
+    /** Pre-order: each element's subtree is finished before its next sibling is visited. */
+    DEPTH_FIRST,
+    /** Level order: all elements at depth n are visited before any at depth n + 1. */
+    BREADTH_FIRST;
+
+    public static TraversalOrder fromString(String value) {
+        switch (value.toLowerCase()) {
+            case "dfs":
+            case "depth-first":
+                return DEPTH_FIRST;
+            case "bfs":
+            case "breadth-first":
+                return BREADTH_FIRST;
+            default:
+                throw new IllegalArgumentException("Unknown traversal order: " + value + " (expected dfs or bfs)");
+        }
+    }
+}
@@ -6,55 +6,526 @@ import javax.accessibility.*;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Walks an accessibility tree and builds the matching ElementData tree.
+ *
+ * Exploration has two phases. Capture walks the live tree and records the API's raw values as
+ * RawElements; it is the only phase that touches the target's components. Processing turns the
+ * capture into ElementData and statistics on a ForkJoinPool (see SnapshotProcessor).
+ *
+ * Traversal is iterative over an explicit work deque, so hierarchy depth is bounded only by
+ * maxDepth and heap, never by the thread's stack. The same deque lets snapshotOnEdt() suspend a
+ * walk between Event Dispatch Thread slices and resume it where it left off, and lets a
+ * TraversalBudget stop it early: the elements still queued are counted as elided children of
+ * their parents, and the capture so far is returned.
+ */
 public class UITreeExplorer {
     private final int maxDepth;
     private final boolean includeInvisible;
+    private final TraversalOrder order;
+    private final ExtractionProfile profile;
     private final Set<AccessibleContext> visitedContexts;
     private final Map<String, Integer> elementCounts;
+    private final Map<TextExtractor.Strategy, Integer> textStrategyCounts;
+    private final NodeIndex nodeIndex;
+    private boolean materializePaths = false;
+    private boolean keepContexts = false;
+    private ForkJoinPool processingPool = ForkJoinPool.commonPool();
+    private ExplorationCache cache;
+    private TraversalBudget budget = TraversalBudget.UNLIMITED;
+    private TraversalBudget.Limit truncatedBy;
+    private int reusedElements;
+    private int edtSlices;
+    private long maxEdtStallNanos;
+
+    /** Depth an inspection explores to when none is given. */
+    public static final int DEFAULT_MAX_DEPTH = 20;
 
     public UITreeExplorer(int maxDepth, boolean includeInvisible) {
+        this(maxDepth, includeInvisible, TraversalOrder.DEPTH_FIRST);
+    }
+
+    public UITreeExplorer(int maxDepth, boolean includeInvisible, TraversalOrder order) {
+        this(maxDepth, includeInvisible, order, ExtractionProfile.ALL);
+    }
+
+    public UITreeExplorer(int maxDepth, boolean includeInvisible, TraversalOrder order, ExtractionProfile profile) {
         this.maxDepth = maxDepth;
         this.includeInvisible = includeInvisible;
+        this.order = order;
+        this.profile = profile;
         this.visitedContexts = Collections.newSetFromMap(new IdentityHashMap<>());
         this.elementCounts = new HashMap<>();
+        this.textStrategyCounts = new EnumMap<>(TextExtractor.Strategy.class);
+        this.nodeIndex = new NodeIndex();
+    }
+
+    /**
+     * Whether each element's parentPath string is filled in during exploration. Off by default:
+     * paths are recorded as node IDs and can be looked up with getParentPath() instead.
+     */
+    public void setMaterializePaths(boolean materializePaths) {
+        this.materializePaths = materializePaths;
+    }
+
+    /**
+     * Whether captured RawElements keep the AccessibleContext they were read from (see
+     * RawElement.getContext()), e.g. to hand out references to them. Off by default, so that a
+     * capture does not keep the UI's objects reachable; incremental explorers always keep them.
+     */
+    public void setKeepContexts(boolean keepContexts) {
+        this.keepContexts = keepContexts;
+    }
+
+    /**
+     * Turn incremental exploration on or off. When on, tree explorations (not streaming ones)
+     * listen for property changes on every element they visit and later explorations re-capture
+     * only elements that reported a change, reusing the previous capture for the rest. Turning it
+     * off, or calling dispose(), removes the listeners.
+     */
+    public void setIncremental(boolean incremental) {
+        if (incremental && cache == null) {
+            cache = new ExplorationCache();
+        } else if (!incremental && cache != null) {
+            cache.clear();
+            cache = null;
+        }
+    }
+
+    public ExtractionProfile getProfile() {
+        return profile;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean isIncremental() {
+        return cache != null;
     }
 
+    /**
+     * Whether an incremental explorer has seen change events since its last exploration began,
+     * i.e. whether exploring again could give a different tree. Always false when not incremental.
+     * Bounds changes fire no events, so they are not noticed.
+     */
+    public boolean hasPendingChanges() {
+        return cache != null && cache.hasPendingChanges();
+    }
+
+    /**
+     * Release the listeners and captures held by incremental exploration.
+     */
+    public void dispose() {
+        setIncremental(false);
+    }
+
+    /**
+     * Limits on the time, element count and text volume of each exploration. Unlimited by default.
+     */
+    public void setBudget(TraversalBudget budget) {
+        this.budget = budget;
+    }
+
+    public TraversalBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Pool used to process captured trees. Defaults to the common pool.
+     */
+    public void setProcessingPool(ForkJoinPool processingPool) {
+        this.processingPool = processingPool;
+    }
+
+    // A child scheduled for exploration, remembering where its element must be attached.
+    // With a visitor, a node carrying a completed element marks the point to emit leaveElement.
+    private static final class PendingNode {
+        final Accessible owner;
+        final AccessibleContext context;
+        final int depth;
+        final int parentId;
+        final int indexInParent;
+        final RawElement parent;
+        final ElementData completed;
+        // Only streamed with materialized paths: the parent's path, and then the node's own
+        final String parentPath;
+        String path;
+        boolean expand;
+        int id;
+        ExplorationCache.Entry entry;
+
+        PendingNode(Accessible owner, AccessibleContext context, int depth, int parentId, int indexInParent,
+                    RawElement parent, String parentPath) {
+            this.owner = owner;
+            this.context = context;
+            this.depth = depth;
+            this.parentId = parentId;
+            this.indexInParent = indexInParent;
+            this.parent = parent;
+            this.completed = null;
+            this.parentPath = parentPath;
+        }
+
+        PendingNode(ElementData completed, int depth) {
+            this.owner = null;
+            this.context = null;
+            this.depth = depth;
+            this.parentId = NodeIndex.NO_PARENT;
+            this.indexInParent = -1;
+            this.parent = null;
+            this.completed = completed;
+            this.parentPath = null;
+        }
+    }
+
+    /**
+     * Explore the tree rooted at rootContext and return it as a fully built ElementData tree.
+     */
     public ElementData explore(AccessibleContext rootContext) {
-        visitedContexts.clear();
+        return process(capture(rootContext));
+    }
+
+    /**
+     * Capture the tree rooted at rootContext without processing it. The result can be handed to
+     * process() later, from any thread.
+     */
+    public RawElement capture(AccessibleContext rootContext) {
+        Traversal traversal = new Traversal(rootContext, null, order);
+        traversal.run(Integer.MAX_VALUE, Long.MAX_VALUE);
+        return traversal.root;
+    }
+
+    /**
+     * Convert a capture from this explorer into an ElementData tree, splitting independent
+     * subtrees across the processing pool. Updates the element and text strategy counts.
+     */
+    public ElementData process(RawElement root) {
+        SnapshotProcessor.Result result = new SnapshotProcessor(processingPool, materializePaths ? nodeIndex : null).process(root);
         elementCounts.clear();
-        return exploreElement(rootContext, 0, "");
+        elementCounts.putAll(result.roleCounts);
+        textStrategyCounts.clear();
+        textStrategyCounts.putAll(result.textStrategyCounts);
+        return result.root;
+    }
+
+    /**
+     * Explore the tree rooted at rootContext, reporting each element to the visitor instead of
+     * building a tree. Elements are released as soon as they have been left, so memory use is
+     * bounded by the depth and fan-out of the pending frontier rather than by the tree size.
+     * Streaming is always depth-first so that enter/leave events nest.
+     */
+    public void explore(AccessibleContext rootContext, ElementVisitor visitor) {
+        Traversal traversal = new Traversal(rootContext, visitor, TraversalOrder.DEPTH_FIRST);
+        traversal.run(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Capture the tree rooted at rootContext on the Event Dispatch Thread, where Swing expects
+     * its components to be read, without freezing the application.
+     *
+     * The walk runs in slices posted with SwingUtilities.invokeLater (see EdtSlicer). Each slice
+     * stops once the budget's time or element limit is reached and reposts the remainder, so
+     * queued paint and input events run in between. The calling thread blocks until the tree is complete.
+     * Each slice sees a consistent UI, but the application may change between slices.
+     * If the tree is not complete within the budget's timeout, the remaining slices are cancelled
+     * and an EdtTimeoutException is thrown.
+     *
+     * Called on the EDT itself, the walk cannot yield and runs as a single slice.
+     * Processing runs afterwards on the processing pool, off the EDT.
+     */
+    public ElementData snapshotOnEdt(AccessibleContext rootContext, EdtSliceBudget budget) throws InterruptedException {
+        return process(captureOnEdt(rootContext, budget));
+    }
+
+    /**
+     * The capture phase of snapshotOnEdt().
+     */
+    public RawElement captureOnEdt(AccessibleContext rootContext, EdtSliceBudget budget) throws InterruptedException {
+        Traversal traversal = new Traversal(rootContext, null, order);
+        EdtSlicer.run(EdtSlicer.SWING, budget, (maxNodes, deadline) -> {
+            long start = System.nanoTime();
+            boolean finished = traversal.run(maxNodes, deadline);
+            recordSlice(System.nanoTime() - start);
+            return finished;
+        }, "EDT snapshot");
+        return traversal.root;
+    }
+
+    private void recordSlice(long nanos) {
+        edtSlices++;
+        maxEdtStallNanos = Math.max(maxEdtStallNanos, nanos);
     }
 
-    private ElementData exploreElement(AccessibleContext ac, int depth, String parentPath) {
+    // The state of one walk: the pending frontier and the root captured so far. Creating one
+    // resets the explorer's counters and index.
+    private final class Traversal {
+        final ElementVisitor visitor;
+        final TraversalOrder order;
+        final Deque<PendingNode> pending = new ArrayDeque<>();
+        final ExplorationCache cache;
+        final long startNanos = System.nanoTime();
+        long textBytes;
+        RawElement root;
+
+        Traversal(AccessibleContext rootContext, ElementVisitor visitor, TraversalOrder order) {
+            this.visitor = visitor;
+            this.order = order;
+            this.cache = visitor == null ? UITreeExplorer.this.cache : null;
+            if (cache != null) {
+                cache.begin();
+            }
+            reusedElements = 0;
+            truncatedBy = null;
+            visitedContexts.clear();
+            elementCounts.clear();
+            textStrategyCounts.clear();
+            nodeIndex.clear();
+            edtSlices = 0;
+            maxEdtStallNanos = 0;
+            pending.add(new PendingNode(null, rootContext, 0, NodeIndex.NO_PARENT, -1, null, ""));
+        }
+
+        /**
+         * Explore until the frontier is empty, maxNodes elements have been extracted, or
+         * System.nanoTime() passes deadline. Returns true once the walk is complete, or has been
+         * cut short by the explorer's TraversalBudget.
+         */
+        boolean run(int maxNodes, long deadline) {
+            int explored = 0;
+            while (!pending.isEmpty()) {
+                if (explored >= maxNodes || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)) {
+                    return false;
+                }
+                TraversalBudget.Limit limit = exceededLimit();
+                if (limit != null) {
+                    truncate(limit);
+                    return true;
+                }
+
+                PendingNode node = order == TraversalOrder.DEPTH_FIRST ? pending.pollLast() : pending.pollFirst();
+                if (node.completed != null) {
+                    visitor.leaveElement(node.completed, node.depth);
+                    continue;
+                }
+
+                ExplorationCache.Entry cached = cache != null && !visitedContexts.contains(node.context)
+                    ? cache.reusable(node.context, node.depth) : null;
+                RawElement raw;
+                if (cached != null) {
+                    cached.parent = node.parent != null ? node.parent.context : null;
+                }
+                if (cached != null && !cached.dirtyBelow && cached.indexInParent == node.indexInParent) {
+                    // Nothing changed in this subtree: take the previous capture as it is
+                    attach(node, cached.raw);
+                    reuseSubtree(cached.raw, node.parentId);
+                    continue;
+                } else if (cached != null) {
+                    // Unchanged element with changes below it (or a new position): keep its own
+                    // properties and walk its remembered children
+                    raw = cached.raw.copyWithoutChildren();
+                    if (raw.indexInParent != null && cached.indexInParent != node.indexInParent) {
+                        raw.indexInParent = indexInParent(node.context, node.indexInParent);
+                    }
+                    visitedContexts.add(node.context);
+                    reusedElements++;
+                    countText(raw);
+                    cached.raw = raw;
+                    cached.indexInParent = node.indexInParent;
+                    cached.dirtyBelow = false;
+                } else {
+                    raw = exploreElement(node);
+                    if (raw == null) {
+                        continue;
+                    }
+                    countText(raw);
+                    if (cache != null || keepContexts) {
+                        raw.context = node.context;
+                    }
+                    if (cache != null) {
+                        node.entry = cache.record(node.context, node.parent != null ? node.parent.context : null,
+                                                  raw, node.depth, node.indexInParent);
+                    }
+                }
+                explored++;
+
+                String segment = NodeIndex.segment(raw.name, raw.roleName);
+                if (visitor != null) {
+                    // Streamed: nothing is kept of the node once its subtree has been emitted
+                    node.id = nodeIndex.assign();
+                } else {
+                    // Record the path as a (parent ID, segment) pair; the string is only built on request
+                    node.id = nodeIndex.add(node.parentId, segment);
+                }
+                raw.nodeId = node.id;
+
+                if (visitor != null) {
+                    // Streaming keeps nothing to process later, so convert each element right away
+                    ElementData element = SnapshotProcessor.toElementData(raw);
+                    if (raw.roleName != null) {
+                        elementCounts.merge(raw.roleName, 1, Integer::sum);
+                    }
+                    if (raw.textStrategy != null) {
+                        textStrategyCounts.merge(raw.textStrategy, 1, Integer::sum);
+                    }
+                    if (materializePaths) {
+                        element.setParentPath(node.parentPath);
+                        node.path = NodeIndex.childPath(node.parentPath, segment);
+                    }
+                    visitor.enterElement(element, node.depth);
+                    pending.addLast(new PendingNode(element, node.depth));
+                } else {
+                    attach(node, raw);
+                }
+
+                if (cached != null) {
+                    scheduleCachedChildren(node, cached, raw);
+                } else if (node.expand) {
+                    scheduleChildren(node, visitor == null ? raw : null, order, pending);
+                }
+            }
+            if (cache != null) {
+                cache.retain(visitedContexts);
+            }
+            return true;
+        }
+
+        // The budget limit reached so far, if any. The root is always captured.
+        private TraversalBudget.Limit exceededLimit() {
+            if (nodeIndex.size() == 0) {
+                return null;
+            }
+            if (nodeIndex.size() >= budget.getMaxNodes()) {
+                return TraversalBudget.Limit.NODES;
+            }
+            if (textBytes >= budget.getMaxTextBytes()) {
+                return TraversalBudget.Limit.TEXT_BYTES;
+            }
+            if (budget.getMaxNanos() != TraversalBudget.NO_LIMIT && System.nanoTime() - startNanos >= budget.getMaxNanos()) {
+                return TraversalBudget.Limit.DEADLINE;
+            }
+            return null;
+        }
+
+        private void countText(RawElement raw) {
+            if (raw.text != null && budget.getMaxTextBytes() != TraversalBudget.NO_LIMIT) {
+                textBytes += TraversalBudget.utf8Length(raw.text);
+            }
+        }
+
+        // Stop the walk, counting every queued element as an elided child of its parent
+        private void truncate(TraversalBudget.Limit limit) {
+            truncatedBy = limit;
+            // Streamed parents have no RawElement, so their counts wait for the leave marker
+            Map<Integer, Integer> elidedByParent = new HashMap<>();
+            while (!pending.isEmpty()) {
+                PendingNode node = pending.pollLast();
+                if (node.completed != null) {
+                    Integer elided = elidedByParent.remove(node.completed.getNodeId());
+                    if (elided != null) {
+                        node.completed.setElidedChildren(elided);
+                    }
+                    visitor.leaveElement(node.completed, node.depth);
+                } else if (node.parent != null) {
+                    node.parent.elidedChildren++;
+                } else {
+                    elidedByParent.merge(node.parentId, 1, Integer::sum);
+                }
+            }
+            if (cache != null) {
+                // Cached child lists would no longer match the captures; start afresh next time
+                cache.clear();
+            }
+        }
+
+        private void attach(PendingNode node, RawElement raw) {
+            if (node.parent == null) {
+                root = raw;
+            } else {
+                node.parent.children.add(raw);
+            }
+        }
+
+        // Register a reused subtree's elements as visited and give them IDs in this exploration
+        private void reuseSubtree(RawElement subtreeRoot, int parentId) {
+            Deque<RawElement> elements = new ArrayDeque<>();
+            Deque<Integer> parentIds = new ArrayDeque<>();
+            elements.push(subtreeRoot);
+            parentIds.push(parentId);
+            while (!elements.isEmpty()) {
+                RawElement raw = elements.pop();
+                int id = nodeIndex.add(parentIds.pop(), NodeIndex.segment(raw.name, raw.roleName));
+                raw.nodeId = id;
+                visitedContexts.add(raw.context);
+                reusedElements++;
+                countText(raw);
+                for (int i = raw.children.size() - 1; i >= 0; i--) {
+                    elements.push(raw.children.get(i));
+                    parentIds.push(id);
+                }
+            }
+        }
+
+        private void scheduleCachedChildren(PendingNode node, ExplorationCache.Entry cached, RawElement parent) {
+            int count = cached.childContexts.size();
+            for (int j = 0; j < count; j++) {
+                int i = order == TraversalOrder.DEPTH_FIRST ? count - 1 - j : j;
+                PendingNode child = new PendingNode(cached.childOwners.get(i), cached.childContexts.get(i),
+                                                    node.depth + 1, node.id, cached.childIndexes.get(i), parent,
+                                                    node.path);
+                pending.addLast(child);
+            }
+        }
+    }
+
+    // What the element reports, which need not be its position among the children the walk
+    // reached it by; the position only when it reports nothing
+    private static int indexInParent(AccessibleContext ac, int position) {
+        int index = ac.getAccessibleIndexInParent();
+        return index >= 0 ? index : position;
+    }
+
+    /**
+     * Capture one element's properties. Sets node.expand when its children should be explored.
+     */
+    private RawElement exploreElement(PendingNode node) {
+        AccessibleContext ac = node.context;
+        int depth = node.depth;
         if (ac == null || depth > maxDepth || visitedContexts.contains(ac)) {
             return null;
         }
 
         visitedContexts.add(ac);
-        ElementData element = new ElementData();
+        RawElement element = new RawElement();
 
         // Extract basic properties
-        element.setName(ac.getAccessibleName());
+        if (profile.includes(ExtractionProfile.Field.NAME)) {
+            element.name = ac.getAccessibleName();
+        }
         
         AccessibleRole role = ac.getAccessibleRole();
         if (role != null) {
-            element.setRole(role.toString());
-            elementCounts.merge(role.toString(), 1, Integer::sum);
+            element.role = role;
+            element.roleName = SnapshotProcessor.displayName(role);
         }
         
-        element.setDescription(ac.getAccessibleDescription());
-        element.setIndexInParent(ac.getAccessibleIndexInParent());
-        element.setChildrenCount(ac.getAccessibleChildrenCount());
+        if (profile.includes(ExtractionProfile.Field.DESCRIPTION)) {
+            element.description = ac.getAccessibleDescription();
+        }
+        if (profile.includes(ExtractionProfile.Field.INDEX)) {
+            element.indexInParent = indexInParent(ac, node.indexInParent);
+        }
+        element.childrenCount = ac.getAccessibleChildrenCount();
 
-        // Extract states
-        AccessibleStateSet stateSet = ac.getAccessibleStateSet();
+        // Extract states (the state set is still needed for the visibility check)
+        boolean wantStates = profile.includes(ExtractionProfile.Field.STATES);
+        AccessibleStateSet stateSet = wantStates || !includeInvisible ? ac.getAccessibleStateSet() : null;
         if (stateSet != null) {
-            List<String> states = new ArrayList<>();
-            for (AccessibleState state : stateSet.toArray()) {
-                states.add(state.toString());
+            if (wantStates) {
+                element.states = stateSet.toArray();
             }
-            element.setStates(states);
             
             // Check visibility
             if (!includeInvisible && !stateSet.contains(AccessibleState.VISIBLE)) {
@@ -63,35 +534,23 @@ public class UITreeExplorer {
         }
 
         // Extract component bounds
-        AccessibleComponent comp = ac.getAccessibleComponent();
+        AccessibleComponent comp = profile.includes(ExtractionProfile.Field.BOUNDS) ? ac.getAccessibleComponent() : null;
         if (comp != null) {
-            Rectangle bounds = comp.getBounds();
-            if (bounds != null) {
-                element.setBounds(new ElementData.BoundsData(bounds));
-            }
+            element.bounds = comp.getBounds();
             
             // Get class name
             if (comp instanceof Component) {
-                element.setClassName(comp.getClass().getName());
+                element.className = comp.getClass().getName();
             }
         }
 
         // Extract text content
-        AccessibleText text = ac.getAccessibleText();
-        if (text != null) {
+        if (profile.includes(ExtractionProfile.Field.TEXT)) {
             try {
-                int charCount = text.getCharCount();
-                if (charCount > 0 && charCount < 10000) { // Limit to prevent huge strings
-                    StringBuilder sb = new StringBuilder();
-                    for (int i = 0; i < charCount; i++) {
-                        String charAtIndex = text.getAtIndex(AccessibleText.CHARACTER, i);
-                        if (charAtIndex != null) {
-                            sb.append(charAtIndex);
-                        }
-                    }
-                    if (sb.length() > 0) {
-                        element.setText(sb.toString());
-                    }
+                TextExtractor.Result text = TextExtractor.extract(node.owner, ac);
+                if (text != null) {
+                    element.text = text.text;
+                    element.textStrategy = text.strategy;
                 }
             } catch (Exception e) {
                 // Ignore text extraction errors
@@ -99,16 +558,13 @@ public class UITreeExplorer {
         }
 
         // Extract value
-        AccessibleValue value = ac.getAccessibleValue();
+        AccessibleValue value = profile.includes(ExtractionProfile.Field.VALUE) ? ac.getAccessibleValue() : null;
         if (value != null) {
-            Number currentValue = value.getCurrentAccessibleValue();
-            if (currentValue != null) {
-                element.setValue(currentValue.toString());
-            }
+            element.value = value.getCurrentAccessibleValue();
         }
 
         // Extract actions
-        AccessibleAction action = ac.getAccessibleAction();
+        AccessibleAction action = profile.includes(ExtractionProfile.Field.ACTIONS) ? ac.getAccessibleAction() : null;
         if (action != null) {
             List<String> actions = new ArrayList<>();
             int actionCount = action.getAccessibleActionCount();
@@ -118,37 +574,141 @@ public class UITreeExplorer {
                     actions.add(actionDesc);
                 }
             }
-            element.setActions(actions);
+            element.actions = actions.toArray(new String[0]);
         }
 
-        // Build path
-        String currentPath = parentPath + "/" + (element.getName() != null ? element.getName() : element.getRole());
-        element.setParentPath(parentPath);
+        node.expand = depth < maxDepth;
+        return element;
+    }
 
-        // Recursively explore children
+    /**
+     * Queue the children of an explored node. Children are queued so that they are dequeued in
+     * index order for either traversal order, which keeps sibling order (and, for depth-first,
+     * the visited-set outcome) identical to a recursive pre-order walk.
+     */
+    private void scheduleChildren(PendingNode node, RawElement parent, TraversalOrder order,
+                                  Deque<PendingNode> pending) {
+        AccessibleContext ac = node.context;
         int childCount = ac.getAccessibleChildrenCount();
-        if (childCount > 0 && depth < maxDepth) {
-            List<ElementData> children = new ArrayList<>();
+        if (childCount <= 0) {
+            return;
+        }
+        if (order == TraversalOrder.DEPTH_FIRST) {
+            for (int i = childCount - 1; i >= 0; i--) {
+                scheduleChild(ac.getAccessibleChild(i), i, node, parent, pending);
+            }
+        } else {
             for (int i = 0; i < childCount; i++) {
-                Accessible child = ac.getAccessibleChild(i);
-                if (child != null) {
-                    AccessibleContext childContext = child.getAccessibleContext();
-                    ElementData childElement = exploreElement(childContext, depth + 1, currentPath);
-                    if (childElement != null) {
-                        children.add(childElement);
-                    }
-                }
+                scheduleChild(ac.getAccessibleChild(i), i, node, parent, pending);
             }
-            element.setChildren(children);
         }
+        if (node.entry != null && order == TraversalOrder.DEPTH_FIRST) {
+            // Cached children are kept in index order
+            node.entry.reverseChildren();
+        }
+    }
 
-        return element;
+    private void scheduleChild(Accessible child, int index, PendingNode node, RawElement parent,
+                               Deque<PendingNode> pending) {
+        if (child != null) {
+            AccessibleContext childContext = child.getAccessibleContext();
+            if (childContext != null) {
+                pending.addLast(new PendingNode(child, childContext, node.depth + 1, node.id, index, parent, node.path));
+                if (node.entry != null) {
+                    node.entry.addChild(child, childContext, index);
+                }
+            }
+        }
     }
 
     public Map<String, Integer> getElementCounts() {
         return new HashMap<>(elementCounts);
     }
 
+    /**
+     * Number of elements whose text was read with each extraction strategy, keyed by strategy name.
+     */
+    public Map<String, Integer> getTextStrategyCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<TextExtractor.Strategy, Integer> entry : textStrategyCounts.entrySet()) {
+            counts.put(entry.getKey().getKey(), entry.getValue());
+        }
+        return counts;
+    }
+
+    /**
+     * The path of an element's parent as stored in ElementData.parentPath ("" for the root),
+     * built from the node index of the most recent exploration. A streamed exploration keeps no
+     * paths to build from.
+     */
+    public String getParentPath(ElementData element) {
+        return nodeIndex.parentPathOf(element.getNodeId());
+    }
+
+    /**
+     * The element's own path, i.e. the parentPath its children would carry.
+     */
+    public String getPath(ElementData element) {
+        return nodeIndex.pathOf(element.getNodeId());
+    }
+
+    /**
+     * Fill in parentPath on every element of a tree returned by the most recent explore() call.
+     */
+    public void materializePaths(ElementData root) {
+        // Top-down, so each path is built once from its parent's rather than from the index chain
+        Deque<ElementData> pending = new ArrayDeque<>();
+        Deque<String> parentPaths = new ArrayDeque<>();
+        pending.add(root);
+        parentPaths.add("");
+        while (!pending.isEmpty()) {
+            ElementData element = pending.poll();
+            String parentPath = parentPaths.poll();
+            element.setParentPath(parentPath);
+            String path = NodeIndex.childPath(parentPath, nodeIndex.getSegment(element.getNodeId()));
+            for (ElementData child : element.getChildren()) {
+                pending.add(child);
+                parentPaths.add(path);
+            }
+        }
+    }
+
+    /**
+     * Number of EDT slices the last snapshotOnEdt() took, 0 after a plain explore().
+     */
+    public int getEdtSlices() {
+        return edtSlices;
+    }
+
+    /**
+     * Longest time the last snapshotOnEdt() held the EDT in a single slice.
+     */
+    public long getMaxEdtStallNanos() {
+        return maxEdtStallNanos;
+    }
+
+    /**
+     * Number of elements the last incremental exploration took from its previous capture
+     * instead of querying the accessibility API.
+     */
+    public int getReusedElements() {
+        return reusedElements;
+    }
+
+    /**
+     * Whether the last exploration was stopped by the traversal budget before it was complete.
+     */
+    public boolean isTruncated() {
+        return truncatedBy != null;
+    }
+
+    /**
+     * The budget limit that stopped the last exploration, or null if it ran to completion.
+     */
+    public TraversalBudget.Limit getTruncatedBy() {
+        return truncatedBy;
+    }
+
     public int getTotalElements() {
         return visitedContexts.size();
     }
@@ -2,12 +2,16 @@ package com.inspector.gui.controller;
 
 import com.inspector.core.ApplicationConnector;
 import com.inspector.core.AttachConnector;
+import com.inspector.core.ExtractionProfile;
+import com.inspector.core.JvmDiscoveryService;
 import com.inspector.gui.model.InspectionHistory;
+import com.inspector.gui.model.ProcessCatalog;
 import com.inspector.gui.model.ProcessInfo;
 import com.inspector.overlay.ComponentBoundsParser;
 import com.inspector.overlay.ComponentHighlighter;
 import com.inspector.util.WindowEnumerator;
 import com.sun.jna.Native;
+import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.User32;
 import com.sun.jna.platform.win32.WinDef.HWND;
 import com.sun.jna.ptr.IntByReference;
@@ -28,7 +32,6 @@ import javafx.util.Duration;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -45,6 +48,7 @@ public class MainController {
     @FXML private ComboBox<String> filterComboBox;
     @FXML private Button refreshButton;
     @FXML private Button inspectButton;
+    @FXML private ComboBox<String> fieldsComboBox;
     @FXML private CheckBox autoRefreshCheckBox;
     @FXML private ToggleButton darkModeToggle;
     
@@ -61,6 +65,10 @@ public class MainController {
     @FXML private ToggleButton highlightToggle;
     
     private ObservableList<ProcessInfo> processList;
+    // Answers isJavaProcess from one listing of the JVMs for all the windows of a refresh
+    private final ProcessCatalog processCatalog =
+        new ProcessCatalog(pid -> JvmDiscoveryService.getDefault().isJavaProcess(pid));
+    private boolean refreshingProcesses;
     private FilteredList<ProcessInfo> filteredProcessList;
     private InspectionHistory history;
     private Timer autoRefreshTimer;
@@ -109,6 +117,11 @@ public class MainController {
         filterComboBox.setItems(FXCollections.observableArrayList("All", "Java Only", "Non-Java Only"));
         filterComboBox.setValue("All");
         
+        // Setup extraction profile combo box
+        fieldsComboBox.setItems(FXCollections.observableArrayList(
+            "All properties", "Structure (names, states, bounds)", "Layout (roles + bounds)"));
+        fieldsComboBox.setValue("All properties");
+        
         // Search and filter listeners
         searchField.textProperty().addListener((obs, oldVal, newVal) -> applyFilters());
         filterComboBox.valueProperty().addListener((obs, oldVal, newVal) -> applyFilters());
@@ -178,6 +191,8 @@ public class MainController {
         // Clear previous preview
         previewTextArea.clear();
         
+        ExtractionProfile profile = getSelectedProfile();
+        
         currentInspectionTask = new Task<String>() {
             @Override
             protected String call() throws Exception {
@@ -214,10 +229,9 @@ public class MainController {
                     updateProgress(0.5, 1.0);
                     
                     // Perform inspection
-                    System.out.println("[DEBUG] Starting inspection for PID: " + processInfo.getPid());
+                    // Written straight to the chosen file, through a temp file renamed into place
                     ApplicationConnector.ConnectionResult result = 
-                        ApplicationConnector.connectByPid(processInfo.getPid());
-                    System.out.println("[DEBUG] Inspection completed. Error: " + result.error);
+                        ApplicationConnector.connectByPid(processInfo.getPid(), profile, null, outputFile.toPath());
                     
                     Platform.runLater(() -> statusLabel.setText("📊 Collecting control metadata..."));
                     updateProgress(0.7, 1.0);
@@ -225,16 +239,7 @@ public class MainController {
                     Platform.runLater(() -> statusLabel.setText("💾 Generating JSON output..."));
                     updateProgress(0.85, 1.0);
                     
-                    // Copy temp output to user-selected location
-                    File tempOutput = new File("inspector-agent-output.json");
-                    System.out.println("[DEBUG] Temp output exists: " + tempOutput.exists() + ", path: " + tempOutput.getAbsolutePath());
-                    
-                    if (tempOutput.exists()) {
-                        System.out.println("[DEBUG] Copying to: " + outputFile.getAbsolutePath());
-                        Files.copy(tempOutput.toPath(), outputFile.toPath(), 
-                                  StandardCopyOption.REPLACE_EXISTING);
-                        System.out.println("[DEBUG] Copy complete. Output file exists: " + outputFile.exists());
-                        
+                    if (outputFile.exists()) {
                         updateProgress(1.0, 1.0);
                         return outputFile.getAbsolutePath();
                     } else {
@@ -250,26 +255,17 @@ public class MainController {
             
             @Override
             protected void succeeded() {
-                System.out.println("[DEBUG] Task succeeded!");
                 stopLoadingAnimation();
                 String filePath = getValue();
-                System.out.println("[DEBUG] File path from task: " + filePath);
                 
                 // Load preview with formatted display
                 try {
                     File resultFile = new File(filePath);
-                    System.out.println("[DEBUG] Result file exists: " + resultFile.exists() + ", size: " + resultFile.length());
-                    
                     String content = Files.readString(resultFile.toPath());
-                    System.out.println("[DEBUG] Content loaded, length: " + content.length());
                     
                     // Parse JSON to extract stats
                     String formattedPreview = formatPreviewContent(content, processInfo);
-                    System.out.println("[DEBUG] Formatted preview length: " + formattedPreview.length());
-                    
                     previewTextArea.setText(formattedPreview);
-                    System.out.println("[DEBUG] Preview text set successfully");
-                    
                 } catch (IOException e) {
                     System.err.println("[ERROR] Failed to load preview: " + e.getMessage());
                     e.printStackTrace();
@@ -277,12 +273,10 @@ public class MainController {
                 }
                 
                 // Add to history
-                System.out.println("[DEBUG] Adding to history...");
                 history.addEntry(processInfo.getPid(), processInfo.getName(), 
                                processInfo.getWindowTitle(), processInfo.getType(), filePath);
                 processInfo.setLastInspected(LocalDateTime.now());
                 refreshHistoryTable();
-                System.out.println("[DEBUG] History updated");
                 
                 // Show success alert
                 showSuccessAlert(filePath);
@@ -343,6 +337,16 @@ public class MainController {
         thread.start();
     }
     
+    private ExtractionProfile getSelectedProfile() {
+        String selected = fieldsComboBox.getValue();
+        if (selected == null || selected.startsWith("All")) {
+            return ExtractionProfile.ALL;
+        } else if (selected.startsWith("Structure")) {
+            return ExtractionProfile.STRUCTURE;
+        }
+        return ExtractionProfile.LAYOUT;
+    }
+    
     private void startLoadingAnimation() {
         animationFrame = 0;
         loadingAnimation = new Timeline(new KeyFrame(Duration.millis(200), e -> {
@@ -508,10 +512,14 @@ public class MainController {
     }
     
     private void refreshProcessList() {
-        Task<List<ProcessInfo>> task = new Task<List<ProcessInfo>>() {
+        if (refreshingProcesses) {
+            return; // The auto-refresh caught up with a slow refresh
+        }
+        refreshingProcesses = true;
+        Task<ProcessCatalog.Diff> task = new Task<ProcessCatalog.Diff>() {
             @Override
-            protected List<ProcessInfo> call() {
-                List<ProcessInfo> processes = new ArrayList<>();
+            protected ProcessCatalog.Diff call() {
+                List<ProcessCatalog.Window> windows = new ArrayList<>();
                 
                 // Get all windows using JNA
                 User32.INSTANCE.EnumWindows((hwnd, data) -> {
@@ -524,24 +532,29 @@ public class MainController {
                         String title = Native.toString(windowText);
                         
                         if (!title.isEmpty()) {
-                            // Get process name
-                            String processName = getProcessName(pid.getValue());
-                            boolean isJava = AttachConnector.isJavaProcess(String.valueOf(pid.getValue()));
-                            
-                            processes.add(new ProcessInfo(pid.getValue(), processName, title, isJava, true));
+                            windows.add(new ProcessCatalog.Window(Pointer.nativeValue(hwnd.getPointer()),
+                                                                  pid.getValue(), title));
                         }
                     }
                     return true;
                 }, null);
                 
-                return processes;
+                // Only what changed reaches the table, so its selection survives the refresh
+                return processCatalog.refresh(windows);
             }
             
             @Override
             protected void succeeded() {
-                processList.setAll(getValue());
+                refreshingProcesses = false;
+                getValue().applyTo(processList);
                 statusLabel.setText("Loaded " + processList.size() + " processes");
             }
+            
+            @Override
+            protected void failed() {
+                refreshingProcesses = false;
+                statusLabel.setText("Failed to list processes: " + getException().getMessage());
+            }
         };
         
         Thread thread = new Thread(task);
@@ -549,21 +562,6 @@ public class MainController {
         thread.start();
     }
     
-    private String getProcessName(int pid) {
-        try {
-            ProcessHandle handle = ProcessHandle.of(pid).orElse(null);
-            if (handle != null) {
-                String command = handle.info().command().orElse("");
-                if (!command.isEmpty()) {
-                    return new File(command).getName();
-                }
-            }
-        } catch (Exception e) {
-            // Ignore
-        }
-        return "Unknown";
-    }
-    
     private void applyFilters() {
         String searchText = searchField.getText().toLowerCase();
         String filterValue = filterComboBox.getValue();
@@ -0,0 +1,218 @@
+package com.inspector.gui.model;
+
+import javafx.collections.ObservableList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The rows of the process table, kept across refreshes.
+ *
+ * Each refresh hands in the visible windows and gets back only what changed: rows for new
+ * windows, rows of windows that are gone, and new values for rows whose title, process name or
+ * type changed. Applying that to the table's list leaves the other rows (and the selection) as
+ * they are. Process names come from ProcessHandle.info(), which is read once per process: the
+ * cache is keyed by ProcessHandle, which tells a process from a later one that reuses its PID,
+ * and forgets processes that no longer have windows.
+ *
+ * refresh() may run on any thread, one at a time; Diff.applyTo() must run on the FX thread.
+ */
+public class ProcessCatalog {
+
+    /**
+     * A visible window: a handle unique while it exists, its process and its title.
+     */
+    public static final class Window {
+        final long id;
+        final int pid;
+        final String title;
+
+        public Window(long id, int pid, String title) {
+            this.id = id;
+            this.pid = pid;
+            this.title = title;
+        }
+
+        public long getId() { return id; }
+        public int getPid() { return pid; }
+        public String getTitle() { return title; }
+    }
+
+    /**
+     * What changed since the previous refresh.
+     */
+    public static final class Diff {
+        private final List<ProcessInfo> added = new ArrayList<>();
+        private final List<ProcessInfo> removed = new ArrayList<>();
+        private final List<Update> updated = new ArrayList<>();
+
+        public List<ProcessInfo> getAdded() { return added; }
+        public List<ProcessInfo> getRemoved() { return removed; }
+        public int getUpdatedCount() { return updated.size(); }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty() && updated.isEmpty();
+        }
+
+        /**
+         * Bring list, which holds the rows of the previous refreshes, up to date.
+         */
+        public void applyTo(ObservableList<ProcessInfo> list) {
+            if (!removed.isEmpty()) {
+                Set<ProcessInfo> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+                gone.addAll(removed);
+                list.removeAll(gone);
+            }
+            for (Update update : updated) {
+                update.apply();
+            }
+            list.addAll(added);
+        }
+    }
+
+    // New values for an existing row
+    private static final class Update {
+        final Row row;
+
+        Update(Row row) {
+            this.row = row;
+        }
+
+        void apply() {
+            row.info.setName(row.name);
+            row.info.setWindowTitle(row.title);
+            row.info.setType(row.java ? "Java" : "Non-Java");
+        }
+    }
+
+    // A row with the values last handed out, which the FX thread may not have applied yet
+    private static final class Row {
+        final ProcessInfo info;
+        String name;
+        String title;
+        boolean java;
+
+        Row(ProcessInfo info, String name, String title, boolean java) {
+            this.info = info;
+            this.name = name;
+            this.title = title;
+            this.java = java;
+        }
+    }
+
+    // A window of one process; the process is null when no handle could be had for it
+    private static final class RowKey {
+        final long windowId;
+        final int pid;
+        final ProcessHandle process;
+
+        RowKey(long windowId, int pid, ProcessHandle process) {
+            this.windowId = windowId;
+            this.pid = pid;
+            this.process = process;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RowKey)) {
+                return false;
+            }
+            RowKey other = (RowKey) o;
+            return windowId == other.windowId && pid == other.pid && Objects.equals(process, other.process);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(windowId) * 31 + pid;
+        }
+    }
+
+    private final Predicate<String> javaProcess;
+    private final Map<ProcessHandle, String> names = new HashMap<>();
+    private Map<RowKey, Row> rows = new HashMap<>();
+    private int metadataReads;
+
+    /**
+     * A catalog telling Java processes by javaProcess, given a PID.
+     */
+    public ProcessCatalog(Predicate<String> javaProcess) {
+        this.javaProcess = javaProcess;
+    }
+
+    /**
+     * Compare windows with those of the previous refresh.
+     */
+    public synchronized Diff refresh(List<Window> windows) {
+        Diff diff = new Diff();
+        Map<RowKey, Row> current = new HashMap<>();
+        Map<ProcessHandle, String> seenNames = new HashMap<>();
+        Map<Integer, Optional<ProcessHandle>> handles = new HashMap<>();
+
+        for (Window window : windows) {
+            ProcessHandle process = handles.computeIfAbsent(window.pid, pid -> ProcessHandle.of(pid)).orElse(null);
+            RowKey key = new RowKey(window.id, window.pid, process);
+            if (current.containsKey(key)) {
+                continue;
+            }
+            String name = "Unknown";
+            if (process != null) {
+                name = seenNames.computeIfAbsent(process, p -> {
+                    String cached = names.get(p);
+                    return cached != null ? cached : readName(p);
+                });
+            }
+            boolean java = javaProcess.test(String.valueOf(window.pid));
+
+            Row row = rows.get(key);
+            if (row == null) {
+                row = new Row(new ProcessInfo(window.pid, name, window.title, java, true), name, window.title, java);
+                diff.added.add(row.info);
+            } else if (!row.name.equals(name) || !row.title.equals(window.title) || row.java != java) {
+                row.name = name;
+                row.title = window.title;
+                row.java = java;
+                diff.updated.add(new Update(row));
+            }
+            current.put(key, row);
+        }
+
+        for (Map.Entry<RowKey, Row> entry : rows.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                diff.removed.add(entry.getValue().info);
+            }
+        }
+        rows = current;
+        names.keySet().retainAll(seenNames.keySet());
+        names.putAll(seenNames);
+        return diff;
+    }
+
+    /**
+     * How many times process metadata has been read from the system.
+     */
+    public synchronized int getMetadataReads() {
+        return metadataReads;
+    }
+
+    private String readName(ProcessHandle process) {
+        metadataReads++;
+        try {
+            String command = process.info().command().orElse("");
+            if (!command.isEmpty()) {
+                return new File(command).getName();
+            }
+        } catch (Exception e) {
+            // Ignore
+        }
+        return "Unknown";
+    }
+}
@@ -1,16 +1,28 @@
 package com.inspector.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import javax.accessibility.AccessibleState;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * One element of an explored UI tree.
+ *
+ * Trees can hold hundreds of thousands of elements, so nothing is allocated per element unless
+ * it has content: the states, actions and children lists stay null until set, and their getters
+ * return a shared empty list in the meantime (read-only; use addChild() to grow a tree). State
+ * lists produced by the explorer are shared between elements (see StateTable).
+ */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ElementData {
     private String name;
     private String role;
     private String description;
     private List<String> states;
+    private long stateBits;
     private BoundsData bounds;
     private Integer indexInParent;
     private Integer childrenCount;
@@ -19,13 +31,13 @@ public class ElementData {
     private List<String> actions;
     private String className;
     private String parentPath;
+    private Integer handle;
     private List<ElementData> children;
+    // Written after children so that streaming exports, which only know it on leaving, can match
+    private Integer elidedChildren;
+    private int nodeId = -1;
 
-    public ElementData() {
-        this.states = new ArrayList<>();
-        this.actions = new ArrayList<>();
-        this.children = new ArrayList<>();
-    }
+    public ElementData() {}
 
     // Getters and Setters
     public String getName() { return name; }
@@ -37,8 +49,28 @@ public class ElementData {
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
 
-    public List<String> getStates() { return states; }
-    public void setStates(List<String> states) { this.states = states; }
+    public List<String> getStates() { return states != null ? states : Collections.emptyList(); }
+    public void setStates(List<String> states) {
+        this.states = states;
+        this.stateBits = states != null ? StateTable.bitsOfNames(states) : 0;
+    }
+
+    /**
+     * Set the state names together with their StateTable bits, as the explorer computes both.
+     */
+    public void setStates(List<String> states, long stateBits) {
+        this.states = states;
+        this.stateBits = stateBits;
+    }
+
+    // StateTable bits of the states, for membership tests without comparing names
+    @JsonIgnore
+    public long getStateBits() { return stateBits; }
+
+    public boolean hasState(AccessibleState state) {
+        long bit = StateTable.bit(state);
+        return bit != 0 ? (stateBits & bit) != 0 : getStates().contains(state.toString());
+    }
 
     public BoundsData getBounds() { return bounds; }
     public void setBounds(BoundsData bounds) { this.bounds = bounds; }
@@ -55,7 +87,7 @@ public class ElementData {
     public String getValue() { return value; }
     public void setValue(String value) { this.value = value; }
 
-    public List<String> getActions() { return actions; }
+    public List<String> getActions() { return actions != null ? actions : Collections.emptyList(); }
     public void setActions(List<String> actions) { this.actions = actions; }
 
     public String getClassName() { return className; }
@@ -64,9 +96,29 @@ public class ElementData {
     public String getParentPath() { return parentPath; }
     public void setParentPath(String parentPath) { this.parentPath = parentPath; }
 
-    public List<ElementData> getChildren() { return children; }
+    // The agent's reference to this element for EXPAND and GET, null outside lazy exploration
+    public Integer getHandle() { return handle; }
+    public void setHandle(Integer handle) { this.handle = handle; }
+
+    public List<ElementData> getChildren() { return children != null ? children : Collections.emptyList(); }
     public void setChildren(List<ElementData> children) { this.children = children; }
 
+    public void addChild(ElementData child) {
+        if (children == null) {
+            children = new ArrayList<>();
+        }
+        children.add(child);
+    }
+
+    // Children not explored because the traversal budget ran out, null if none were skipped
+    public Integer getElidedChildren() { return elidedChildren; }
+    public void setElidedChildren(Integer elidedChildren) { this.elidedChildren = elidedChildren; }
+
+    // Position in the explorer's NodeIndex, -1 if the element was not produced by an explorer
+    @JsonIgnore
+    public int getNodeId() { return nodeId; }
+    public void setNodeId(int nodeId) { this.nodeId = nodeId; }
+
     public static class BoundsData {
         private int x;
         private int y;
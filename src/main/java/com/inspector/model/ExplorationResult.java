@@ -1,5 +1,6 @@
 package com.inspector.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -11,6 +12,9 @@ public class ExplorationResult {
     private Map<String, Object> statistics;
     @JsonProperty("ui_tree")
     private ElementData uiTree;
+    // Set when a traversal budget stopped exploration; statistics.truncated_by says which
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean truncated;
 
     public ExplorationResult() {
         this.statistics = new HashMap<>();
@@ -25,6 +29,9 @@ public class ExplorationResult {
     public ElementData getUiTree() { return uiTree; }
     public void setUiTree(ElementData uiTree) { this.uiTree = uiTree; }
 
+    public Boolean getTruncated() { return truncated; }
+    public void setTruncated(Boolean truncated) { this.truncated = truncated; }
+
     public static class ApplicationInfo {
         private String pid;
         private String title;
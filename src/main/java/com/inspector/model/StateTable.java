@@ -0,0 +1,114 @@
+package com.inspector.model;
+
+import javax.accessibility.AccessibleState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact encodings of accessibility state sets.
+ *
+ * Each standard AccessibleState has a fixed bit, so a state set fits in a long. The display
+ * names that ElementData serializes are interned per state sequence: a tree has only a handful
+ * of distinct sequences, so elements share one immutable list instead of each holding its own.
+ * Sequences keep the order the target reported them in. States outside the table (custom
+ * AccessibleState subclasses) have no bit but still appear in the names.
+ */
+public final class StateTable {
+
+    private static final AccessibleState[] STATES = {
+        AccessibleState.ACTIVE, AccessibleState.PRESSED, AccessibleState.ARMED, AccessibleState.BUSY,
+        AccessibleState.CHECKED, AccessibleState.EDITABLE, AccessibleState.EXPANDABLE, AccessibleState.COLLAPSED,
+        AccessibleState.EXPANDED, AccessibleState.ENABLED, AccessibleState.FOCUSABLE, AccessibleState.FOCUSED,
+        AccessibleState.ICONIFIED, AccessibleState.MODAL, AccessibleState.OPAQUE, AccessibleState.RESIZABLE,
+        AccessibleState.MULTISELECTABLE, AccessibleState.SELECTABLE, AccessibleState.SELECTED, AccessibleState.SHOWING,
+        AccessibleState.VISIBLE, AccessibleState.VERTICAL, AccessibleState.HORIZONTAL, AccessibleState.SINGLE_LINE,
+        AccessibleState.MULTI_LINE, AccessibleState.TRANSIENT, AccessibleState.MANAGES_DESCENDANTS,
+        AccessibleState.INDETERMINATE, AccessibleState.TRUNCATED
+    };
+
+    // Distinct sequences are few in practice; past this many, lists are built without interning
+    private static final int MAX_INTERNED = 4096;
+
+    private static final Map<AccessibleState, Integer> bitIndex = new HashMap<>();
+    private static final Map<String, Integer> nameIndex = new HashMap<>();
+    private static final Map<List<AccessibleState>, List<String>> interned = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < STATES.length; i++) {
+            bitIndex.put(STATES[i], i);
+            nameIndex.put(STATES[i].toString(), i);
+        }
+    }
+
+    private StateTable() {}
+
+    /**
+     * The bit of a state, or 0 if the state is not in the table.
+     */
+    public static long bit(AccessibleState state) {
+        Integer index = bitIndex.get(state);
+        return index == null ? 0 : 1L << index;
+    }
+
+    /**
+     * The state with the given display name, ignoring case, or null if the table has none.
+     */
+    public static AccessibleState byName(String name) {
+        for (AccessibleState state : STATES) {
+            if (state.toString().equalsIgnoreCase(name)) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    public static long bits(AccessibleState[] states) {
+        long bits = 0;
+        for (AccessibleState state : states) {
+            bits |= bit(state);
+        }
+        return bits;
+    }
+
+    /**
+     * The bits of states given by display name, as ElementData.getStates() returns them.
+     */
+    public static long bitsOfNames(List<String> names) {
+        long bits = 0;
+        for (String name : names) {
+            Integer index = nameIndex.get(name);
+            if (index != null) {
+                bits |= 1L << index;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * The display names of a state sequence, in order, as a shared immutable list. The array
+     * must not be modified afterwards.
+     */
+    public static List<String> names(AccessibleState[] states) {
+        List<AccessibleState> key = Arrays.asList(states);
+        List<String> names = interned.get(key);
+        if (names == null) {
+            List<String> built = new ArrayList<>(states.length);
+            for (AccessibleState state : states) {
+                built.add(state.toString());
+            }
+            names = Collections.unmodifiableList(built);
+            if (interned.size() < MAX_INTERNED) {
+                List<String> existing = interned.putIfAbsent(key, names);
+                if (existing != null) {
+                    names = existing;
+                }
+            }
+        }
+        return names;
+    }
+}
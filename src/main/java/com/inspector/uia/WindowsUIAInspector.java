@@ -1,5 +1,8 @@
 package com.inspector.uia;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.inspector.util.JsonOutput;
+import com.inspector.util.OutputFiles;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.*;
@@ -7,8 +10,8 @@ import com.sun.jna.platform.win32.WinDef.HWND;
 import com.sun.jna.platform.win32.WinDef.RECT;
 import com.sun.jna.ptr.IntByReference;
 
-import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Date;
 
 /**
@@ -30,6 +33,14 @@ public class WindowsUIAInspector {
      * NOTE: Modern web-based apps (Electron/CEF) only show window structure, not UI content
      */
     public static String inspectProcess(int pid) {
+        return inspectProcess(pid, OutputFiles.newSessionOutput(String.valueOf(pid)));
+    }
+    
+    /**
+     * Inspect a non-Java process into outputFile, which appears, complete, once the inspection
+     * has succeeded.
+     */
+    public static String inspectProcess(int pid, Path outputFile) {
         long startTime = System.currentTimeMillis();
         System.out.println("Using Enhanced Windows UI Automation for non-Java process");
         
@@ -51,82 +62,73 @@ public class WindowsUIAInspector {
                                    windowClassTemp.contains("Slack") ||
                                    windowClassTemp.contains("VSCode");
             
-            String outputFile = "inspector-agent-output.json";
-            try (PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
-            
-            writer.println("{");
-            writer.println("  \"timestamp\": \"" + new Date() + "\",");
-            writer.println("  \"targetPID\": \"" + pid + "\",");
-            writer.println("  \"inspectionMethod\": \"Enhanced Windows UIA\",");
-            writer.println("  \"maxDepth\": " + MAX_DEPTH + ",");
+            try (OutputFiles.PendingOutput output = OutputFiles.begin(outputFile);
+                 JsonGenerator gen = JsonOutput.createGenerator(output.getPath(), true)) {
+                gen.writeStartObject();
+                gen.writeStringField("timestamp", new Date().toString());
+                gen.writeStringField("targetPID", String.valueOf(pid));
+                gen.writeStringField("inspectionMethod", "Enhanced Windows UIA");
+                gen.writeNumberField("maxDepth", MAX_DEPTH);
             
-            // Add warning for Chromium apps
-            if (isChromiumApp) {
-                writer.println("  \"WARNING\": \"This is a Chromium/Electron application. The output shows only window containers, not actual UI content. UI elements are rendered in a canvas and not accessible via standard Windows APIs. For full UI inspection, use Chrome DevTools Protocol or specialized accessibility tools.\",");
-            }
-            
-            writer.println("  \"totalWindows\": 1,");
-            writer.println("  \"windows\": [");
-            writer.println("    {");
+                // Add warning for Chromium apps
+                if (isChromiumApp) {
+                    gen.writeStringField("WARNING", "This is a Chromium/Electron application. The output shows only window containers, not actual UI content. UI elements are rendered in a canvas and not accessible via standard Windows APIs. For full UI inspection, use Chrome DevTools Protocol or specialized accessibility tools.");
+                }
             
-            // Get window title
-            char[] windowText = new char[512];
-            User32.INSTANCE.GetWindowText(hwnd, windowText, 512);
-            String title = Native.toString(windowText);
+                gen.writeNumberField("totalWindows", 1);
+                gen.writeArrayFieldStart("windows");
+                gen.writeStartObject();
             
-            // Get window class
-            char[] className = new char[256];
-            User32.INSTANCE.GetClassName(hwnd, className, 256);
-            String windowClass = Native.toString(className);
+                // Get window title
+                char[] windowText = new char[512];
+                User32.INSTANCE.GetWindowText(hwnd, windowText, 512);
+                String title = Native.toString(windowText);
             
-            // Get window rectangle
-            RECT rect = new RECT();
-            User32.INSTANCE.GetWindowRect(hwnd, rect);
+                // Get window class
+                char[] className = new char[256];
+                User32.INSTANCE.GetClassName(hwnd, className, 256);
+                String windowClass = Native.toString(className);
             
-            writer.println("      \"visible\": " + User32.INSTANCE.IsWindowVisible(hwnd) + ",");
-            writer.println("      \"class\": \"" + escapeJson(windowClass) + "\",");
-            writer.println("      \"title\": \"" + escapeJson(title) + "\",");
-            writer.println("      \"bounds\": {");
-            writer.println("        \"x\": " + rect.left + ",");
-            writer.println("        \"y\": " + rect.top + ",");
-            writer.println("        \"width\": " + (rect.right - rect.left) + ",");
-            writer.println("        \"height\": " + (rect.bottom - rect.top));
-            writer.println("      },");
+                // Get window rectangle
+                RECT rect = new RECT();
+                User32.INSTANCE.GetWindowRect(hwnd, rect);
             
-            // Enumerate child windows
-            writer.println("      \"uiTree\": {");
-            writer.println("        \"role\": \"window\",");
-            writer.println("        \"name\": \"" + escapeJson(title) + "\",");
-            writer.println("        \"className\": \"" + escapeJson(windowClass) + "\",");
-            writer.println("        \"bounds\": {");
-            writer.println("          \"x\": " + rect.left + ",");
-            writer.println("          \"y\": " + rect.top + ",");
-            writer.println("          \"width\": " + (rect.right - rect.left) + ",");
-            writer.println("          \"height\": " + (rect.bottom - rect.top));
-            writer.println("        },");
+                gen.writeBooleanField("visible", User32.INSTANCE.IsWindowVisible(hwnd));
+                gen.writeStringField("class", windowClass);
+                gen.writeStringField("title", title);
+                JsonOutput.writeBounds(gen, rect.left, rect.top, rect.right - rect.left, rect.bottom - rect.top);
             
-            // Enumerate child controls recursively with enhanced metadata
-            writer.println("        \"children\": [");
-            int totalControls = enumerateChildWindowsRecursive(writer, hwnd, 10, 0, MAX_DEPTH);
-            writer.println("        ]");
-            writer.println("      }");
+                // Enumerate child windows
+                gen.writeObjectFieldStart("uiTree");
+                gen.writeStringField("role", "window");
+                gen.writeStringField("name", title);
+                gen.writeStringField("className", windowClass);
+                JsonOutput.writeBounds(gen, rect.left, rect.top, rect.right - rect.left, rect.bottom - rect.top);
             
-            writer.println("    }");
-            writer.println("  ],");
+                // Enumerate child controls recursively with enhanced metadata
+                gen.writeArrayFieldStart("children");
+                int totalControls = enumerateChildWindowsRecursive(gen, hwnd, 0, MAX_DEPTH);
+                gen.writeEndArray();
+                gen.writeEndObject();
             
-            long duration = System.currentTimeMillis() - startTime;
-            writer.println("  \"inspectionStats\": {");
-            writer.println("    \"totalControlsFound\": " + totalControls + ",");
-            writer.println("    \"durationMs\": " + duration + ",");
-            writer.println("    \"maxDepthLimit\": " + MAX_DEPTH);
-            writer.println("  }");
-            writer.println("}");
+                gen.writeEndObject();
+                gen.writeEndArray();
             
-            System.out.println("Enhanced Windows UIA inspection complete");
-            System.out.println("Total controls found: " + totalControls + " in " + duration + "ms");
-            return "Results saved to: " + new java.io.File(outputFile).getAbsolutePath();
+                long duration = System.currentTimeMillis() - startTime;
+                gen.writeObjectFieldStart("inspectionStats");
+                gen.writeNumberField("totalControlsFound", totalControls);
+                gen.writeNumberField("durationMs", duration);
+                gen.writeNumberField("maxDepthLimit", MAX_DEPTH);
+                gen.writeEndObject();
+                gen.writeEndObject();
             
+                gen.close();
+                output.complete();
+                
+                System.out.println("Enhanced Windows UIA inspection complete");
+                System.out.println("Total controls found: " + totalControls + " in " + duration + "ms");
             }
+            return "Results saved to: " + outputFile.toAbsolutePath();
         } catch (java.io.IOException e) {
             return "Windows UIA inspection failed - IO Error: " + e.getMessage();
         } catch (Exception e) {
@@ -135,7 +137,7 @@ public class WindowsUIAInspector {
         }
     }
     
-    private static int enumerateChildWindowsRecursive(PrintWriter writer, HWND parent, int indent, int depth, int maxDepth) {
+    private static int enumerateChildWindowsRecursive(JsonGenerator gen, HWND parent, int depth, int maxDepth) throws IOException {
         if (depth > maxDepth) return 0;
         
         final java.util.List<HWND> childHandles = new java.util.ArrayList<>();
@@ -147,15 +149,11 @@ public class WindowsUIAInspector {
             return true;
         }, null);
         
-        String indentStr = " ".repeat(indent);
-        
         // Now process each child with enhanced metadata
         for (int i = 0; i < childHandles.size(); i++) {
             HWND hwnd = childHandles.get(i);
             
             try {
-                controlCount++;
-                
                 // Get control info
                 char[] text = new char[512];
                 User32.INSTANCE.GetWindowText(hwnd, text, 512);
@@ -179,51 +177,42 @@ public class WindowsUIAInspector {
                 // Detect control type for better semantic information
                 String controlType = detectControlType(controlClass, style);
                 
-                writer.println(indentStr + "{");
-                writer.println(indentStr + "  \"role\": \"" + controlType + "\",");
-                writer.println(indentStr + "  \"name\": \"" + escapeJson(controlText) + "\",");
-                writer.println(indentStr + "  \"className\": \"" + escapeJson(controlClass) + "\",");
+                // Read everything before writing, so a failing control leaves no partial object
+                controlCount++;
+                gen.writeStartObject();
+                gen.writeStringField("role", controlType);
+                gen.writeStringField("name", controlText);
+                gen.writeStringField("className", controlClass);
                 
                 if (controlId != 0) {
-                    writer.println(indentStr + "  \"controlId\": " + controlId + ",");
+                    gen.writeNumberField("controlId", controlId);
                 }
                 
-                writer.println(indentStr + "  \"bounds\": {");
-                writer.println(indentStr + "    \"x\": " + rect.left + ",");
-                writer.println(indentStr + "    \"y\": " + rect.top + ",");
-                writer.println(indentStr + "    \"width\": " + (rect.right - rect.left) + ",");
-                writer.println(indentStr + "    \"height\": " + (rect.bottom - rect.top));
-                writer.println(indentStr + "  },");
-                writer.println(indentStr + "  \"depth\": " + depth + ",");
-                writer.println(indentStr + "  \"indexInParent\": " + i + ",");
+                JsonOutput.writeBounds(gen, rect.left, rect.top, rect.right - rect.left, rect.bottom - rect.top);
+                gen.writeNumberField("depth", depth);
+                gen.writeNumberField("indexInParent", i);
                 
                 // Enhanced state detection
-                writer.print(indentStr + "  \"states\": [");
-                java.util.List<String> states = new java.util.ArrayList<>();
-                if (isVisible) states.add("\"visible\"");
-                if (isEnabled) states.add("\"enabled\"");
-                if ((style & WinUser.WS_DISABLED) != 0) states.add("\"disabled\"");
-                if ((style & WinUser.WS_CHILD) != 0) states.add("\"child\"");
-                if ((exStyle & 0x00000008) != 0) states.add("\"topmost\""); // WS_EX_TOPMOST
-                writer.print(String.join(", ", states));
-                writer.println("],");
+                gen.writeArrayFieldStart("states");
+                if (isVisible) gen.writeString("visible");
+                if (isEnabled) gen.writeString("enabled");
+                if ((style & WinUser.WS_DISABLED) != 0) gen.writeString("disabled");
+                if ((style & WinUser.WS_CHILD) != 0) gen.writeString("child");
+                if ((exStyle & 0x00000008) != 0) gen.writeString("topmost"); // WS_EX_TOPMOST
+                gen.writeEndArray();
                 
-                writer.println(indentStr + "  \"hwnd\": \"" + hwnd.getPointer().toString() + "\",");
+                gen.writeStringField("hwnd", hwnd.getPointer().toString());
                 
                 // Recursively enumerate children of this control
-                writer.println(indentStr + "  \"children\": [");
-                int childCount = enumerateChildWindowsRecursive(writer, hwnd, indent + 4, depth + 1, maxDepth);
-                writer.println(indentStr + "  ],");
-                writer.println(indentStr + "  \"childCount\": " + childCount);
-                
-                writer.print(indentStr + "}");
+                gen.writeArrayFieldStart("children");
+                int childCount = enumerateChildWindowsRecursive(gen, hwnd, depth + 1, maxDepth);
+                gen.writeEndArray();
+                gen.writeNumberField("childCount", childCount);
                 
-                if (i < childHandles.size() - 1) {
-                    writer.println(",");
-                } else {
-                    writer.println();
-                }
+                gen.writeEndObject();
                 
+            } catch (IOException e) {
+                throw e;
             } catch (Exception e) {
                 // Skip problematic controls but log details
                 System.err.println("Error processing control at depth " + depth + ": " + e.getMessage());
@@ -290,13 +279,4 @@ public class WindowsUIAInspector {
         
         return "control";
     }
-    
-    private static String escapeJson(String str) {
-        if (str == null || str.isEmpty()) return "";
-        return str.replace("\\", "\\\\")
-                 .replace("\"", "\\\"")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r")
-                 .replace("\t", "\\t");
-    }
 }
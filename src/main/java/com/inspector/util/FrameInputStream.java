@@ -0,0 +1,94 @@
+package com.inspector.util;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads one response of the framed protocol (see FrameProtocol) as a plain stream of its
+ * payload bytes, one frame at a time. Ends after the END frame; an ERROR frame is thrown as a
+ * FrameProtocol.RemoteException and also ends the response.
+ */
+class FrameInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final int requestId;
+    private FrameProtocol.Frame frame;
+    private int position = 0;
+    private boolean failed = false;
+
+    FrameInputStream(DataInputStream in, int requestId) throws IOException {
+        this.in = in;
+        this.requestId = requestId;
+        // The first frame says whether the response is compressed
+        this.frame = next();
+    }
+
+    boolean isDeflated() {
+        return (frame.flags & FrameProtocol.FLAG_DEFLATE) != 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return frame.payload[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, frame.payload.length - position);
+        System.arraycopy(frame.payload, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return frame.payload.length - position;
+    }
+
+    /**
+     * Read the rest of the response, so that the connection is positioned at the next one.
+     */
+    @Override
+    public void close() throws IOException {
+        while (fill()) {
+            position = frame.payload.length;
+        }
+    }
+
+    // Make unread bytes available; false once the END frame has been consumed
+    private boolean fill() throws IOException {
+        while (position == frame.payload.length) {
+            if (frame.type == FrameProtocol.END || failed) {
+                return false;
+            }
+            frame = next();
+            position = 0;
+        }
+        return true;
+    }
+
+    private FrameProtocol.Frame next() throws IOException {
+        FrameProtocol.Frame next = FrameProtocol.readFrame(in);
+        if (next.requestId != requestId) {
+            throw new IOException("Frame for request " + next.requestId + " while reading request " + requestId);
+        }
+        if (next.type == FrameProtocol.ERROR) {
+            failed = true;
+            throw new FrameProtocol.RemoteException(next.text());
+        }
+        if (next.type != FrameProtocol.CHUNK && next.type != FrameProtocol.END) {
+            throw new IOException("Unexpected frame type " + next.type + " in a response");
+        }
+        return next;
+    }
+}
@@ -0,0 +1,71 @@
+package com.inspector.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes one response of the framed protocol (see FrameProtocol): bytes are cut into CHUNK
+ * frames as they are written, and close() sends the remainder as the END frame. Only one chunk
+ * is held in memory, however large the response.
+ */
+public class FrameOutputStream extends OutputStream {
+
+    private final DataOutputStream out;
+    private final int requestId;
+    private final byte flags;
+    private final byte[] buffer = new byte[FrameProtocol.CHUNK_SIZE];
+    private int count = 0;
+    private boolean closed = false;
+
+    public FrameOutputStream(DataOutputStream out, int requestId, byte flags) {
+        this.out = out;
+        this.requestId = requestId;
+        this.flags = flags;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            sendChunk();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                sendChunk();
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Whether the END frame has been sent.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        FrameProtocol.writeFrame(out, requestId, FrameProtocol.END, flags, buffer, 0, count);
+        count = 0;
+        out.flush();
+    }
+
+    private void sendChunk() throws IOException {
+        FrameProtocol.writeFrame(out, requestId, FrameProtocol.CHUNK, flags, buffer, 0, count);
+        count = 0;
+    }
+}
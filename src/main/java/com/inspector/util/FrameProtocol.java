@@ -0,0 +1,186 @@
+package com.inspector.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The framed binary protocol of the agent's socket server.
+ *
+ * A connection starts in the line-based text protocol. A client that sends UPGRADE_COMMAND and
+ * receives "OK BINARY" switches to frames; it must not send anything else before that reply.
+ * Every frame is
+ *
+ *   int payloadLength, int requestId, byte type, byte flags, payload
+ *
+ * in network byte order. A request is one REQUEST frame holding the command as UTF-8 text, with
+ * FLAG_DEFLATE set if the client accepts a compressed response. The response carries the same
+ * request ID: zero or more CHUNK frames and a closing END frame whose payloads together form one
+ * Smile document (Deflate-compressed as a whole if FLAG_DEFLATE is set on them), or an ERROR
+ * frame holding a UTF-8 message, which may also end a response part way.
+ */
+public final class FrameProtocol {
+
+    public static final String UPGRADE_COMMAND = "PROTOCOL BINARY";
+    public static final String UPGRADE_REPLY = "BINARY";
+
+    public static final byte REQUEST = 1;
+    public static final byte CHUNK = 2;
+    public static final byte END = 3;
+    public static final byte ERROR = 4;
+
+    public static final byte FLAG_DEFLATE = 1;
+
+    /** Payload size of the CHUNK frames a response is cut into. */
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    // Guards against reading garbage as a length, e.g. from a peer still speaking text
+    private static final int MAX_PAYLOAD = 16 * 1024 * 1024;
+
+    private static final ObjectMapper smileMapper;
+
+    static {
+        // Frames come from another process, so what is read from them is bounded
+        SmileFactory factory = SmileFactory.builder()
+            .streamReadConstraints(JsonOutput.remoteReadConstraints())
+            .streamWriteConstraints(JsonOutput.writeConstraints())
+            .build();
+        smileMapper = new ObjectMapper(factory);
+    }
+
+    private FrameProtocol() {}
+
+    public static final class Frame {
+        public final int requestId;
+        public final byte type;
+        public final byte flags;
+        public final byte[] payload;
+
+        Frame(int requestId, byte type, byte flags, byte[] payload) {
+            this.requestId = requestId;
+            this.type = type;
+            this.flags = flags;
+            this.payload = payload;
+        }
+
+        public String text() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * An ERROR frame from the peer. The response it ends is complete, so the connection can be
+     * used for the next request.
+     */
+    public static class RemoteException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public RemoteException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The mapper for frame payloads. Thread-safe.
+     */
+    public static ObjectMapper smileMapper() {
+        return smileMapper;
+    }
+
+    public static void writeFrame(DataOutputStream out, int requestId, byte type, byte flags,
+                                  byte[] payload, int offset, int length) throws IOException {
+        out.writeInt(length);
+        out.writeInt(requestId);
+        out.writeByte(type);
+        out.writeByte(flags);
+        out.write(payload, offset, length);
+    }
+
+    public static void writeFrame(DataOutputStream out, int requestId, byte type, byte flags, String text) throws IOException {
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        writeFrame(out, requestId, type, flags, payload, 0, payload.length);
+    }
+
+    /**
+     * Read the next frame. Throws EOFException if the connection ends between frames.
+     */
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        int requestId = in.readInt();
+        byte type = in.readByte();
+        byte flags = in.readByte();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(requestId, type, flags, payload);
+    }
+
+    /**
+     * Send a value as the response to a request, streamed chunk by chunk as it is encoded. If
+     * encoding fails part way, the response is ended with an ERROR frame and the exception is
+     * rethrown.
+     */
+    public static void writeValue(DataOutputStream out, int requestId, boolean deflate, Object value) throws IOException {
+        FrameOutputStream frames = new FrameOutputStream(out, requestId, deflate ? FLAG_DEFLATE : 0);
+        Deflater deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            OutputStream body = deflate ? new DeflaterOutputStream(frames, deflater, 8192) : frames;
+            smileMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(body, value);
+            // Finishes the Deflate stream and sends the END frame, only once encoding has succeeded
+            body.close();
+        } catch (IOException | RuntimeException e) {
+            if (!frames.isClosed()) {
+                writeFrame(out, requestId, ERROR, (byte) 0, "Error encoding response: " + e.getMessage());
+                out.flush();
+            }
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Read the response to a request as a value of the given type.
+     */
+    public static <T> T readValue(DataInputStream in, int requestId, Class<T> type) throws IOException {
+        try (InputStream body = openResponse(in, requestId)) {
+            return smileMapper.readValue(body, type);
+        }
+    }
+
+    /**
+     * Read the response to a request as a stream, decompressing it if the agent compressed it.
+     * An ERROR frame is thrown as a RemoteException from whichever read reaches it.
+     */
+    public static InputStream openResponse(DataInputStream in, int requestId) throws IOException {
+        FrameInputStream frames = new FrameInputStream(in, requestId);
+        if (!frames.isDeflated()) {
+            return frames;
+        }
+        return new InflaterInputStream(frames, new Inflater(), 8192) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+}
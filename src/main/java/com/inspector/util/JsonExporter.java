@@ -2,17 +2,28 @@ package com.inspector.util;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.inspector.model.ElementData;
 import com.inspector.model.ExplorationResult;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 public class JsonExporter {
     private final ObjectMapper mapper;
     
     public JsonExporter() {
+        this(ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * @param pool pool on which subtrees of the UI tree are encoded in parallel
+     */
+    public JsonExporter(ForkJoinPool pool) {
         this.mapper = new ObjectMapper();
         this.mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        this.mapper.registerModule(new SimpleModule().addSerializer(ElementData.class, new ParallelTreeSerializer(pool)));
     }
     
     public void exportToFile(ExplorationResult result, String filePath) throws IOException {
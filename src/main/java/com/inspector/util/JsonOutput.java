@@ -0,0 +1,151 @@
+package com.inspector.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.StreamWriteConstraints;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Streaming JSON output shared by the exporters, the agent and the UIA inspector.
+ *
+ * Generators write UTF-8 through Jackson's own buffer, so no BufferedWriter is needed, and
+ * escape every string properly (quotes, backslashes, control characters).
+ *
+ * The constraints of every Jackson factory here come from this class. Writing, and reading back
+ * files this tool wrote, nesting is only limited by the callers' own depth limits, not by
+ * Jackson's default guard. Documents read from another process are held to finite limits.
+ */
+public final class JsonOutput {
+
+    /** Nesting depth of a document read from another process: 1000 levels of an element tree. */
+    public static final int MAX_REMOTE_NESTING = 2000;
+    /** Length of a string in a document read from another process, e.g. an element's text. */
+    public static final int MAX_REMOTE_STRING_LENGTH = 16 * 1024 * 1024;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    static {
+        mapper.getFactory().setStreamWriteConstraints(writeConstraints());
+        mapper.getFactory().setStreamReadConstraints(localReadConstraints());
+    }
+
+    private JsonOutput() {
+    }
+
+    /**
+     * Constraints for writing trees, which every writer here does iteratively: no nesting limit.
+     */
+    public static StreamWriteConstraints writeConstraints() {
+        return StreamWriteConstraints.builder().maxNestingDepth(Integer.MAX_VALUE).build();
+    }
+
+    /**
+     * Constraints for reading documents this tool wrote itself: as deep and as long as written.
+     */
+    public static StreamReadConstraints localReadConstraints() {
+        return StreamReadConstraints.builder().maxNestingDepth(Integer.MAX_VALUE).maxStringLength(Integer.MAX_VALUE).build();
+    }
+
+    /**
+     * Constraints for reading documents from another process, e.g. over a socket: deep and long
+     * enough for any real tree, but finite.
+     */
+    public static StreamReadConstraints remoteReadConstraints() {
+        return StreamReadConstraints.builder()
+            .maxNestingDepth(MAX_REMOTE_NESTING)
+            .maxStringLength(MAX_REMOTE_STRING_LENGTH)
+            .build();
+    }
+
+    /**
+     * A generator writing to out, which is closed along with the generator. Values can be
+     * written with writeObject() as well, serialized like ObjectMapper would.
+     */
+    public static JsonGenerator createGenerator(OutputStream out, boolean pretty) throws IOException {
+        JsonGenerator generator = mapper.createGenerator(out);
+        if (pretty) {
+            generator.useDefaultPrettyPrinter();
+        }
+        return generator;
+    }
+
+    /**
+     * A generator writing to a new file, replacing any existing one.
+     */
+    public static JsonGenerator createGenerator(Path file, boolean pretty) throws IOException {
+        return createGenerator(Files.newOutputStream(file), pretty);
+    }
+
+    /**
+     * Write a field whose value is the JSON document in file, token by token, so that the
+     * document is never held in memory as a whole.
+     */
+    public static void copyFile(JsonGenerator gen, String field, Path file) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(file.toFile())) {
+            if (parser.nextToken() == null) {
+                throw new IOException("Empty JSON file: " + file);
+            }
+            gen.writeFieldName(field);
+            gen.copyCurrentStructure(parser);
+        }
+    }
+
+    /**
+     * Write a string field, or null.
+     */
+    public static void writeString(JsonGenerator gen, String field, String value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(field, value);
+        } else {
+            gen.writeNullField(field);
+        }
+    }
+
+    /**
+     * Write an array field of strings, an empty array for null.
+     */
+    public static void writeStrings(JsonGenerator gen, String field, List<String> values) throws IOException {
+        gen.writeArrayFieldStart(field);
+        if (values != null) {
+            for (String value : values) {
+                gen.writeString(value);
+            }
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * Write a "bounds" object field.
+     */
+    public static void writeBounds(JsonGenerator gen, int x, int y, int width, int height) throws IOException {
+        gen.writeObjectFieldStart("bounds");
+        gen.writeNumberField("x", x);
+        gen.writeNumberField("y", y);
+        gen.writeNumberField("width", width);
+        gen.writeNumberField("height", height);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Write a number field from its text, as a string if the text is not a number, or null.
+     */
+    public static void writeNumber(JsonGenerator gen, String field, String value) throws IOException {
+        if (value == null) {
+            gen.writeNullField(field);
+            return;
+        }
+        try {
+            gen.writeNumberField(field, new BigDecimal(value));
+        } catch (NumberFormatException e) {
+            gen.writeStringField(field, value);
+        }
+    }
+}
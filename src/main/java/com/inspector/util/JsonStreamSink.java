@@ -0,0 +1,179 @@
+package com.inspector.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.inspector.core.ElementSerializer;
+import com.inspector.core.ElementVisitor;
+import com.inspector.model.ElementData;
+import com.inspector.model.ExplorationResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ElementVisitor that writes exploration events straight to an OutputStream as JSON.
+ *
+ * The document has the same shape as a JsonExporter export of an ExplorationResult, except that
+ * "statistics" comes after "ui_tree" because it is only known once exploration has finished.
+ * Only the generator's buffer and one bit per open tree level are held in memory.
+ *
+ * Usage:
+ *   try (JsonStreamSink sink = new JsonStreamSink(out, appInfo, true)) {
+ *       explorer.explore(rootContext, sink);
+ *       sink.finish(statistics);
+ *   }
+ */
+public class JsonStreamSink implements ElementVisitor, Closeable {
+
+    private final JsonGenerator generator;
+    private final ExplorationResult.ApplicationInfo application;
+    private final BitSet childrenOpen = new BitSet();
+    private boolean started = false;
+    private int explorationDepth = 0;
+
+    public JsonStreamSink(OutputStream out, ExplorationResult.ApplicationInfo application, boolean pretty) throws IOException {
+        this.generator = JsonOutput.createGenerator(out, pretty);
+        this.application = application;
+    }
+
+    @Override
+    public void enterElement(ElementData element, int depth) {
+        try {
+            if (depth == 0) {
+                writeHeader(element);
+            } else if (!childrenOpen.get(depth - 1)) {
+                generator.writeArrayFieldStart("children");
+                childrenOpen.set(depth - 1);
+            }
+            generator.writeStartObject();
+            writeElementFields(generator, element);
+            explorationDepth = Math.max(explorationDepth, depth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void leaveElement(ElementData element, int depth) {
+        try {
+            if (!childrenOpen.get(depth)) {
+                generator.writeArrayFieldStart("children");
+            }
+            generator.writeEndArray();
+            childrenOpen.clear(depth);
+            writeTrailingFields(generator, element);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the statistics block and close the document. Must be called once exploration is done.
+     */
+    public void finish(Map<String, Object> statistics) throws IOException {
+        finish(statistics, false);
+    }
+
+    /**
+     * Like finish(statistics), also flagging the document as truncated when a traversal budget
+     * stopped the exploration.
+     */
+    public void finish(Map<String, Object> statistics, boolean truncated) throws IOException {
+        if (!started) {
+            writeHeader(null);
+            generator.writeNull();
+        }
+        generator.writeObjectField("statistics", statistics);
+        if (truncated) {
+            generator.writeBooleanField("truncated", true);
+        }
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * Deepest level written so far, 0 for a root-only tree.
+     */
+    public int getExplorationDepth() {
+        return explorationDepth;
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private void writeHeader(ElementData root) throws IOException {
+        application.setToolkit(ElementSerializer.detectToolkit(root));
+        generator.writeStartObject();
+        generator.writeObjectField("application", application);
+        generator.writeFieldName("ui_tree");
+        started = true;
+    }
+
+    /**
+     * Write an element's own properties up to its children in ElementData's
+     * serialization order, omitting nulls as ElementData's @JsonInclude does.
+     * JsonExporterTest compares this with Jackson's serialization of an element that has every
+     * property set, and fails for a property it does not set.
+     */
+    public static void writeElementFields(JsonGenerator gen, ElementData element) throws IOException {
+        writeString(gen, "name", element.getName());
+        writeString(gen, "role", element.getRole());
+        writeString(gen, "description", element.getDescription());
+        writeStrings(gen, "states", element.getStates());
+        ElementData.BoundsData bounds = element.getBounds();
+        if (bounds != null) {
+            gen.writeObjectFieldStart("bounds");
+            gen.writeNumberField("x", bounds.getX());
+            gen.writeNumberField("y", bounds.getY());
+            gen.writeNumberField("width", bounds.getWidth());
+            gen.writeNumberField("height", bounds.getHeight());
+            gen.writeEndObject();
+        }
+        if (element.getIndexInParent() != null) {
+            gen.writeNumberField("indexInParent", element.getIndexInParent());
+        }
+        if (element.getChildrenCount() != null) {
+            gen.writeNumberField("childrenCount", element.getChildrenCount());
+        }
+        writeString(gen, "text", element.getText());
+        writeString(gen, "value", element.getValue());
+        writeStrings(gen, "actions", element.getActions());
+        writeString(gen, "className", element.getClassName());
+        writeString(gen, "parentPath", element.getParentPath());
+        if (element.getHandle() != null) {
+            gen.writeNumberField("handle", element.getHandle());
+        }
+    }
+
+    /**
+     * Write the properties ElementData serializes after its children.
+     */
+    public static void writeTrailingFields(JsonGenerator gen, ElementData element) throws IOException {
+        if (element.getElidedChildren() != null) {
+            gen.writeNumberField("elidedChildren", element.getElidedChildren());
+        }
+    }
+
+    private static void writeString(JsonGenerator gen, String field, String value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(field, value);
+        }
+    }
+
+    private static void writeStrings(JsonGenerator gen, String field, List<String> values) throws IOException {
+        if (values != null) {
+            gen.writeArrayFieldStart(field);
+            for (String value : values) {
+                gen.writeString(value);
+            }
+            gen.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.inspector.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Output files of inspections, which may run side by side.
+ *
+ * An inspection writes its result exactly once, to a temp file of its own next to the
+ * destination, and renames it into place when complete: readers never see a partial file, two
+ * writers never share a file, and the destination is never copied. Inspections without a
+ * destination of the user's get a session file of their own instead of a shared, fixed name.
+ */
+public final class OutputFiles {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private OutputFiles() {
+    }
+
+    /**
+     * A new, not yet existing path in the temp directory for one inspection of process pid.
+     */
+    public static Path newSessionOutput(String pid) {
+        return newSessionOutput(Paths.get(System.getProperty("java.io.tmpdir")), pid);
+    }
+
+    /**
+     * As newSessionOutput(pid), in the given directory.
+     */
+    public static Path newSessionOutput(Path directory, String pid) {
+        return directory.resolve("inspector-" + pid + "-" + UUID.randomUUID() + ".json").toAbsolutePath();
+    }
+
+    /**
+     * A new, empty temp file in the directory of target, for writing what publish() then moves
+     * over target.
+     */
+    public static Path createTempSibling(Path target) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        return Files.createTempFile(absolute.getParent(), absolute.getFileName() + ".", TEMP_SUFFIX);
+    }
+
+    /**
+     * A temp file next to target, to be written and then published over target by close(). Open
+     * it before its writer in one try-with-resources, and close the writer before complete(), so
+     * that a write or flush that fails is never published:
+     *
+     *   try (PendingOutput output = OutputFiles.begin(target);
+     *        JsonGenerator gen = JsonOutput.createGenerator(output.getPath(), pretty)) {
+     *       ...
+     *       gen.close();
+     *       output.complete();
+     *   }
+     */
+    public static PendingOutput begin(Path target) throws IOException {
+        return new PendingOutput(createTempSibling(target), target);
+    }
+
+    /**
+     * An output being written; see begin(). Closed after complete(), the temp file replaces the
+     * target; otherwise, e.g. when writing failed, it is deleted and the target left as it was.
+     */
+    public static final class PendingOutput implements Closeable {
+        private final Path temp;
+        private final Path target;
+        private boolean complete;
+
+        private PendingOutput(Path temp, Path target) {
+            this.temp = temp;
+            this.target = target;
+        }
+
+        public Path getPath() {
+            return temp;
+        }
+
+        /**
+         * Mark the temp file as fully written.
+         */
+        public void complete() {
+            complete = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (complete) {
+                    publish(temp, target);
+                }
+            } finally {
+                // Left only by a failed write or move
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Move a finished temp file over target in one step, where the file system can.
+     */
+    public static void publish(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
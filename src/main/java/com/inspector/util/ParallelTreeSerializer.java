@@ -0,0 +1,151 @@
+package com.inspector.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.inspector.model.ElementData;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Serializes an ElementData tree with its subtrees encoded concurrently on a ForkJoinPool.
+ *
+ * Each task writes its subtree to a string and the results are spliced into the parent with
+ * writeRawValue. A task forks sibling subtrees only while the pool is short of queued work. When
+ * pretty printing, every piece is indented for where it ends up, so the output is the same as a
+ * plain ObjectMapper serialization.
+ */
+public class ParallelTreeSerializer extends StdSerializer<ElementData> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final JsonFactory factory = JsonFactory.builder()
+        .streamWriteConstraints(JsonOutput.writeConstraints())
+        .build();
+
+    private final ForkJoinPool pool;
+
+    public ParallelTreeSerializer(ForkJoinPool pool) {
+        super(ElementData.class);
+        this.pool = pool;
+    }
+
+    @Override
+    public void serialize(ElementData value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        boolean pretty = gen.getPrettyPrinter() != null;
+        // DefaultPrettyPrinter indents per enclosing object; arrays are written inline
+        int nesting = 0;
+        for (JsonStreamContext context = gen.getOutputContext(); context != null; context = context.getParent()) {
+            if (context.inObject()) {
+                nesting++;
+            }
+        }
+        try {
+            gen.writeRawValue(pool.invoke(new EncodeTask(value, nesting, pretty)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // DefaultPrettyPrinter that starts out indented as if nesting objects were already open
+    private static final class OffsetPrettyPrinter extends DefaultPrettyPrinter {
+        private static final long serialVersionUID = 1L;
+
+        OffsetPrettyPrinter(int nesting) {
+            _nesting = nesting;
+        }
+    }
+
+    // An element still being written: where its next child is
+    private static final class Frame {
+        final ElementData element;
+        final List<EncodeTask> forked;
+        final int nesting;
+        int next = 0;
+
+        Frame(ElementData element, List<EncodeTask> forked, int nesting) {
+            this.element = element;
+            this.forked = forked;
+            this.nesting = nesting;
+        }
+    }
+
+    private static final class EncodeTask extends RecursiveTask<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final ElementData root;
+        private final int nesting;
+        private final boolean pretty;
+
+        EncodeTask(ElementData root, int nesting, boolean pretty) {
+            this.root = root;
+            this.nesting = nesting;
+            this.pretty = pretty;
+        }
+
+        @Override
+        protected String compute() {
+            StringWriter out = new StringWriter();
+            try (JsonGenerator gen = factory.createGenerator(out)) {
+                if (pretty) {
+                    gen.setPrettyPrinter(new OffsetPrettyPrinter(nesting));
+                }
+                Deque<Frame> stack = new ArrayDeque<>();
+                stack.push(start(gen, root, nesting));
+                while (!stack.isEmpty()) {
+                    Frame frame = stack.peek();
+                    List<ElementData> children = frame.element.getChildren();
+                    if (frame.next == children.size()) {
+                        gen.writeEndArray();
+                        JsonStreamSink.writeTrailingFields(gen, frame.element);
+                        gen.writeEndObject();
+                        stack.pop();
+                        continue;
+                    }
+                    int index = frame.next++;
+                    EncodeTask task = frame.forked != null ? frame.forked.get(index) : null;
+                    if (task != null) {
+                        gen.writeRawValue(task.join());
+                    } else {
+                        stack.push(start(gen, children.get(index), frame.nesting + 1));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toString();
+        }
+
+        // Write an element up to its children array and fork its later children if workers are idle
+        private Frame start(JsonGenerator gen, ElementData element, int nesting) throws IOException {
+            gen.writeStartObject();
+            JsonStreamSink.writeElementFields(gen, element);
+            gen.writeArrayFieldStart("children");
+
+            List<ElementData> children = element.getChildren();
+            List<EncodeTask> forked = null;
+            if (children.size() > 1 && getSurplusQueuedTaskCount() < 2) {
+                // Children sit inside this object; the "children" array adds no indentation
+                forked = new ArrayList<>(children.size());
+                forked.add(null);
+                for (int i = 1; i < children.size(); i++) {
+                    EncodeTask task = new EncodeTask(children.get(i), nesting + 1, pretty);
+                    task.fork();
+                    forked.add(task);
+                }
+            }
+            return new Frame(element, forked, nesting);
+        }
+    }
+}
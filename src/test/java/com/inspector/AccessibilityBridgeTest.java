@@ -0,0 +1,121 @@
+package com.inspector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.inspector.agent.AccessibilityBridge;
+import com.inspector.core.AgentSession;
+import com.inspector.model.ElementData;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessibilityBridgeTest {
+
+    @Test
+    public void testLazyExpansionByHandle() throws Exception {
+        JPanel panel = SampleComponents.createSamplePanel();
+        int rootHandle = AccessibilityBridge.handleOf(panel.getAccessibleContext());
+        assertEquals(rootHandle, AccessibilityBridge.handleOf(panel.getAccessibleContext()));
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread agent = new Thread(() -> {
+                try {
+                    new AccessibilityBridge(server.accept()).run();
+                } catch (IOException e) {
+                    // Test ended
+                }
+            });
+            agent.setDaemon(true);
+            agent.start();
+
+            try (AgentSession session = AgentSession.open("test", server.getLocalPort())) {
+                // One level: the form, with a handle but without its children
+                ElementData root = session.request("EXPAND " + rootHandle + " 1", ElementData.class);
+                assertEquals(Integer.valueOf(rootHandle), root.getHandle());
+                assertEquals(1, root.getChildren().size());
+                ElementData form = root.getChildren().get(0);
+                assertNotNull(form.getHandle());
+                assertEquals(Integer.valueOf(4), form.getChildrenCount());
+                assertTrue(form.getChildren().isEmpty());
+
+                ElementData expanded = session.request("EXPAND " + form.getHandle() + " 1 layout", ElementData.class);
+                assertEquals(4, expanded.getChildren().size());
+                assertNull(expanded.getChildren().get(2).getName());
+                ElementData button = session.request("GET " + expanded.getChildren().get(2).getHandle(), ElementData.class);
+                assertEquals("Submit", button.getName());
+                assertTrue(button.getChildren().isEmpty());
+
+                assertEquals("[]", session.request("EXPLORE_ROOT"));
+                assertThrows(IOException.class, () -> session.request("GET 999999"));
+                assertThrows(IOException.class, () -> session.request("EXPAND x 1"));
+            }
+        }
+    }
+
+    @Test
+    public void testSubscriptionPushesCoalescedChanges() throws Exception {
+        JPanel panel = SampleComponents.createSamplePanel();
+        JPanel form = (JPanel) panel.getComponent(0);
+        JButton button = (JButton) form.getComponent(2);
+        int rootHandle = AccessibilityBridge.handleOf(panel.getAccessibleContext());
+        int formHandle = AccessibilityBridge.handleOf(form.getAccessibleContext());
+        int buttonHandle = AccessibilityBridge.handleOf(button.getAccessibleContext());
+        ObjectMapper mapper = new ObjectMapper();
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread agent = new Thread(() -> {
+                try {
+                    new AccessibilityBridge(server.accept()).run();
+                } catch (IOException e) {
+                    // Test ended
+                }
+            });
+            agent.setDaemon(true);
+            agent.start();
+
+            try (AgentSession session = AgentSession.open("test", server.getLocalPort())) {
+                ElementData root = session.request("SUBSCRIBE " + rootHandle + " 20", ElementData.class);
+                assertEquals(Integer.valueOf(formHandle), root.getChildren().get(0).getHandle());
+
+                // Two events on the same element make one change; captures run on the EDT too
+                SwingUtilities.invokeAndWait(() -> {
+                    button.setText("Send");
+                    button.setText("Sent");
+                });
+                JsonNode changes = mapper.readTree(session.nextEvent());
+                assertEquals(1, changes.size());
+                assertEquals("changed", changes.get(0).get("type").asText());
+                assertEquals(buttonHandle, changes.get(0).get("handle").asInt());
+                assertEquals("Sent", changes.get(0).get("element").get("name").asText());
+
+                JCheckBox checkBox = new JCheckBox("Remember me");
+                SwingUtilities.invokeAndWait(() -> form.add(checkBox));
+                changes = mapper.readTree(session.nextEvent());
+                JsonNode added = null;
+                for (JsonNode change : changes) {
+                    if (change.get("type").asText().equals("added")) {
+                        added = change;
+                    }
+                }
+                assertNotNull(added);
+                assertEquals(formHandle, added.get("parent").asInt());
+                assertEquals("check box", added.get("element").get("role").asText());
+
+                SwingUtilities.invokeAndWait(() -> form.remove(checkBox));
+                changes = mapper.readTree(session.nextEvent());
+                boolean removed = false;
+                for (JsonNode change : changes) {
+                    removed |= change.get("type").asText().equals("removed")
+                        && change.get("handle").asInt() == added.get("handle").asInt();
+                }
+                assertTrue(removed);
+
+                assertEquals("UNSUBSCRIBED", session.request("UNSUBSCRIBE"));
+                assertThrows(IOException.class, () -> session.request("UNSUBSCRIBE"));
+            }
+        }
+    }
+}
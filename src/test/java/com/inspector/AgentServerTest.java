@@ -0,0 +1,103 @@
+package com.inspector;
+
+import com.inspector.agent.AgentServer;
+import com.inspector.core.AgentSession;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgentServerTest {
+
+    @Test
+    public void testAgentServerLimitsConnections() throws Exception {
+        AgentServer server = new AgentServer(0, InetAddress.getLoopbackAddress(), 1, 300);
+        String token = AgentSession.newToken();
+        server.grant(token, Path.of(System.getProperty("java.io.tmpdir")));
+        server.start();
+        try (Socket first = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+             Socket second = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            BufferedReader firstIn = new BufferedReader(new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter firstOut = new PrintWriter(new OutputStreamWriter(first.getOutputStream(), StandardCharsets.UTF_8), true);
+            firstOut.println(AgentSession.AUTH_COMMAND + " " + token);
+            assertEquals("OK authorized", firstIn.readLine());
+            firstOut.println("LIST_WINDOWS");
+            assertEquals("OK []", firstIn.readLine());
+
+            BufferedReader secondIn = new BufferedReader(new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("ERROR Too many connections", secondIn.readLine());
+            assertNull(secondIn.readLine());
+
+            // An idle connection is closed and frees its slot
+            assertNull(firstIn.readLine());
+            try (Socket third = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                BufferedReader thirdIn = new BufferedReader(new InputStreamReader(third.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter thirdOut = new PrintWriter(new OutputStreamWriter(third.getOutputStream(), StandardCharsets.UTF_8), true);
+                thirdOut.println(AgentSession.AUTH_COMMAND + " " + token);
+                assertEquals("OK authorized", thirdIn.readLine());
+                thirdOut.println("LIST_WINDOWS");
+                assertEquals("OK []", thirdIn.readLine());
+                assertEquals(1, server.getActiveConnections());
+
+                server.shutdown();
+                assertNull(thirdIn.readLine());
+                assertFalse(server.isRunning());
+                assertEquals(0, server.getActiveConnections());
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void testAgentServerAdmitsOnlyGrantedTokens() throws Exception {
+        Path granted = Files.createTempDirectory("inspector-grant");
+        Path elsewhere = Files.createTempDirectory("inspector-other");
+        AgentServer server = new AgentServer(0, InetAddress.getLoopbackAddress(), 2, 5000);
+        String token = AgentSession.newToken();
+        server.grant(token, granted);
+        server.start();
+        try {
+            assertThrows(IOException.class, () -> AgentSession.open("test", server.getPort(), AgentSession.newToken()));
+            assertNull(AgentSession.get("test"));
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+                out.println("LIST_WINDOWS");
+                assertTrue(in.readLine().startsWith("ERROR"));
+                assertNull(in.readLine());
+            }
+
+            try (AgentSession session = AgentSession.open("test", server.getPort(), token)) {
+                Path inside = granted.resolve("snapshot.json");
+                assertEquals(inside.toString(), session.snapshot("fields:layout;output:" + inside));
+                assertTrue(Files.exists(inside));
+                Path outside = elsewhere.resolve("snapshot.json");
+                assertThrows(IOException.class, () -> session.snapshot("fields:layout;output:" + outside));
+                assertThrows(IOException.class,
+                    () -> session.snapshot("output:" + granted.resolve("..").resolve(elsewhere.getFileName()).resolve("x.json")));
+                assertFalse(Files.exists(outside));
+                // Without an output, a file of its own in the granted directory
+                assertEquals(granted, Path.of(session.snapshot("fields:layout")).getParent());
+            }
+        } finally {
+            server.shutdown();
+            for (Path dir : new Path[] {granted, elsewhere}) {
+                try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                    files.forEach(file -> file.toFile().delete());
+                }
+                Files.delete(dir);
+            }
+        }
+    }
+}
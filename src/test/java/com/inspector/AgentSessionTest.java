@@ -0,0 +1,162 @@
+package com.inspector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.inspector.agent.AccessibilityBridge;
+import com.inspector.core.AgentSession;
+import com.inspector.util.JsonOutput;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgentSessionTest {
+
+    @Test
+    public void testAgentSessionServesRepeatInspections() throws Exception {
+        File output = File.createTempFile("inspector-session", ".json");
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread agent = new Thread(() -> {
+                try {
+                    new AccessibilityBridge(server.accept()).run();
+                } catch (IOException e) {
+                    // Test ended
+                }
+            });
+            agent.setDaemon(true);
+            agent.start();
+
+            AgentSession session = AgentSession.open("test", server.getLocalPort());
+            assertSame(session, AgentSession.get("test"));
+            for (int i = 0; i < 2; i++) {
+                assertTrue(output.delete());
+                assertEquals(output.getAbsolutePath(), session.snapshot("fields:layout;output:" + output.getAbsolutePath()));
+                assertTrue(output.exists());
+            }
+            // Headless, so the agent finds no windows; the report is still a JSON document
+            JsonNode report = new ObjectMapper().readTree(output);
+            assertEquals(0, report.get("totalWindows").asInt());
+            assertTrue(report.get("windows").isArray());
+            // An error reply fails the request but keeps the session
+            assertThrows(IOException.class, () -> session.request("UNKNOWN"));
+            assertSame(session, AgentSession.get("test"));
+
+            session.close();
+            assertNull(AgentSession.get("test"));
+        } finally {
+            output.delete();
+        }
+    }
+
+    @Test
+    public void testPendingEventsAreBounded() throws Exception {
+        int pushed = AgentSession.MAX_PENDING_EVENTS + 5;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread agent = new Thread(() -> {
+                try (Socket socket = server.accept()) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                    in.readLine();
+                    for (int i = 0; i < pushed; i++) {
+                        out.println("EVENT [" + i + "]");
+                    }
+                    out.println("OK done");
+                    out.flush();
+                    in.readLine();
+                } catch (IOException e) {
+                    // Test ended
+                }
+            });
+            agent.setDaemon(true);
+            agent.start();
+
+            try (AgentSession session = AgentSession.open("test", server.getLocalPort())) {
+                assertEquals("done", session.request("LIST_WINDOWS"));
+                assertEquals(5, session.getDroppedEvents());
+                assertEquals("[5]", session.nextEvent());
+            }
+        }
+    }
+
+    @Test
+    public void testAgentSessionUpgradesToBinary() throws Exception {
+        File output = File.createTempFile("inspector-session", ".json");
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread agent = new Thread(() -> {
+                try {
+                    new AccessibilityBridge(server.accept()).run();
+                } catch (IOException e) {
+                    // Test ended
+                }
+            });
+            agent.setDaemon(true);
+            agent.start();
+
+            AgentSession session = AgentSession.open("test", server.getLocalPort());
+            assertTrue(session.upgradeToBinary(true));
+            assertTrue(session.isBinary());
+            assertEquals("[]", session.request("LIST_WINDOWS"));
+            // An error frame fails the request but keeps the session
+            assertThrows(IOException.class, () -> session.request("EXPLORE 20 false"));
+            assertSame(session, AgentSession.get("test"));
+            assertTrue(output.delete());
+            assertEquals(output.getAbsolutePath(), session.snapshot("fields:layout;output:" + output.getAbsolutePath()));
+            assertTrue(output.exists());
+
+            session.close();
+        } finally {
+            output.delete();
+        }
+    }
+
+    @Test
+    public void testRepliesAreReadWithRemoteConstraints() throws Exception {
+        // Deeper than Jackson's default limit of 1000, but within MAX_REMOTE_NESTING
+        String deep = nested(1500);
+        String tooDeep = nested(JsonOutput.MAX_REMOTE_NESTING + 1);
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread agent = new Thread(() -> {
+                try (Socket socket = server.accept()) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+                    in.readLine();
+                    out.println("OK " + deep);
+                    in.readLine();
+                    out.println("OK " + tooDeep);
+                    in.readLine();
+                } catch (IOException e) {
+                    // Test ended
+                }
+            });
+            agent.setDaemon(true);
+            agent.start();
+
+            try (AgentSession session = AgentSession.open("test", server.getLocalPort())) {
+                assertTrue(session.request("EXPLORE", JsonNode.class).isArray());
+                assertThrows(IOException.class, () -> session.request("EXPLORE", JsonNode.class));
+            }
+        }
+    }
+
+    private static String nested(int depth) {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            json.append('[');
+        }
+        for (int i = 0; i < depth; i++) {
+            json.append(']');
+        }
+        return json.toString();
+    }
+}
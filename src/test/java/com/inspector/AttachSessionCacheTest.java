@@ -0,0 +1,97 @@
+package com.inspector;
+
+import com.inspector.core.AttachSessionCache;
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.spi.AttachProvider;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AttachSessionCacheTest {
+
+    // A VirtualMachine that only counts detaches
+    private static final class FakeVirtualMachine extends VirtualMachine {
+        final AtomicInteger detaches;
+
+        FakeVirtualMachine(String pid, AtomicInteger detaches) {
+            super(AttachProvider.providers().get(0), pid);
+            this.detaches = detaches;
+        }
+
+        @Override public void detach() { detaches.incrementAndGet(); }
+        @Override public void loadAgentLibrary(String agentLibrary, String options) { }
+        @Override public void loadAgentPath(String agentPath, String options) { }
+        @Override public void loadAgent(String agent, String options) { }
+        @Override public java.util.Properties getSystemProperties() { return new java.util.Properties(); }
+        @Override public java.util.Properties getAgentProperties() { return new java.util.Properties(); }
+        @Override public void startManagementAgent(java.util.Properties agentProperties) { }
+        @Override public String startLocalManagementAgent() { return null; }
+    }
+
+    @Test
+    public void testAttachSessionCacheReusesAndDetachesWhenIdle() throws Exception {
+        AtomicInteger attaches = new AtomicInteger();
+        AtomicInteger detaches = new AtomicInteger();
+        try (AttachSessionCache cache = new AttachSessionCache(200, pid -> {
+                 attaches.incrementAndGet();
+                 return new FakeVirtualMachine(pid, detaches);
+             })) {
+            try (AttachSessionCache.Lease lease = cache.acquire("100")) {
+                assertFalse(lease.isReused());
+            }
+            try (AttachSessionCache.Lease lease = cache.acquire("100")) {
+                assertTrue(lease.isReused());
+                assertEquals("100", lease.vm().id());
+            }
+            assertEquals(1, attaches.get());
+
+            // A failed operation drops the VirtualMachine
+            try (AttachSessionCache.Lease lease = cache.acquire("100")) {
+                lease.invalidate();
+            }
+            assertEquals(1, detaches.get());
+            assertEquals(0, cache.size());
+            cache.acquire("100").close();
+            assertEquals(2, attaches.get());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.size() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, cache.size());
+            assertEquals(2, detaches.get());
+            Map<String, Object> stats = cache.getStatistics();
+            assertEquals(2, stats.get("attaches"));
+            assertEquals(2, stats.get("reuses"));
+            assertEquals(2, stats.get("detaches"));
+        }
+    }
+
+    @Test
+    public void testAttachSessionCacheCloseDetachesLeasedVms() throws Exception {
+        AtomicInteger detaches = new AtomicInteger();
+        AttachSessionCache cache = new AttachSessionCache(60000, pid -> new FakeVirtualMachine(pid, detaches));
+
+        // A call failing with an IOException drops the VirtualMachine
+        assertThrows(IOException.class, () -> cache.withVm("100", vm -> {
+            throw new IOException("Target gone");
+        }));
+        assertEquals(1, detaches.get());
+        assertEquals("200", cache.withVm("200", VirtualMachine::id));
+        assertEquals(1, cache.getStatistics().get("attached"));
+
+        AttachSessionCache.Lease leased = cache.acquire("300");
+        cache.close();
+        assertEquals(2, detaches.get());
+        assertThrows(IllegalStateException.class, () -> cache.acquire("200"));
+        leased.close();
+        leased.close();
+        assertEquals(3, detaches.get());
+        assertEquals(0, cache.getStatistics().get("attached"));
+    }
+}
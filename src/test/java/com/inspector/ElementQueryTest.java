@@ -0,0 +1,79 @@
+package com.inspector;
+
+import com.inspector.agent.AccessibilityBridge;
+import com.inspector.core.AgentSession;
+import com.inspector.core.ElementQuery;
+import com.inspector.core.ExtractionProfile;
+import com.inspector.core.RawElement;
+import com.inspector.core.Selector;
+import com.inspector.core.SnapshotProcessor;
+import com.inspector.model.ElementData;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ElementQueryTest {
+
+    @Test
+    public void testSelectorQueryReturnsOnlyMatches() throws Exception {
+        JPanel panel = SampleComponents.createSamplePanel();
+        ElementQuery query = new ElementQuery(Selector.parse("panel > push_button[name=Submit]"), 20, false,
+                                              ExtractionProfile.STRUCTURE);
+        List<RawElement> matches = query.find(panel.getAccessibleContext());
+        assertEquals(1, matches.size());
+        assertEquals("Submit", SnapshotProcessor.toElementData(matches.get(0)).getName());
+        assertTrue(SnapshotProcessor.toElementData(matches.get(0)).getChildren().isEmpty());
+
+        query = new ElementQuery(Selector.parse("panel text[state=editable]"), 20, false,
+                                 ExtractionProfile.STRUCTURE);
+        assertEquals(2, query.find(panel.getAccessibleContext()).size());
+        query = new ElementQuery(Selector.parse("*[name~=\"^Sub\\w+$\"]"), 20, false, ExtractionProfile.STRUCTURE);
+        assertEquals(1, query.find(panel.getAccessibleContext()).size());
+
+        // Anchored: only the levels the selector names are read
+        query = new ElementQuery(Selector.parse("> panel > label"), 20, false, ExtractionProfile.STRUCTURE);
+        assertEquals(1, query.find(panel.getAccessibleContext()).size());
+        assertTrue(query.getVisitedElements() <= 6, "visited " + query.getVisitedElements());
+
+        query = new ElementQuery(Selector.parse("text"), 20, false, ExtractionProfile.STRUCTURE);
+        query.setLimit(1);
+        assertEquals(1, query.find(panel.getAccessibleContext()).size());
+        assertTrue(query.isLimitReached());
+
+        assertThrows(IllegalArgumentException.class, () -> Selector.parse("panel >"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.parse("push_button[size=2]"));
+        assertThrows(IllegalArgumentException.class, () -> Selector.parse("[state=bogus]"));
+
+        int rootHandle = AccessibilityBridge.handleOf(panel.getAccessibleContext());
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread agent = new Thread(() -> {
+                try {
+                    new AccessibilityBridge(server.accept()).run();
+                } catch (IOException e) {
+                    // Test ended
+                }
+            });
+            agent.setDaemon(true);
+            agent.start();
+
+            try (AgentSession session = AgentSession.open("test", server.getLocalPort())) {
+                ElementData[] found = session.request("QUERY " + rootHandle + " 10 50 structure panel push_button",
+                                                      ElementData[].class);
+                assertEquals(1, found.length);
+                assertNotNull(found[0].getHandle());
+                assertEquals("Submit", session.request("GET " + found[0].getHandle(), ElementData.class).getName());
+                // The button is two levels below the root
+                assertEquals("[]", session.request("QUERY " + rootHandle + " 10 1 structure panel push_button"));
+                assertEquals("[]", session.request("QUERY " + rootHandle + " 10 50 structure slider"));
+                assertThrows(IOException.class, () -> session.request("QUERY " + rootHandle + " 10 50 all panel >"));
+                assertThrows(IOException.class, () -> session.request("QUERY " + rootHandle + " 10 structure panel"));
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.inspector;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.inspector.core.FleetInspection;
+import com.inspector.util.JsonOutput;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FleetInspectionTest {
+
+    @Test
+    public void testFleetInspectionBoundsConcurrencyAndTimesOut() throws Exception {
+        Path dir = Files.createTempDirectory("fleet");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        FleetInspection fleet = new FleetInspection(2, 300);
+        List<Integer> reported = Collections.synchronizedList(new ArrayList<>());
+        fleet.setListener(result -> reported.add(result.getPid()));
+
+        List<FleetInspection.Result> results = fleet.run(Arrays.asList(1, 2, 3, 4, 5, 6),
+            pid -> dir.resolve(pid + ".json"), (pid, output) -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    if (pid == 3) {
+                        Thread.sleep(10000);
+                    } else if (pid == 4) {
+                        throw new IOException("Attach refused");
+                    }
+                    Thread.sleep(20);
+                    Files.write(output, ("{\"pid\":" + pid + "}").getBytes(StandardCharsets.UTF_8));
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+
+        assertEquals(6, results.size());
+        assertEquals(6, reported.size());
+        assertTrue(maxRunning.get() <= 2, "ran " + maxRunning.get() + " at once");
+        assertEquals(FleetInspection.Status.OK, results.get(0).getStatus());
+        assertEquals(FleetInspection.Status.TIMED_OUT, results.get(2).getStatus());
+        assertEquals(FleetInspection.Status.FAILED, results.get(3).getStatus());
+        assertEquals("Attach refused", results.get(3).getError());
+        assertEquals(5, results.get(4).getPid());
+        assertTrue(fleet.getWallNanos() < TimeUnit.SECONDS.toNanos(5));
+        Map<String, Object> stats = fleet.statistics(results);
+        assertEquals(4L, stats.get("ok"));
+        assertEquals(1L, stats.get("timed_out"));
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try (JsonGenerator gen = JsonOutput.createGenerator(line, false)) {
+            gen.writeStartObject();
+            JsonOutput.copyFile(gen, "result", results.get(0).getOutput());
+            gen.writeEndObject();
+        }
+        assertEquals("{\"result\":{\"pid\":1}}", line.toString("UTF-8"));
+    }
+
+    @Test
+    public void testTimedOutInspectionCannotWriteItsOutput() throws Exception {
+        Path dir = Files.createTempDirectory("fleet");
+        Path output = dir.resolve("7.json");
+        CountDownLatch written = new CountDownLatch(1);
+        FleetInspection fleet = new FleetInspection(1, 100);
+        List<FleetInspection.Result> results = fleet.run(Collections.singletonList(7), pid -> output, (pid, attempt) -> {
+            // Ignores the interrupt, as an attach blocked in the target does
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(400);
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            Files.write(attempt, "{\"late\":true}".getBytes(StandardCharsets.UTF_8));
+            written.countDown();
+        });
+
+        assertEquals(FleetInspection.Status.TIMED_OUT, results.get(0).getStatus());
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(Files.exists(output));
+    }
+}
@@ -0,0 +1,54 @@
+package com.inspector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+import com.inspector.util.FrameProtocol;
+import com.inspector.util.JsonOutput;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameProtocolTest {
+
+    @Test
+    public void testFramedProtocolRoundTrip() throws Exception {
+        ElementData tree = new UITreeExplorer(20, true).explore(SampleComponents.createSamplePanel().getAccessibleContext());
+        ObjectMapper mapper = new ObjectMapper();
+        for (boolean deflate : new boolean[] {false, true}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            FrameProtocol.writeValue(out, 7, deflate, tree);
+            FrameProtocol.writeFrame(out, 8, FrameProtocol.ERROR, (byte) 0, "failed");
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            ElementData copy = FrameProtocol.readValue(in, 7, ElementData.class);
+            assertEquals(mapper.writeValueAsString(tree), mapper.writeValueAsString(copy));
+            assertThrows(FrameProtocol.RemoteException.class, () -> FrameProtocol.readValue(in, 8, ElementData.class));
+        }
+    }
+
+    @Test
+    public void testFramesFromPeerAreBoundedInNesting() throws Exception {
+        List<Object> nested = new ArrayList<>();
+        List<Object> innermost = nested;
+        for (int i = 0; i < JsonOutput.MAX_REMOTE_NESTING + 10; i++) {
+            List<Object> next = new ArrayList<>();
+            innermost.add(next);
+            innermost = next;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Written without a limit, as the agent writes its trees
+        FrameProtocol.writeValue(new DataOutputStream(bytes), 1, false, nested);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThrows(com.fasterxml.jackson.core.exc.StreamConstraintsException.class,
+            () -> FrameProtocol.readValue(in, 1, Object.class));
+    }
+}
@@ -0,0 +1,56 @@
+package com.inspector;
+
+import com.inspector.agent.JavaFXNodeAccessors;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JavaFXNodeAccessorsTest {
+
+    // Stand-ins for JavaFX nodes: the accessors only need the getters, not JavaFX itself
+    public static class FakeBounds {
+        public double getMinX() { return 1.5; }
+        public double getMinY() { return 2; }
+        public double getWidth() { return 30.9; }
+        public double getHeight() { return 40; }
+    }
+
+    public static class FakeNode {
+        private final List<Object> children = new ArrayList<>();
+        public String getId() { return "node"; }
+        public Object getBoundsInParent() { return new FakeBounds(); }
+        public List<Object> getChildrenUnmodifiable() { return children; }
+    }
+
+    public static class FakeLabel extends FakeNode {
+        public String getText() { return "Label text"; }
+    }
+
+    private static class PrivateLabel extends FakeLabel {
+        @Override
+        public String getText() { return "Private text"; }
+    }
+
+    @Test
+    public void testJavaFXAccessorsAreResolvedPerClass() throws Exception {
+        FakeNode node = new FakeNode();
+        node.getChildrenUnmodifiable().add(new FakeLabel());
+        JavaFXNodeAccessors accessors = JavaFXNodeAccessors.of(node);
+        assertSame(accessors, JavaFXNodeAccessors.of(new FakeNode()));
+
+        assertEquals("node", accessors.getId(node));
+        assertArrayEquals(new int[] {1, 2, 30, 40}, accessors.getBoundsInParent(node));
+        assertNull(accessors.getText(node));
+        assertEquals(1, accessors.getChildren(node).size());
+        assertEquals("Label text", JavaFXNodeAccessors.of(new FakeLabel()).getText(new FakeLabel()));
+        // Private classes are read through their nearest public superclass
+        assertEquals("Private text", JavaFXNodeAccessors.of(new PrivateLabel()).getText(new PrivateLabel()));
+
+        JavaFXNodeAccessors none = JavaFXNodeAccessors.of("not a node");
+        assertThrows(NoSuchMethodException.class, () -> none.getId("not a node"));
+        assertNull(none.getChildren("not a node"));
+    }
+}
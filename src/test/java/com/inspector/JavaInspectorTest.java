@@ -0,0 +1,31 @@
+package com.inspector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.inspector.core.FleetInspection;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JavaInspectorTest {
+
+    @Test
+    public void testUnreadableFleetResultBecomesFailedRecord() throws Exception {
+        Path dir = Files.createTempDirectory("fleet");
+        FleetInspection.Result ok = new FleetInspection(1, 5000).run(Collections.singletonList(9),
+            pid -> dir.resolve(pid + ".json"),
+            (pid, attempt) -> Files.write(attempt, "{}".getBytes(StandardCharsets.UTF_8))).get(0);
+        assertEquals(FleetInspection.Status.OK, ok.getStatus());
+        Files.delete(ok.getOutput());
+        JsonNode record = new ObjectMapper().readTree(JavaInspector.fleetRecord(ok));
+        assertEquals("failed", record.get("status").asText());
+        assertEquals(9, record.get("pid").asInt());
+        assertTrue(record.get("error").asText().startsWith("Cannot read result"));
+        assertFalse(record.has("result"));
+    }
+}
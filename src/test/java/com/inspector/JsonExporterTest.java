@@ -0,0 +1,91 @@
+package com.inspector;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.inspector.core.ElementSerializer;
+import com.inspector.core.RawElement;
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+import com.inspector.model.ExplorationResult;
+import com.inspector.util.JsonExporter;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonExporterTest {
+
+    @Test
+    public void testParallelExportMatchesSequentialSerialization() throws Exception {
+        JPanel panel = new JPanel();
+        for (int i = 0; i < 50; i++) {
+            panel.add(SampleComponents.createSamplePanel());
+        }
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        RawElement capture = explorer.capture(panel.getAccessibleContext());
+        assertEquals("panel", capture.getRoleName());
+        assertEquals(50, capture.getChildren().size());
+
+        ElementData root = explorer.process(capture);
+        assertEquals(101, explorer.getElementCounts().get("panel"));
+        ExplorationResult result = ElementSerializer.createResult(root, "1", "Sample",
+            explorer.getElementCounts(), explorer.getTextStrategyCounts(), explorer.getTotalElements(), 0);
+
+        ObjectMapper sequential = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        assertEquals(sequential.writeValueAsString(result),
+            new JsonExporter(new ForkJoinPool(4)).exportToString(result));
+    }
+
+    // An element with every serialized property set, and a child so that "children" is written
+    static ElementData populatedElement() {
+        ElementData element = new ElementData();
+        element.setName("Submit");
+        element.setRole("push button");
+        element.setDescription("Sends the form");
+        element.setStates(Arrays.asList("enabled", "focusable"));
+        element.setBounds(new ElementData.BoundsData(new Rectangle(1, 2, 30, 40)));
+        element.setIndexInParent(3);
+        element.setChildrenCount(1);
+        element.setText("Submit");
+        element.setValue("0");
+        element.setActions(Arrays.asList("click"));
+        element.setClassName("javax.swing.JButton");
+        element.setParentPath("/panel");
+        element.setHandle(17);
+        element.setElidedChildren(2);
+        ElementData child = new ElementData();
+        child.setRole("label");
+        element.addChild(child);
+        return element;
+    }
+
+    @Test
+    public void testExportMatchesObjectMapperForEveryField() throws Exception {
+        ElementData element = populatedElement();
+        ExplorationResult result = ElementSerializer.createResult(element, "1", "Sample",
+            Collections.emptyMap(), Collections.emptyMap(), 2, 0);
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        assertEquals(mapper.writeValueAsString(result), new JsonExporter(new ForkJoinPool(2)).exportToString(result));
+        assertTrue(mapper.writeValueAsString(element).contains("\"handle\" : 17"));
+    }
+
+    @Test
+    public void testPopulatedElementCoversEverySerializedProperty() {
+        // The exporter's ParallelTreeSerializer writes ElementData by hand; a property added to
+        // ElementData must be added to populatedElement(), which checks the exporter against it
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode populated = mapper.valueToTree(populatedElement());
+        for (BeanPropertyDefinition property : mapper.getSerializationConfig()
+                 .introspect(mapper.constructType(ElementData.class)).findProperties()) {
+            assertTrue(populated.has(property.getName()), property.getName() + " is not set by populatedElement()");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.inspector;
+
+import com.inspector.core.JvmDiscoveryService;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JvmDiscoveryServiceTest {
+
+    @Test
+    public void testJvmDiscoveryListsOncePerChange() throws Exception {
+        Path perfData = Files.createTempDirectory("hsperfdata_test");
+        try (JvmDiscoveryService discovery = new JvmDiscoveryService(perfData, TimeUnit.HOURS.toMillis(1))) {
+            for (int i = 0; i < 100; i++) {
+                assertFalse(discovery.isJavaProcess("0"));
+            }
+            assertEquals(1, discovery.getListings());
+
+            // A JVM starting creates its file, which adds just its PID
+            Path file = Files.createFile(perfData.resolve("4242"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!discovery.isJavaProcess("4242") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(discovery.isJavaProcess("4242"));
+            assertEquals("4242", discovery.get("4242").displayName());
+            assertEquals(1, discovery.getListings());
+
+            // Files that are not named after a PID are not JVMs
+            Files.delete(Files.createFile(perfData.resolve("4242.tmp")));
+
+            // A JVM exiting drops its PID
+            Files.delete(file);
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (discovery.isJavaProcess("4242") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(discovery.isJavaProcess("4242"));
+            assertEquals(1, discovery.getListings());
+
+            discovery.invalidate();
+            discovery.list();
+            assertEquals(2, discovery.getListings());
+        } finally {
+            Files.deleteIfExists(perfData);
+        }
+    }
+}
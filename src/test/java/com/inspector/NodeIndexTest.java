@@ -0,0 +1,70 @@
+package com.inspector;
+
+import com.inspector.core.ElementVisitor;
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NodeIndexTest {
+
+    @Test
+    public void testPathsAreBuiltOnDemand() {
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        ElementData root = explorer.explore(SampleComponents.createSamplePanel().getAccessibleContext());
+        ElementData button = SampleComponents.findByRole(root, "push button");
+
+        assertNull(button.getParentPath());
+        assertEquals("/panel/panel", explorer.getParentPath(button));
+        assertEquals("/panel/panel/Submit", explorer.getPath(button));
+        assertEquals("", explorer.getParentPath(root));
+
+        explorer.materializePaths(root);
+        assertEquals("", root.getParentPath());
+        assertEquals("/panel/panel", button.getParentPath());
+
+        explorer.setMaterializePaths(true);
+        ElementData eager = SampleComponents.findByRole(explorer.explore(SampleComponents.createSamplePanel().getAccessibleContext()), "push button");
+        assertEquals("/panel/panel", eager.getParentPath());
+    }
+
+    @Test
+    public void testStreamedPathsAreNotKeptInTheIndex() {
+        JPanel panel = SampleComponents.createSamplePanel();
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        explorer.setMaterializePaths(true);
+        Map<String, String> expected = new HashMap<>();
+        collectParentPaths(explorer.explore(panel.getAccessibleContext()), expected);
+
+        Map<String, String> streamed = new HashMap<>();
+        List<ElementData> entered = new ArrayList<>();
+        explorer.explore(panel.getAccessibleContext(), new ElementVisitor() {
+            @Override
+            public void enterElement(ElementData element, int depth) {
+                streamed.put(element.getName() + "@" + element.getRole(), element.getParentPath());
+                entered.add(element);
+            }
+
+            @Override
+            public void leaveElement(ElementData element, int depth) {
+            }
+        });
+
+        assertEquals(expected, streamed);
+        assertThrows(IllegalArgumentException.class, () -> explorer.getParentPath(entered.get(1)));
+    }
+
+    private static void collectParentPaths(ElementData element, Map<String, String> paths) {
+        paths.put(element.getName() + "@" + element.getRole(), element.getParentPath());
+        for (ElementData child : element.getChildren()) {
+            collectParentPaths(child, paths);
+        }
+    }
+}
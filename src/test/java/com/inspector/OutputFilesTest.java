@@ -0,0 +1,65 @@
+package com.inspector;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.inspector.util.JsonOutput;
+import com.inspector.util.OutputFiles;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutputFilesTest {
+
+    @Test
+    public void testOutputFilesArePerSessionAndPublishedWhole() throws Exception {
+        Path first = OutputFiles.newSessionOutput("42");
+        Path second = OutputFiles.newSessionOutput("42");
+        assertNotEquals(first, second);
+        assertFalse(Files.exists(first));
+
+        Path dir = Files.createTempDirectory("outputs");
+        Path target = dir.resolve("ui.json");
+        Files.write(target, "old".getBytes(StandardCharsets.UTF_8));
+        Path temp = OutputFiles.createTempSibling(target);
+        assertEquals(dir, temp.getParent());
+        assertNotEquals(temp, OutputFiles.createTempSibling(target));
+        Files.write(temp, "{}".getBytes(StandardCharsets.UTF_8));
+        OutputFiles.publish(temp, target);
+        assertFalse(Files.exists(temp));
+        assertEquals("{}", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFailedOutputLeavesNoTempFile() throws Exception {
+        Path dir = Files.createTempDirectory("outputs");
+        Path target = dir.resolve("ui.json");
+        Files.write(target, "old".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> {
+            try (OutputFiles.PendingOutput output = OutputFiles.begin(target);
+                 JsonGenerator gen = JsonOutput.createGenerator(output.getPath(), false)) {
+                gen.writeStartObject();
+                throw new IOException("inspection failed");
+            }
+        });
+        assertEquals("old", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+
+        try (OutputFiles.PendingOutput output = OutputFiles.begin(target);
+             JsonGenerator gen = JsonOutput.createGenerator(output.getPath(), false)) {
+            gen.writeStartObject();
+            gen.writeEndObject();
+            gen.close();
+            output.complete();
+        }
+        assertEquals("{}", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            assertEquals(Collections.singletonList(target), files.collect(java.util.stream.Collectors.toList()));
+        }
+        Files.delete(target);
+        Files.delete(dir);
+    }
+}
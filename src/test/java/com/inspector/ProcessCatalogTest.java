@@ -0,0 +1,43 @@
+package com.inspector;
+
+import com.inspector.gui.model.ProcessCatalog;
+import com.inspector.gui.model.ProcessInfo;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProcessCatalogTest {
+
+    @Test
+    public void testProcessCatalogAppliesOnlyChanges() {
+        int self = (int) ProcessHandle.current().pid();
+        String selfId = String.valueOf(self);
+        ProcessCatalog catalog = new ProcessCatalog(pid -> pid.equals(selfId));
+        ObservableList<ProcessInfo> table = FXCollections.observableArrayList();
+
+        catalog.refresh(Arrays.asList(new ProcessCatalog.Window(1, self, "Main"),
+                                      new ProcessCatalog.Window(2, self, "Dialog"))).applyTo(table);
+        assertEquals(2, table.size());
+        assertEquals("Java", table.get(0).getType());
+        assertEquals(1, catalog.getMetadataReads());
+        ProcessInfo main = table.get(0);
+
+        ProcessCatalog.Diff diff = catalog.refresh(Arrays.asList(new ProcessCatalog.Window(1, self, "Main"),
+                                                                 new ProcessCatalog.Window(2, self, "Dialog")));
+        assertTrue(diff.isEmpty());
+
+        // A retitled window keeps its row; a closed one loses it
+        diff = catalog.refresh(Arrays.asList(new ProcessCatalog.Window(1, self, "Main - edited")));
+        assertEquals(1, diff.getUpdatedCount());
+        assertEquals(1, diff.getRemoved().size());
+        diff.applyTo(table);
+        assertEquals(1, table.size());
+        assertSame(main, table.get(0));
+        assertEquals("Main - edited", main.getWindowTitle());
+        assertEquals(1, catalog.getMetadataReads());
+    }
+}
@@ -0,0 +1,37 @@
+package com.inspector;
+
+import com.inspector.model.ElementData;
+
+import javax.swing.*;
+import java.awt.*;
+
+// The Swing components the tests explore
+final class SampleComponents {
+
+    private SampleComponents() {
+    }
+
+    static JPanel createSamplePanel() {
+        JPanel root = new JPanel(new BorderLayout());
+        JPanel form = new JPanel(new GridLayout(2, 2));
+        form.add(new JLabel("<html>Name</html>"));
+        form.add(new JTextField("Alice"));
+        form.add(new JButton("Submit"));
+        form.add(new JTextArea("line one\nline two"));
+        root.add(form, BorderLayout.CENTER);
+        return root;
+    }
+
+    static ElementData findByRole(ElementData element, String role) {
+        if (role.equals(element.getRole())) {
+            return element;
+        }
+        for (ElementData child : element.getChildren()) {
+            ElementData found = findByRole(child, role);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
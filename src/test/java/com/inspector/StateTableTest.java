@@ -0,0 +1,37 @@
+package com.inspector;
+
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+import com.inspector.model.StateTable;
+import org.junit.jupiter.api.Test;
+
+import javax.accessibility.AccessibleState;
+import javax.swing.*;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateTableTest {
+
+    @Test
+    public void testStatesAreSharedBitsets() {
+        JPanel panel = new JPanel();
+        panel.add(new JButton("One"));
+        panel.add(new JButton("Two"));
+        panel.add(new JLabel("Leaf"));
+        ElementData root = new UITreeExplorer(20, true).explore(panel.getAccessibleContext());
+
+        ElementData one = root.getChildren().get(0);
+        ElementData two = root.getChildren().get(1);
+        assertSame(one.getStates(), two.getStates());
+        assertEquals(Arrays.asList("enabled", "focusable", "visible", "opaque"), one.getStates());
+        assertTrue(one.hasState(AccessibleState.OPAQUE));
+        assertFalse(root.getChildren().get(2).hasState(AccessibleState.OPAQUE));
+        assertEquals(StateTable.bitsOfNames(one.getStates()), one.getStateBits());
+
+        // Leaves allocate no lists but still serialize them as empty
+        ElementData leaf = root.getChildren().get(2);
+        assertTrue(leaf.getChildren().isEmpty());
+        assertTrue(leaf.getActions().isEmpty());
+    }
+}
@@ -0,0 +1,22 @@
+package com.inspector;
+
+import com.inspector.core.TraversalBudget;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraversalBudgetTest {
+
+    @Test
+    public void testTraversalBudgetSpecRoundTrips() {
+        TraversalBudget budget = TraversalBudget.parse("500,-,65536");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), budget.getMaxNanos());
+        assertEquals(TraversalBudget.NO_LIMIT, budget.getMaxNodes());
+        assertEquals(65536, budget.getMaxTextBytes());
+        assertEquals("500,-,65536", budget.toSpec());
+        assertEquals(TraversalBudget.parse("-,10").toSpec(), TraversalBudget.UNLIMITED.withMaxNodes(10).toSpec());
+        assertThrows(IllegalArgumentException.class, () -> TraversalBudget.parse("1,2,3,4"));
+    }
+}
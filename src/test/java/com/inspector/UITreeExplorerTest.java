@@ -1,10 +1,306 @@
 package com.inspector;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.inspector.core.EdtSliceBudget;
+import com.inspector.core.EdtTimeoutException;
+import com.inspector.core.ElementSerializer;
+import com.inspector.core.ExtractionProfile;
+import com.inspector.core.TraversalBudget;
+import com.inspector.core.TraversalOrder;
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+import com.inspector.model.ExplorationResult;
+import com.inspector.util.JsonExporter;
+import com.inspector.util.JsonStreamSink;
 import org.junit.jupiter.api.Test;
 
+import javax.swing.*;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 public class UITreeExplorerTest {
+
     @Test
     public void testExplore() {
-        // TODO: Add tests for UITreeExplorer
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        ElementData root = explorer.explore(SampleComponents.createSamplePanel().getAccessibleContext());
+
+        assertNotNull(root);
+        assertEquals("panel", root.getRole());
+        assertEquals(1, root.getChildren().size());
+        assertEquals(4, root.getChildren().get(0).getChildren().size());
+        assertEquals(6, explorer.getTotalElements());
+        assertEquals(2, explorer.getElementCounts().get("panel"));
+    }
+
+    @Test
+    public void testTextExtractionUsesBulkStrategies() {
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        ElementData root = explorer.explore(SampleComponents.createSamplePanel().getAccessibleContext());
+
+        assertEquals("Alice", SampleComponents.findByRole(root, "text").getText());
+        assertEquals("Name", SampleComponents.findByRole(root, "label").getText().trim());
+
+        // Text components are read from their document; the HTML label only offers per-character access
+        Map<String, Integer> strategies = explorer.getTextStrategyCounts();
+        assertEquals(2, strategies.get("document"));
+        assertEquals(1, strategies.get("character"));
+    }
+
+    @Test
+    public void testBreadthFirstProducesSameTree() throws Exception {
+        JPanel panel = SampleComponents.createSamplePanel();
+        ElementData dfs = new UITreeExplorer(20, true, TraversalOrder.DEPTH_FIRST).explore(panel.getAccessibleContext());
+        ElementData bfs = new UITreeExplorer(20, true, TraversalOrder.BREADTH_FIRST).explore(panel.getAccessibleContext());
+
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(mapper.writeValueAsString(dfs), mapper.writeValueAsString(bfs));
+    }
+
+    @Test
+    public void testDeepHierarchyDoesNotOverflowStack() {
+        int levels = 5000;
+        JPanel root = new JPanel();
+        JPanel current = root;
+        for (int i = 0; i < levels; i++) {
+            JPanel child = new JPanel();
+            current.add(child);
+            current = child;
+        }
+
+        UITreeExplorer explorer = new UITreeExplorer(levels, true);
+        ElementData element = explorer.explore(root.getAccessibleContext());
+
+        int depth = 0;
+        while (!element.getChildren().isEmpty()) {
+            element = element.getChildren().get(0);
+            depth++;
+        }
+        assertEquals(levels, depth);
+        assertEquals(levels + 1, explorer.getTotalElements());
+    }
+
+    @Test
+    public void testStreamingMatchesTreeExport() throws Exception {
+        JPanel panel = SampleComponents.createSamplePanel();
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        ElementData root = explorer.explore(panel.getAccessibleContext());
+        ExplorationResult result = ElementSerializer.createResult(root, "1", "Sample",
+            explorer.getElementCounts(), explorer.getTextStrategyCounts(), explorer.getTotalElements(), 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonStreamSink sink = new JsonStreamSink(out, new ExplorationResult.ApplicationInfo(), false)) {
+            explorer.explore(panel.getAccessibleContext(), sink);
+            sink.finish(ElementSerializer.createStatistics(explorer.getElementCounts(),
+                explorer.getTextStrategyCounts(), explorer.getTotalElements(), 0, sink.getExplorationDepth()));
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode expected = mapper.readTree(new JsonExporter().exportToString(result));
+        JsonNode streamed = mapper.readTree(out.toByteArray());
+        assertEquals(expected.get("ui_tree"), streamed.get("ui_tree"));
+        assertEquals(expected.get("statistics"), streamed.get("statistics"));
+        assertEquals("Unknown", streamed.get("application").get("toolkit").asText());
+    }
+
+    @Test
+    public void testEdtSnapshotMatchesDirectWalk() throws Exception {
+        JPanel panel = new JPanel();
+        for (int i = 0; i < 100; i++) {
+            panel.add(new JButton("Button " + i));
+        }
+
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        ObjectMapper mapper = new ObjectMapper();
+        String direct = mapper.writeValueAsString(explorer.explore(panel.getAccessibleContext()));
+        assertEquals(0, explorer.getEdtSlices());
+
+        ElementData snapshot = explorer.snapshotOnEdt(panel.getAccessibleContext(),
+            new EdtSliceBudget(TimeUnit.SECONDS.toNanos(10), 10));
+        assertEquals(direct, mapper.writeValueAsString(snapshot));
+        assertEquals(11, explorer.getEdtSlices());
+        assertTrue(explorer.getMaxEdtStallNanos() > 0);
+        assertEquals(101, explorer.getTotalElements());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(panel.getComponent(i).getAccessibleContext().getAccessibleIndexInParent(),
+                snapshot.getChildren().get(i).getIndexInParent());
+        }
+    }
+
+    @Test
+    public void testEdtSnapshotTimesOutOnBlockedEdt() throws Exception {
+        JPanel panel = SampleComponents.createSamplePanel();
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            EdtSliceBudget budget = EdtSliceBudget.parse("2,500,100");
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(100), budget.getTimeoutNanos());
+            assertThrows(EdtTimeoutException.class, () -> explorer.snapshotOnEdt(panel.getAccessibleContext(), budget));
+        } finally {
+            release.countDown();
+        }
+        // The cancelled walk leaves the explorer usable
+        explorer.snapshotOnEdt(panel.getAccessibleContext(), EdtSliceBudget.DEFAULT);
+        assertEquals(6, explorer.getTotalElements());
+    }
+
+    @Test
+    public void testIncrementalExplorationReusesUnchangedSubtrees() throws Exception {
+        JPanel panel = SampleComponents.createSamplePanel();
+        JPanel form = (JPanel) panel.getComponent(0);
+        JButton button = (JButton) form.getComponent(2);
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        explorer.setIncremental(true);
+        ObjectMapper mapper = new ObjectMapper();
+
+        String first = mapper.writeValueAsString(explorer.explore(panel.getAccessibleContext()));
+        assertEquals(0, explorer.getReusedElements());
+        assertEquals(first, mapper.writeValueAsString(explorer.explore(panel.getAccessibleContext())));
+        assertEquals(6, explorer.getReusedElements());
+
+        // Only the button is captured again; its ancestors are re-walked from the cache
+        button.setText("Send");
+        ElementData root = explorer.explore(panel.getAccessibleContext());
+        assertEquals("Send", SampleComponents.findByRole(root, "push button").getName());
+        assertEquals(5, explorer.getReusedElements());
+
+        form.add(new JCheckBox("Remember me"));
+        root = explorer.explore(panel.getAccessibleContext());
+        assertNotNull(SampleComponents.findByRole(root, "check box"));
+        assertEquals(7, explorer.getTotalElements());
+
+        UITreeExplorer fresh = new UITreeExplorer(20, true);
+        assertEquals(mapper.writeValueAsString(fresh.explore(panel.getAccessibleContext())), mapper.writeValueAsString(root));
+        explorer.dispose();
+    }
+
+    @Test
+    public void testBudgetReturnsPartialTreeWithElidedChildren() throws Exception {
+        JPanel panel = new JPanel();
+        for (int i = 0; i < 3; i++) {
+            JPanel group = new JPanel();
+            for (int j = 0; j < 5; j++) {
+                group.add(new JButton("Button " + i + "." + j));
+            }
+            panel.add(group);
+        }
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+        explorer.setBudget(TraversalBudget.UNLIMITED.withMaxNodes(6));
+        ElementData root = explorer.explore(panel.getAccessibleContext());
+
+        // Depth-first: the root, the first group and four of its buttons
+        assertTrue(explorer.isTruncated());
+        assertEquals(TraversalBudget.Limit.NODES, explorer.getTruncatedBy());
+        assertEquals(6, explorer.getTotalElements());
+        assertEquals(2, root.getElidedChildren());
+        assertEquals(1, root.getChildren().get(0).getElidedChildren());
+        assertNull(root.getChildren().get(0).getChildren().get(0).getElidedChildren());
+
+        ExplorationResult result = ElementSerializer.createResult(root, "1", "Sample",
+            explorer.getElementCounts(), explorer.getTextStrategyCounts(), explorer.getTotalElements(), 0);
+        ElementSerializer.addTruncation(result, explorer.getTruncatedBy());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonStreamSink sink = new JsonStreamSink(out, new ExplorationResult.ApplicationInfo(), false)) {
+            explorer.explore(panel.getAccessibleContext(), sink);
+            Map<String, Object> statistics = ElementSerializer.createStatistics(explorer.getElementCounts(),
+                explorer.getTextStrategyCounts(), explorer.getTotalElements(), 0, sink.getExplorationDepth());
+            ElementSerializer.addTruncationStatistics(statistics, explorer.getTruncatedBy());
+            sink.finish(statistics, explorer.isTruncated());
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        String exported = new JsonExporter(new ForkJoinPool(2)).exportToString(result);
+        assertEquals(mapper.enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(result), exported);
+        JsonNode expected = mapper.readTree(exported);
+        JsonNode streamed = mapper.readTree(out.toByteArray());
+        assertEquals(expected.get("ui_tree"), streamed.get("ui_tree"));
+        assertEquals("nodes", streamed.get("statistics").get("truncated_by").asText());
+        assertTrue(streamed.get("truncated").asBoolean());
+        assertTrue(expected.get("truncated").asBoolean());
+    }
+
+    @Test
+    public void testTextAndDeadlineBudgets() {
+        JPanel panel = SampleComponents.createSamplePanel();
+        UITreeExplorer explorer = new UITreeExplorer(20, true);
+
+        // The label is the first element with text; exploration stops right after it
+        explorer.setBudget(TraversalBudget.UNLIMITED.withMaxTextBytes(1));
+        explorer.explore(panel.getAccessibleContext());
+        assertEquals(TraversalBudget.Limit.TEXT_BYTES, explorer.getTruncatedBy());
+        assertEquals(3, explorer.getTotalElements());
+
+        // An expired deadline still yields the root
+        explorer.setBudget(new TraversalBudget(1, TraversalBudget.NO_LIMIT, TraversalBudget.NO_LIMIT));
+        ElementData root = explorer.explore(panel.getAccessibleContext());
+        assertEquals(TraversalBudget.Limit.DEADLINE, explorer.getTruncatedBy());
+        assertEquals(1, root.getElidedChildren());
+        assertTrue(root.getChildren().isEmpty());
+
+        explorer.setBudget(TraversalBudget.UNLIMITED);
+        explorer.explore(panel.getAccessibleContext());
+        assertFalse(explorer.isTruncated());
+        assertEquals(6, explorer.getTotalElements());
+    }
+
+    @Test
+    public void testLayoutProfileSkipsOtherGroups() {
+        UITreeExplorer explorer = new UITreeExplorer(20, true, TraversalOrder.DEPTH_FIRST,
+            ExtractionProfile.parse("layout"));
+        ElementData button = SampleComponents.findByRole(explorer.explore(SampleComponents.createSamplePanel().getAccessibleContext()), "push button");
+
+        assertNotNull(button.getBounds());
+        assertNull(button.getName());
+        assertNull(button.getIndexInParent());
+        assertTrue(button.getStates().isEmpty());
+        assertTrue(button.getActions().isEmpty());
+        assertTrue(explorer.getTextStrategyCounts().isEmpty());
+        assertEquals("bounds,text", ExtractionProfile.parse("text, bounds").toSpec());
+    }
+
+    @Test
+    public void testIndexInParentIsWhatTheElementReports() {
+        JPanel panel = new JPanel();
+        panel.add(new JButton("First"));
+        panel.add(labelReportingIndex("Reordered", 7));
+        panel.add(labelReportingIndex("Unknown", -1));
+
+        ElementData root = new UITreeExplorer(20, true).explore(panel.getAccessibleContext());
+
+        assertEquals(0, root.getChildren().get(0).getIndexInParent());
+        assertEquals(7, root.getChildren().get(1).getIndexInParent());
+        // Nothing reported: the position among the parent's children
+        assertEquals(2, root.getChildren().get(2).getIndexInParent());
+    }
+
+    private static JLabel labelReportingIndex(String text, int index) {
+        return new JLabel(text) {
+            @Override
+            public javax.accessibility.AccessibleContext getAccessibleContext() {
+                if (accessibleContext == null) {
+                    accessibleContext = new AccessibleJLabel() {
+                        @Override
+                        public int getAccessibleIndexInParent() {
+                            return index;
+                        }
+                    };
+                }
+                return accessibleContext;
+            }
+        };
     }
 }
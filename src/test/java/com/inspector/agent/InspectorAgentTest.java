@@ -0,0 +1,81 @@
+package com.inspector.agent;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspector.util.JsonOutput;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InspectorAgentTest {
+
+    private static JsonNode write(JavaFXSceneCapture.FxWindow window) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator gen = JsonOutput.createGenerator(out, false)) {
+            InspectorAgent.writeJavaFXWindow(gen, window);
+        }
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
+
+    @Test
+    public void testCapturedJavaFXWindowIsWrittenWithoutTheToolkit() throws Exception {
+        JavaFXSceneCapture.FxNode root = new JavaFXSceneCapture.FxNode("panel", "content", "javafx.scene.layout.VBox",
+            new int[] {0, 0, 300, 200}, null, 3);
+        root.addChild(new JavaFXSceneCapture.FxNode("push button", "ok", "javafx.scene.control.Button",
+            new int[] {10, 20, 80, 25}, "OK", 0));
+        root.addChild(null);
+        root.addChild(new JavaFXSceneCapture.FxNode("No skin"));
+        JsonNode window = write(new JavaFXSceneCapture.FxWindow("Main", "javafx.stage.Stage",
+            new int[] {5, 6, 300, 220}, root, 2, 1_000_000));
+
+        assertEquals("frame", window.get("role").asText());
+        assertEquals("Main", window.get("name").asText());
+        assertEquals(220, window.get("bounds").get("height").asInt());
+        assertEquals(1, window.get("childCount").asInt());
+
+        JsonNode content = window.get("children").get(0);
+        assertEquals("content", content.get("name").asText());
+        assertEquals(3, content.get("childCount").asInt());
+        JsonNode children = content.get("children");
+        assertEquals(3, children.size());
+        assertEquals("OK", children.get(0).get("text").asText());
+        assertEquals(10, children.get(0).get("bounds").get("x").asInt());
+        assertTrue(children.get(0).get("children").isEmpty());
+        assertTrue(children.get(1).isNull());
+        assertEquals("No skin", children.get(2).get("error").asText());
+    }
+
+    @Test
+    public void testFailedJavaFXCaptureIsWrittenAsError() throws Exception {
+        JsonNode window = write(JavaFXSceneCapture.FxWindow.failed("JavaFX capture did not complete within 100 ms"));
+        assertEquals(1, window.size());
+        assertEquals("Failed to traverse JavaFX scene: JavaFX capture did not complete within 100 ms",
+            window.get("error").asText());
+    }
+
+    @Test
+    public void testDeepJavaFXSceneIsWrittenWithoutRecursion() throws Exception {
+        int depth = 100_000;
+        JavaFXSceneCapture.FxNode root = new JavaFXSceneCapture.FxNode("panel", "0", "javafx.scene.layout.VBox",
+            new int[4], null, 1);
+        JavaFXSceneCapture.FxNode last = root;
+        for (int i = 1; i < depth; i++) {
+            JavaFXSceneCapture.FxNode child = new JavaFXSceneCapture.FxNode("panel", String.valueOf(i),
+                "javafx.scene.layout.VBox", new int[4], null, i < depth - 1 ? 1 : 0);
+            last.addChild(child);
+            last = child;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator gen = JsonOutput.createGenerator(out, false)) {
+            InspectorAgent.writeJavaFXWindow(gen, new JavaFXSceneCapture.FxWindow("Deep", "javafx.stage.Stage",
+                new int[4], root, 1, 0));
+        }
+
+        String json = out.toString("UTF-8");
+        assertTrue(json.contains("\"name\":\"" + (depth - 1) + "\""));
+        assertTrue(json.endsWith("}]}]}"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.inspector.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+import com.inspector.util.JsonOutput;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Compares writing an element tree to a file the way the agent used to, with println() of
+ * indented, String.replace()-escaped lines over an unbuffered FileWriter, against a JsonOutput
+ * generator, with and without pretty printing.
+ */
+public class AgentJsonOutputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int forms = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        ElementData tree = new UITreeExplorer(50, true).explore(BenchmarkSupport.buildSwingTree(forms).getAccessibleContext());
+        File file = File.createTempFile("agent-output", ".json");
+        file.deleteOnExit();
+
+        long println = BenchmarkSupport.medianNanos(() -> writePrintln(tree, file), 3, 11);
+        long printlnSize = file.length();
+        long pretty = BenchmarkSupport.medianNanos(() -> writeGenerator(tree, file, true), 3, 11);
+        long prettySize = file.length();
+        long compact = BenchmarkSupport.medianNanos(() -> writeGenerator(tree, file, false), 3, 11);
+        long compactSize = file.length();
+
+        System.out.println("Tree: " + count(tree) + " elements");
+        System.out.println(String.format("println + escapeJson:    %8.2f ms  %,d bytes", println / 1e6, printlnSize));
+        System.out.println(String.format("JsonGenerator, pretty:   %8.2f ms  %,d bytes", pretty / 1e6, prettySize));
+        System.out.println(String.format("JsonGenerator, compact:  %8.2f ms  %,d bytes", compact / 1e6, compactSize));
+    }
+
+    private static int count(ElementData element) {
+        int count = 1;
+        for (ElementData child : element.getChildren()) {
+            count += count(child);
+        }
+        return count;
+    }
+
+    private static void writeGenerator(ElementData tree, File file, boolean pretty) {
+        try (JsonGenerator gen = JsonOutput.createGenerator(file.toPath(), pretty)) {
+            writeElement(gen, tree);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeElement(JsonGenerator gen, ElementData element) throws IOException {
+        gen.writeStartObject();
+        JsonOutput.writeString(gen, "role", element.getRole());
+        JsonOutput.writeString(gen, "name", element.getName());
+        JsonOutput.writeString(gen, "description", element.getDescription());
+        gen.writeStringField("className", element.getClassName() != null ? element.getClassName() : "unknown");
+        ElementData.BoundsData bounds = element.getBounds();
+        if (bounds != null) {
+            JsonOutput.writeBounds(gen, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+        } else {
+            gen.writeNullField("bounds");
+        }
+        JsonOutput.writeStrings(gen, "states", element.getStates());
+        JsonOutput.writeStrings(gen, "actions", element.getActions());
+        JsonOutput.writeString(gen, "text", element.getText());
+        gen.writeObjectField("childCount", element.getChildrenCount());
+        gen.writeArrayFieldStart("children");
+        for (ElementData child : element.getChildren()) {
+            writeElement(gen, child);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    // The agent's former writeElementTree
+    private static void writePrintln(ElementData tree, File file) {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writeElement(writer, tree, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeElement(PrintWriter writer, ElementData element, int indent) {
+        String indentStr = " ".repeat(indent);
+        writer.println("{");
+        writer.println(indentStr + "  \"role\": " + quoteJson(element.getRole()) + ",");
+        writer.println(indentStr + "  \"name\": " + quoteJson(element.getName()) + ",");
+        writer.println(indentStr + "  \"description\": " + quoteJson(element.getDescription()) + ",");
+        writer.println(indentStr + "  \"className\": " + quoteJson(element.getClassName() != null ? element.getClassName() : "unknown") + ",");
+        ElementData.BoundsData bounds = element.getBounds();
+        if (bounds != null) {
+            writer.println(indentStr + "  \"bounds\": {");
+            writer.println(indentStr + "    \"x\": " + bounds.getX() + ",");
+            writer.println(indentStr + "    \"y\": " + bounds.getY() + ",");
+            writer.println(indentStr + "    \"width\": " + bounds.getWidth() + ",");
+            writer.println(indentStr + "    \"height\": " + bounds.getHeight());
+            writer.println(indentStr + "  },");
+        } else {
+            writer.println(indentStr + "  \"bounds\": null,");
+        }
+        writer.println(indentStr + "  \"states\": " + quoteJsonList(element.getStates()) + ",");
+        writer.println(indentStr + "  \"actions\": " + quoteJsonList(element.getActions()) + ",");
+        writer.println(indentStr + "  \"text\": " + quoteJson(element.getText()) + ",");
+        writer.println(indentStr + "  \"childCount\": " + element.getChildrenCount() + ",");
+        List<ElementData> children = element.getChildren();
+        if (!children.isEmpty()) {
+            writer.println(indentStr + "  \"children\": [");
+            for (int i = 0; i < children.size(); i++) {
+                writer.print(indentStr + "    ");
+                writeElement(writer, children.get(i), indent + 4);
+                if (i < children.size() - 1) writer.println(",");
+                else writer.println();
+            }
+            writer.println(indentStr + "  ]");
+        } else {
+            writer.println(indentStr + "  \"children\": []");
+        }
+        writer.print(indentStr + "}");
+    }
+
+    private static String quoteJson(String str) {
+        return str != null ? "\"" + str.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+            .replace("\r", "\\r").replace("\t", "\\t") + "\"" : "null";
+    }
+
+    private static String quoteJsonList(List<String> values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(quoteJson(values.get(i)));
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,49 @@
+package com.inspector.benchmark;
+
+import com.inspector.core.AgentSession;
+import com.inspector.core.ApplicationConnector;
+import com.inspector.core.ExtractionProfile;
+
+/**
+ * Compares the latency of inspecting another JVM by attaching every time with that of repeating
+ * the inspection over an AgentSession.
+ *
+ * Starts a target JVM, inspects it once (attach and load the agent), then repeatedly with the
+ * session closed beforehand (attach again) and with it kept open. Needs the agent jar, so run
+ * "mvn package" first, from the project directory.
+ */
+public class AgentSessionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        Process target = BenchmarkSupport.startIdleTarget("-Djava.awt.headless=true");
+        try {
+            int pid = (int) target.pid();
+
+            long first = time(pid);
+            System.out.println(String.format("First inspection (attach, load agent): %8.1f ms", first / 1e6));
+
+            long[] attach = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                AgentSession.closeAll();
+                attach[i] = time(pid);
+            }
+            long[] session = new long[iterations];
+            for (int i = 0; i < iterations; i++) {
+                session[i] = time(pid);
+            }
+            System.out.println(String.format("Repeat, attaching again (median):      %8.1f ms", BenchmarkSupport.median(attach) / 1e6));
+            System.out.println(String.format("Repeat, over the session (median):     %8.1f ms", BenchmarkSupport.median(session) / 1e6));
+        } finally {
+            AgentSession.closeAll();
+            target.destroy();
+        }
+    }
+
+    private static long time(int pid) {
+        long start = System.nanoTime();
+        ApplicationConnector.connectByPid(pid, ExtractionProfile.ALL);
+        return System.nanoTime() - start;
+    }
+}
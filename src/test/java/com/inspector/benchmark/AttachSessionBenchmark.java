@@ -0,0 +1,56 @@
+package com.inspector.benchmark;
+
+import com.inspector.core.AttachSessionCache;
+import com.sun.tools.attach.VirtualMachine;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares reading a target's system properties the way AttachConnector used to, with an attach
+ * and a detach per read, against reads through an AttachSessionCache. The target is a JVM this
+ * benchmark starts and that does nothing; the given number of reads (default 20) is timed.
+ */
+public class AttachSessionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int reads = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        Process target = BenchmarkSupport.startIdleTarget();
+        try {
+            String pid = String.valueOf(target.pid());
+
+            long perRead = BenchmarkSupport.medianNanos(() -> {
+                try {
+                    for (int i = 0; i < reads; i++) {
+                        VirtualMachine vm = VirtualMachine.attach(pid);
+                        try {
+                            vm.getSystemProperties();
+                        } finally {
+                            vm.detach();
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, 1, 5);
+            System.out.println(String.format("attach + detach per read:  %8.2f ms for %d reads", perRead / 1e6, reads));
+
+            try (AttachSessionCache cache = new AttachSessionCache(AttachSessionCache.DEFAULT_IDLE_MS)) {
+                long cached = BenchmarkSupport.medianNanos(() -> {
+                    try {
+                        for (int i = 0; i < reads; i++) {
+                            cache.withVm(pid, VirtualMachine::getSystemProperties);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }, 1, 5);
+                System.out.println(String.format("AttachSessionCache:        %8.2f ms for %d reads", cached / 1e6, reads));
+                Map<String, Object> stats = new TreeMap<>(cache.getStatistics());
+                System.out.println("Cache statistics: " + stats);
+            }
+        } finally {
+            target.destroy();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.inspector.benchmark;
+
+import com.sun.tools.attach.VirtualMachine;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shared fixtures for the benchmark harnesses in this package.
+ *
+ * Benchmarks are plain main() programs, run from the test classpath:
+ *   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.inspector.benchmark.&lt;Name&gt;
+ */
+final class BenchmarkSupport {
+
+    /** A JVM that does nothing, the target of the attach benchmarks. */
+    public static final class IdleTarget {
+        public static void main(String[] args) throws InterruptedException {
+            Thread.sleep(Long.MAX_VALUE);
+        }
+    }
+
+    private BenchmarkSupport() {}
+
+    /**
+     * Build a headless-safe Swing hierarchy of roughly 12 * forms + 1 elements, mixing the
+     * component types that exercise every extraction path (text, value, actions, states).
+     */
+    static JPanel buildSwingTree(int forms) {
+        JPanel root = new JPanel(new GridLayout(0, 4));
+        for (int i = 0; i < forms; i++) {
+            JPanel form = new JPanel(new GridLayout(0, 2));
+            form.add(new JLabel("Label " + i));
+            form.add(new JTextField("Field value " + i));
+            form.add(new JButton("Button " + i));
+            form.add(new JCheckBox("Option " + i, i % 2 == 0));
+            form.add(new JSlider(0, 100, i % 100));
+            form.add(new JTextArea("First line of area " + i + "\nSecond line"));
+            form.add(new JLabel("<html>Rich <b>label</b> " + i + "</html>"));
+            form.add(new JRadioButton("Choice " + i));
+            form.add(new JProgressBar(0, 100));
+            form.add(new JToggleButton("Toggle " + i));
+            form.add(new JLabel("Status " + i));
+            root.add(form);
+        }
+        return root;
+    }
+
+    /**
+     * Run the task warmup times, then measure iterations runs and return the median in nanoseconds.
+     */
+    static long medianNanos(Runnable task, int warmup, int iterations) {
+        for (int i = 0; i < warmup; i++) {
+            task.run();
+        }
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            task.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        return median(samples);
+    }
+
+    /**
+     * The median of samples, which are left as they were.
+     */
+    static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * Start an IdleTarget on the test classpath with the given JVM options, and wait until the
+     * Attach API lists it. Its output is discarded.
+     */
+    static Process startIdleTarget(String... options) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(Arrays.asList(options));
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), IdleTarget.class.getName()));
+        Process target = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        String pid = String.valueOf(target.pid());
+        long deadline = System.currentTimeMillis() + 10000;
+        while (VirtualMachine.list().stream().noneMatch(vmd -> vmd.id().equals(pid))) {
+            if (System.currentTimeMillis() > deadline) {
+                target.destroy();
+                throw new IllegalStateException("Target JVM " + pid + " did not start");
+            }
+            Thread.sleep(50);
+        }
+        return target;
+    }
+}
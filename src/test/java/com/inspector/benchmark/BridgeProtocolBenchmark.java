@@ -0,0 +1,167 @@
+package com.inspector.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+import com.inspector.util.FrameProtocol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the agent bridge's text protocol (one JSON line per reply) with the framed binary
+ * protocol (Smile, streamed in chunks, with and without Deflate) over a loopback socket.
+ *
+ * Each round trip sends a request and decodes the reply into an ElementData tree, so the numbers
+ * include encoding on the agent side and decoding on the inspector side. Throughput is counted
+ * in bytes of the equivalent JSON, so the three modes are comparable.
+ */
+public class BridgeProtocolBenchmark {
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        int forms = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        UITreeExplorer explorer = new UITreeExplorer(100, true);
+        ElementData tree = explorer.explore(BenchmarkSupport.buildSwingTree(forms).getAccessibleContext());
+        int jsonBytes = jsonMapper.writeValueAsBytes(tree).length;
+        System.out.println("Tree size: " + explorer.getTotalElements() + " elements, " + jsonBytes + " bytes of JSON");
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread agent = new Thread(() -> serve(server, tree));
+            agent.setDaemon(true);
+            agent.start();
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+                socket.setTcpNoDelay(true);
+                CountingInputStream counter = new CountingInputStream(socket.getInputStream());
+                BufferedReader textIn = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8));
+                PrintWriter textOut = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+
+                long text = BenchmarkSupport.medianNanos(() -> {
+                    try {
+                        textOut.println("EXPLORE");
+                        jsonMapper.readValue(textIn.readLine(), ElementData.class);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }, 5, iterations);
+                long textWire = wireBytes(counter, () -> {
+                    textOut.println("EXPLORE");
+                    textIn.readLine();
+                });
+                report("Text (JSON line)", text, jsonBytes, textWire);
+
+                textOut.println(FrameProtocol.UPGRADE_COMMAND);
+                textIn.readLine();
+                DataInputStream frameIn = new DataInputStream(new BufferedInputStream(counter));
+                DataOutputStream frameOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                int[] requestId = {0};
+                for (boolean deflate : new boolean[] {false, true}) {
+                    byte flags = deflate ? FrameProtocol.FLAG_DEFLATE : 0;
+                    long binary = BenchmarkSupport.medianNanos(() -> {
+                        try {
+                            int id = ++requestId[0];
+                            FrameProtocol.writeFrame(frameOut, id, FrameProtocol.REQUEST, flags, "EXPLORE");
+                            frameOut.flush();
+                            FrameProtocol.readValue(frameIn, id, ElementData.class);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }, 5, iterations);
+                    long binaryWire = wireBytes(counter, () -> {
+                        int id = ++requestId[0];
+                        FrameProtocol.writeFrame(frameOut, id, FrameProtocol.REQUEST, flags, "EXPLORE");
+                        frameOut.flush();
+                        FrameProtocol.openResponse(frameIn, id).close();
+                    });
+                    report(deflate ? "Binary (Smile + Deflate)" : "Binary (Smile)", binary, jsonBytes, binaryWire);
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    // Answers every request with the tree, in whichever protocol the connection is in
+    private static void serve(ServerSocket server, ElementData tree) {
+        try (Socket socket = server.accept()) {
+            socket.setTcpNoDelay(true);
+            InputStream rawIn = socket.getInputStream();
+            OutputStream rawOut = socket.getOutputStream();
+            BufferedReader textIn = new BufferedReader(new InputStreamReader(rawIn, StandardCharsets.UTF_8));
+            PrintWriter textOut = new PrintWriter(new OutputStreamWriter(rawOut, StandardCharsets.UTF_8), true);
+            String command;
+            while ((command = textIn.readLine()) != null) {
+                if (command.equals(FrameProtocol.UPGRADE_COMMAND)) {
+                    textOut.println("OK " + FrameProtocol.UPGRADE_REPLY);
+                    break;
+                }
+                textOut.println(jsonMapper.writeValueAsString(tree));
+            }
+            DataInputStream frameIn = new DataInputStream(new BufferedInputStream(rawIn));
+            DataOutputStream frameOut = new DataOutputStream(new BufferedOutputStream(rawOut, FrameProtocol.CHUNK_SIZE + 16));
+            while (true) {
+                FrameProtocol.Frame request = FrameProtocol.readFrame(frameIn);
+                FrameProtocol.writeValue(frameOut, request.requestId, (request.flags & FrameProtocol.FLAG_DEFLATE) != 0, tree);
+            }
+        } catch (Exception e) {
+            // Benchmark finished
+        }
+    }
+
+    private interface Exchange {
+        void run() throws Exception;
+    }
+
+    private static long wireBytes(CountingInputStream counter, Exchange exchange) throws Exception {
+        long before = counter.count;
+        exchange.run();
+        return counter.count - before;
+    }
+
+    private static void report(String mode, long nanos, int jsonBytes, long wireBytes) {
+        System.out.println(String.format("%-26s %8.2f ms  %7.1f MB/s  %9d bytes on the wire",
+            mode, nanos / 1e6, jsonBytes / (nanos / 1e9) / (1024 * 1024), wireBytes));
+    }
+
+    private static class CountingInputStream extends InputStream {
+        private final InputStream in;
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
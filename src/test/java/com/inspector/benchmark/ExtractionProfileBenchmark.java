@@ -0,0 +1,55 @@
+package com.inspector.benchmark;
+
+import com.inspector.core.ExtractionProfile;
+import com.inspector.core.TraversalOrder;
+import com.inspector.core.UITreeExplorer;
+
+import javax.accessibility.AccessibleContext;
+import java.util.EnumSet;
+
+/**
+ * Measures the per-node cost of each ExtractionProfile property group.
+ *
+ * The baseline extracts roles only; each row adds a single group to it, so the difference
+ * to the baseline is what that group costs per visited node.
+ */
+public class ExtractionProfileBenchmark {
+
+    public static void main(String[] args) {
+        int forms = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        AccessibleContext root = BenchmarkSupport.buildSwingTree(forms).getAccessibleContext();
+
+        int nodes = countNodes(root);
+        System.out.println("Tree size: " + nodes + " elements");
+
+        // Warm every profile up front so the first rows are not measured cold
+        for (ExtractionProfile.Field field : ExtractionProfile.Field.values()) {
+            nanosPerNode(root, ExtractionProfile.of(EnumSet.of(field)), nodes);
+        }
+        nanosPerNode(root, ExtractionProfile.parse("none"), nodes);
+        System.out.println();
+        System.out.println(String.format("%-14s %12s %12s", "Group", "ns/node", "delta"));
+        System.out.println("------------------------------------------");
+
+        double baseline = nanosPerNode(root, ExtractionProfile.parse("none"), nodes);
+        System.out.println(String.format("%-14s %12.0f %12s", "roles only", baseline, "-"));
+        for (ExtractionProfile.Field field : ExtractionProfile.Field.values()) {
+            double cost = nanosPerNode(root, ExtractionProfile.of(EnumSet.of(field)), nodes);
+            System.out.println(String.format("%-14s %12.0f %+12.0f", field.name().toLowerCase(), cost, cost - baseline));
+        }
+        double all = nanosPerNode(root, ExtractionProfile.ALL, nodes);
+        System.out.println(String.format("%-14s %12.0f %+12.0f", "all", all, all - baseline));
+    }
+
+    private static double nanosPerNode(AccessibleContext root, ExtractionProfile profile, int nodes) {
+        UITreeExplorer explorer = new UITreeExplorer(100, true, TraversalOrder.DEPTH_FIRST, profile);
+        long nanos = BenchmarkSupport.medianNanos(() -> explorer.explore(root), 15, 25);
+        return (double) nanos / nodes;
+    }
+
+    private static int countNodes(AccessibleContext root) {
+        UITreeExplorer explorer = new UITreeExplorer(100, true);
+        explorer.explore(root);
+        return explorer.getTotalElements();
+    }
+}
@@ -0,0 +1,123 @@
+package com.inspector.benchmark;
+
+import com.inspector.agent.JavaFXNodeAccessors;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Rectangle;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Compares reading a JavaFX scene graph the way the agent used to, with getMethod() and
+ * Method.invoke() for every getter of every node, against the per-class JavaFXNodeAccessors.
+ *
+ * The synthetic scene holds about 50k nodes: panes of rectangles, a third of them a subclass
+ * with getText(). Shapes are used because their bounds need no fonts or graphics pipeline, so
+ * the benchmark runs headless.
+ */
+public class JavaFXReflectionBenchmark {
+
+    /** A shape with text, so that both the found and the missing getText() paths are measured. */
+    public static class TextRectangle extends Rectangle {
+        private final String text;
+
+        public TextRectangle(double x, double y, String text) {
+            super(x, y, 20, 10);
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int panes = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int leaves = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        Pane root = new Pane();
+        for (int i = 0; i < panes; i++) {
+            Pane pane = new Pane();
+            pane.setId("pane" + i);
+            for (int j = 0; j < leaves; j++) {
+                Node leaf = j % 3 == 0 ? new TextRectangle(j, i, "Item " + j) : new Rectangle(j, i, 20, 10);
+                pane.getChildren().add(leaf);
+            }
+            root.getChildren().add(pane);
+        }
+        // Compute bounds once, so both variants measure only reading them
+        long[] checksum = {readReflective(root), 0};
+        int nodes = 1 + panes * (1 + leaves);
+        System.out.println("Scene size: " + nodes + " nodes");
+
+        long reflective = BenchmarkSupport.medianNanos(() -> checksum[0] += readReflective(root), 3, 15);
+        long cached = BenchmarkSupport.medianNanos(() -> checksum[1] += readCached(root), 3, 15);
+        if (readReflective(root) != readCached(root)) {
+            throw new IllegalStateException("Variants read different values");
+        }
+        System.out.println(String.format("getMethod + invoke per node: %8.2f ms  (%.0f ns/node)",
+            reflective / 1e6, (double) reflective / nodes));
+        System.out.println(String.format("Cached MethodHandles:        %8.2f ms  (%.0f ns/node)",
+            cached / 1e6, (double) cached / nodes));
+        System.exit(0);
+    }
+
+    // The lookups writeJavaFXNode used to do for each node
+    private static long readReflective(Object node) {
+        try {
+            Class<?> nodeClass = node.getClass();
+            Method getId = nodeClass.getMethod("getId");
+            String id = (String) getId.invoke(node);
+            Object bounds = nodeClass.getMethod("getBoundsInParent").invoke(node);
+            Class<?> boundsClass = bounds.getClass();
+            long sum = (id != null ? id.length() : 0)
+                + ((Double) boundsClass.getMethod("getMinX").invoke(bounds)).intValue()
+                + ((Double) boundsClass.getMethod("getMinY").invoke(bounds)).intValue()
+                + ((Double) boundsClass.getMethod("getWidth").invoke(bounds)).intValue()
+                + ((Double) boundsClass.getMethod("getHeight").invoke(bounds)).intValue();
+            String text = null;
+            try {
+                Object value = nodeClass.getMethod("getText").invoke(node);
+                text = value != null ? value.toString() : null;
+            } catch (Exception e) {
+                // No text
+            }
+            sum += text != null ? text.length() : 0;
+            List<?> children = null;
+            try {
+                Object value = nodeClass.getMethod("getChildrenUnmodifiable").invoke(node);
+                children = value instanceof List ? (List<?>) value : null;
+            } catch (Exception e) {
+                // Not a parent
+            }
+            if (children != null) {
+                for (Object child : children) {
+                    sum += readReflective(child);
+                }
+            }
+            return sum;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long readCached(Object node) {
+        try {
+            JavaFXNodeAccessors accessors = JavaFXNodeAccessors.of(node);
+            String id = accessors.getId(node);
+            int[] bounds = accessors.getBoundsInParent(node);
+            long sum = (id != null ? id.length() : 0) + bounds[0] + bounds[1] + bounds[2] + bounds[3];
+            String text = accessors.getText(node);
+            sum += text != null ? text.length() : 0;
+            List<?> children = accessors.getChildren(node);
+            if (children != null) {
+                for (Object child : children) {
+                    sum += readCached(child);
+                }
+            }
+            return sum;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.inspector.benchmark;
+
+import com.inspector.core.JvmDiscoveryService;
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares asking whether each process of a process list is a JVM the way AttachConnector used
+ * to, with a VirtualMachine.list() per question, against JvmDiscoveryService. The questions are
+ * one per running process, repeated to the given count (default 300, a desktop's worth of
+ * windows); start some JVMs beforehand to see how the listing grows with them.
+ */
+public class JvmDiscoveryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        List<String> pids = new ArrayList<>();
+        ProcessHandle.allProcesses().forEach(p -> pids.add(String.valueOf(p.pid())));
+        List<String> questions = new ArrayList<>();
+        for (int i = 0; i < lookups; i++) {
+            questions.add(pids.get(i % pids.size()));
+        }
+        System.out.println("Processes: " + pids.size() + ", JVMs: " + VirtualMachine.list().size()
+            + ", lookups: " + lookups);
+
+        int[] found = new int[1];
+        long perLookup = BenchmarkSupport.medianNanos(() -> {
+            found[0] = 0;
+            for (String pid : questions) {
+                if (listContains(pid)) {
+                    found[0]++;
+                }
+            }
+        }, 2, 7);
+        System.out.println(String.format("VirtualMachine.list() per lookup:   %8.2f ms  %d JVM(s) found", perLookup / 1e6, found[0]));
+
+        try (JvmDiscoveryService discovery = new JvmDiscoveryService(JvmDiscoveryService.defaultPerfDataDir(),
+                                                                     JvmDiscoveryService.DEFAULT_TTL_MS)) {
+            long cold = BenchmarkSupport.medianNanos(() -> {
+                discovery.invalidate();
+                found[0] = count(discovery, questions);
+            }, 2, 7);
+            System.out.println(String.format("JvmDiscoveryService, first refresh: %8.2f ms  %d JVM(s) found", cold / 1e6, found[0]));
+
+            long warm = BenchmarkSupport.medianNanos(() -> found[0] = count(discovery, questions), 2, 7);
+            System.out.println(String.format("JvmDiscoveryService, later refresh: %8.2f ms  %d JVM(s) found, %d listing(s) in all",
+                warm / 1e6, found[0], discovery.getListings()));
+        }
+    }
+
+    private static int count(JvmDiscoveryService discovery, List<String> questions) {
+        int found = 0;
+        for (String pid : questions) {
+            if (discovery.isJavaProcess(pid)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    // AttachConnector's former isJavaProcess
+    private static boolean listContains(String pid) {
+        for (VirtualMachineDescriptor vmd : VirtualMachine.list()) {
+            if (vmd.id().equals(pid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,57 @@
+package com.inspector.benchmark;
+
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+
+import javax.accessibility.AccessibleContext;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how many heap bytes an explored ElementData tree retains per element.
+ *
+ * Several copies of the same tree are kept alive at once and the heap is compared before and
+ * after, so per-copy noise averages out. Run with a fixed heap (e.g. -Xms1g -Xmx1g) for stable
+ * numbers.
+ */
+public class MemoryFootprintBenchmark {
+
+    public static void main(String[] args) {
+        int forms = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        AccessibleContext root = BenchmarkSupport.buildSwingTree(forms).getAccessibleContext();
+
+        UITreeExplorer explorer = new UITreeExplorer(100, true);
+        // Warm up, and fill the explorer's own index so it is not counted below
+        for (int i = 0; i < 5; i++) {
+            explorer.explore(root);
+        }
+        int nodes = explorer.getTotalElements();
+        System.out.println("Tree size: " + nodes + " elements, " + copies + " copies");
+
+        for (int round = 0; round < 3; round++) {
+            long before = usedHeap();
+            List<ElementData> trees = new ArrayList<>(copies);
+            for (int i = 0; i < copies; i++) {
+                trees.add(explorer.explore(root));
+            }
+            long after = usedHeap();
+            System.out.println(String.format("Round %d: %.1f bytes/element", round,
+                (double) (after - before) / ((long) copies * nodes)));
+            trees.clear();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
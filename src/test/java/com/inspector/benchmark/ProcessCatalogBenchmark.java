@@ -0,0 +1,77 @@
+package com.inspector.benchmark;
+
+import com.inspector.gui.model.ProcessCatalog;
+import com.inspector.gui.model.ProcessInfo;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares an unchanged refresh of the process table the way MainController used to do it, with
+ * ProcessHandle.info() per window and setAll() of new rows, against a ProcessCatalog refresh
+ * applied as a diff. The windows are those of a busy desktop: every running process, with the
+ * given number of windows each (default 3). Rows changed counts the rows the table's list
+ * reports as added or removed, which the table re-renders.
+ */
+public class ProcessCatalogBenchmark {
+
+    public static void main(String[] args) {
+        int windowsPerProcess = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        List<ProcessCatalog.Window> windows = new ArrayList<>();
+        ProcessHandle.allProcesses().forEach(p -> {
+            for (int i = 0; i < windowsPerProcess; i++) {
+                windows.add(new ProcessCatalog.Window(p.pid() * 16 + i, (int) p.pid(), "Window " + i));
+            }
+        });
+        System.out.println("Windows: " + windows.size());
+
+        ObservableList<ProcessInfo> table = FXCollections.observableArrayList();
+        int[] changed = new int[1];
+        table.addListener((ListChangeListener<ProcessInfo>) c -> {
+            while (c.next()) {
+                changed[0] += c.getAddedSize() + c.getRemovedSize();
+            }
+        });
+
+        long full = BenchmarkSupport.medianNanos(() -> {
+            changed[0] = 0;
+            List<ProcessInfo> rows = new ArrayList<>();
+            for (ProcessCatalog.Window window : windows) {
+                rows.add(new ProcessInfo(window.getPid(), processName(window.getPid()), window.getTitle(), false, true));
+            }
+            table.setAll(rows);
+        }, 2, 7);
+        System.out.println(String.format("info() per window + setAll():  %8.2f ms  %,d rows changed", full / 1e6, changed[0]));
+
+        table.clear();
+        ProcessCatalog catalog = new ProcessCatalog(pid -> false);
+        catalog.refresh(windows).applyTo(table);
+        int reads = catalog.getMetadataReads();
+        long diff = BenchmarkSupport.medianNanos(() -> {
+            changed[0] = 0;
+            catalog.refresh(windows).applyTo(table);
+        }, 2, 7);
+        System.out.println(String.format("ProcessCatalog diff:           %8.2f ms  %,d rows changed, %d metadata reads after the first refresh",
+            diff / 1e6, changed[0], catalog.getMetadataReads() - reads));
+    }
+
+    // MainController's former getProcessName
+    private static String processName(int pid) {
+        try {
+            ProcessHandle handle = ProcessHandle.of(pid).orElse(null);
+            if (handle != null) {
+                String command = handle.info().command().orElse("");
+                if (!command.isEmpty()) {
+                    return new File(command).getName();
+                }
+            }
+        } catch (Exception e) {
+            // Ignore
+        }
+        return "Unknown";
+    }
+}
@@ -0,0 +1,74 @@
+package com.inspector.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inspector.core.EdtSliceBudget;
+import com.inspector.core.ElementQuery;
+import com.inspector.core.ExtractionProfile;
+import com.inspector.core.RawElement;
+import com.inspector.core.Selector;
+import com.inspector.core.SnapshotProcessor;
+import com.inspector.core.TraversalOrder;
+import com.inspector.core.UITreeExplorer;
+import com.inspector.model.ElementData;
+
+import javax.accessibility.AccessibleContext;
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares finding controls by fetching a whole window, as EXPLORE does, and filtering it on
+ * the client, against a QUERY evaluated in the target: time on the agent side and bytes of JSON
+ * that would cross the process boundary.
+ */
+public class SelectorQueryBenchmark {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        int forms = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        JPanel root = BenchmarkSupport.buildSwingTree(forms);
+        AccessibleContext context = root.getAccessibleContext();
+        System.out.println("Tree: " + (12 * forms + 1) + " elements");
+
+        long[] bytes = new long[1];
+        long full = BenchmarkSupport.medianNanos(() -> bytes[0] = exploreAll(context), 2, 7);
+        System.out.println(String.format("EXPLORE whole tree:                    %8.2f ms  %,10d bytes", full / 1e6, bytes[0]));
+
+        query(context, "panel push_button[state=enabled]", 1000);
+        query(context, "panel > push_button[name=\"Button " + (forms - 1) + "\"]", 100);
+        query(context, "> panel > push_button[name=\"Button 1\"]", 1);
+        System.exit(0);
+    }
+
+    private static long exploreAll(AccessibleContext context) {
+        try {
+            UITreeExplorer explorer = new UITreeExplorer(50, false, TraversalOrder.DEPTH_FIRST, ExtractionProfile.ALL);
+            return mapper.writeValueAsBytes(explorer.snapshotOnEdt(context, EdtSliceBudget.DEFAULT)).length;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void query(AccessibleContext context, String selector, int limit) {
+        ElementQuery query = new ElementQuery(Selector.parse(selector), 50, false, ExtractionProfile.ALL);
+        query.setLimit(limit);
+        long[] result = new long[2];
+        long nanos = BenchmarkSupport.medianNanos(() -> {
+            try {
+                List<ElementData> matches = new ArrayList<>();
+                for (RawElement raw : query.findOnEdt(Collections.singletonList(context), EdtSliceBudget.DEFAULT)) {
+                    matches.add(SnapshotProcessor.toElementData(raw));
+                }
+                result[0] = matches.size();
+                result[1] = mapper.writeValueAsBytes(matches).length;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, 2, 7);
+        System.out.println(String.format("QUERY %-33s %8.2f ms  %,10d bytes  %d match(es), %d read",
+            selector.length() > 33 ? selector.substring(0, 30) + "..." : selector,
+            nanos / 1e6, result[1], result[0], query.getVisitedElements()));
+    }
+}